@@ -1,9 +1,17 @@
 package control;
 
 import dbtools.ConnectionManager;
+import dbtools.TriggerMode;
+import discovery.InclusionDependency;
+import discovery.ValidationStrategy;
 import fd.FDep;
 import fd.Relation;
 import fd.SchemaManager;
+import fd.SchemaManager.FdepCheck;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * The <code>DefaultController</code> is the only class extending the
@@ -137,6 +145,143 @@ public class DefaultController extends AbstractController {
         sManager.addFdep(fd);
     }
 
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to check whether a <code>FDep</code> may be added to the loaded
+     * relation, without adding it.
+     *
+     * @param fd a functional dependency
+     * @return the outcome of the check
+     */
+    public FdepCheck checkFdep(FDep fd) {
+        return sManager.checkFdep(fd);
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to add a checked <code>FDep</code> to the loaded relation.
+     *
+     * @param fd a functional dependency
+     * @param check the outcome of {@link #checkFdep(FDep)} for the FD
+     */
+    public void addFdep(FDep fd, FdepCheck check) {
+        sManager.addFdep(fd, check);
+    }
+
+    /**
+     * Returns the maximum error of approximate FDs of the
+     * <code>SchemaManager</code>.
+     *
+     * @return the maximum fraction of violating rows, 0 for exact FDs only
+     */
+    public double getMaxError() {
+        return sManager.getMaxError();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to set the maximum error of approximate FDs.
+     *
+     * @param maxError the maximum fraction of violating rows, 0 for exact FDs
+     * only
+     */
+    public void setMaxError(double maxError) {
+        sManager.setMaxError(maxError);
+    }
+
+    /**
+     * Returns the way the <code>SchemaManager</code> implements new FDs as
+     * triggers.
+     *
+     * @return the trigger mode
+     */
+    public TriggerMode getTriggerMode() {
+        return sManager.getTriggerMode();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to set the way new FDs are implemented as triggers.
+     *
+     * @param triggerMode the trigger mode
+     */
+    public void setTriggerMode(TriggerMode triggerMode) {
+        sManager.setTriggerMode(triggerMode);
+    }
+
+    /**
+     * Returns the way the <code>SchemaManager</code> validates FDs against
+     * the instance.
+     *
+     * @return the validation strategy
+     */
+    public ValidationStrategy getValidationStrategy() {
+        return sManager.getValidationStrategy();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to set the way FDs are validated against the instance.
+     *
+     * @param validationStrategy the validation strategy
+     */
+    public void setValidationStrategy(ValidationStrategy validationStrategy) {
+        sManager.setValidationStrategy(validationStrategy);
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to discover the FDs that hold on the instance of the loaded relation.
+     *
+     * @return the discovered FDs that are not implied
+     */
+    public List<FDep> discoverFdeps() {
+        return sManager.discoverFdeps();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to discover the candidate keys that hold on the instance of the loaded
+     * relation.
+     *
+     * @return the discovered key FDs that are not implied
+     */
+    public List<FDep> discoverKeys() {
+        return sManager.discoverKeys();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to add discovered <code>FDep</code>s to the loaded relation at once.
+     *
+     * @param fds the discovered functional dependencies
+     */
+    public void addFdeps(Collection<FDep> fds) {
+        sManager.addFdeps(fds);
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to suggest foreign keys between the relations of the loaded schema.
+     *
+     * @return the suggested foreign keys
+     */
+    public SortedSet<InclusionDependency> suggestForeignKeys() {
+        return sManager.suggestForeignKeys();
+    }
+
+    /**
+     * Propagates a method call to the <code>SchemaManager</code> in order
+     * to implement committed FDs of the loaded relation with another trigger
+     * mode.
+     *
+     * @param ids the IDs of the FDs
+     * @param mode the new trigger mode
+     */
+    public void changeTriggerMode(Set<Integer> ids, TriggerMode mode) {
+        sManager.changeTriggerMode(ids, mode);
+    }
+
     /**
      * Propagates a method call to the <code>SchemaManager</code> in order
      * to remove a <code>FDep</code> of the loaded relation.
@@ -3,13 +3,16 @@ package dbtools;
 import fd.DbSchema;
 import fd.FDep;
 import fd.Relation;
+import java.sql.Array;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -33,8 +36,28 @@ public class CatalogManager {
 
 	/** The loaded database schema. */
 	private DbSchema schema;
+	/** The number of rows fetched at a time when loading the catalog. */
+	private static final int FETCH_SIZE = 1000;
 	/** The global <code>logger</code> object. */
 	private static Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+	/** The way new FDs are implemented as triggers. */
+	private TriggerMode triggerMode = TriggerMode.ROW;
+	/**
+	 * The current layout of the fd_catalog relations, which stores both sides
+	 * of an FD as arrays in its fd_catalog row. Layout 1 stores one row per
+	 * attribute in fd_catalog_lhs and fd_catalog_rhs.
+	 */
+	public static final int LAYOUT_VERSION = 2;
+	/** The layout of the catalog of the loaded schema. */
+	private int layout = LAYOUT_VERSION;
+	/** The constraints of the database, loaded on first use. */
+	private final ConstraintCache constraints = new ConstraintCache();
+	/** Records the trigger implementing an FD. */
+	private static final String INSERT_TRIGGER = "INSERT INTO fd_catalog_trigger "
+			+ "(id, name, function, lhs_index, mode) VALUES(?, ?, ?, ?, ?)";
+	/** Indexes the FDs by relation, on which most catalog queries filter. */
+	private static final String CREATE_RELATION_INDEX = "CREATE INDEX fd_catalog_relation "
+			+ "ON fd_catalog (relation)";
 
 	/**
 	 * Sole constructor.
@@ -42,11 +65,35 @@ public class CatalogManager {
 	public CatalogManager() {
 	}
 
+	/**
+	 * Returns the way new functional dependencies are implemented as
+	 * triggers.
+	 * 
+	 * @return the trigger mode
+	 */
+	public TriggerMode getTriggerMode() {
+		return triggerMode;
+	}
+
+	/**
+	 * Sets the way new functional dependencies are implemented as triggers.
+	 * FDs that are already implemented keep their triggers.
+	 * 
+	 * @param triggerMode
+	 *            the trigger mode
+	 */
+	public void setTriggerMode(TriggerMode triggerMode) {
+		this.triggerMode = triggerMode;
+	}
+
 	/**
 	 * Adds a functional dependency (FD) to a given relation. This includes the
 	 * generation of a trigger and a function, that implement the FD as a
 	 * dynamic constraint on the database, as well as adding the FD to the
-	 * fd_catalog user relations.
+	 * fd_catalog user relations. A key FD is implemented as unique
+	 * constraint instead, unless there already is one. The trigger is
+	 * generated according to the trigger mode, see
+	 * {@link #implement(int, String, FDep, TriggerMode, PreparedStatement, Statement)}.
 	 * 
 	 * @param table
 	 *            the relation in that the FD is valid
@@ -56,113 +103,143 @@ public class CatalogManager {
 	 *            a database connection
 	 */
 	public void addFD(String table, FDep fd, Connection con) {
-		if (isUnique(table, fd, con)) {
-			insert(table, fd.getLeftSide(), con);
-		} else {
-			/*
-			 * The SQL statements as Strings.
-			 */
-			String insertIntoCatalog = "INSERT INTO fd_catalog (relation, iskey) VALUES(?, ?)";
-			String insertLHS = "INSERT INTO fd_catalog_lhs VALUES(?, ?)";
-			String insertRHS = "INSERT INTO fd_catalog_rhs VALUES(?, ?)";
-			String insertTrigger = "INSERT INTO fd_catalog_trigger VALUES(?, ?, ?)";
-			String getID = "SELECT MAX(id) FROM fd_catalog WHERE relation = ?";
-
-			PreparedStatement pstmt = null;
-			PreparedStatement pstmtFunc = null;
-			PreparedStatement pstmtTrigger = null;
+		List<FDep> fds = new ArrayList<FDep>();
+		fds.add(fd);
+		addFDs(table, fds, con);
+	}
 
-			ResultSet rs = null;
+	/**
+	 * Adds functional dependencies to a given relation like
+	 * {@link #addFD(String, FDep, Connection)}, with a constant number of
+	 * round trips for all non-key FDs: their IDs are fetched from the sequence
+	 * of fd_catalog at once, and the catalog entries, triggers and functions
+	 * are written in JDBC batches. All statements are executed in the current
+	 * transaction of <code>con</code>.
+	 * 
+	 * @param table
+	 *            the relation in that the FDs are valid
+	 * @param fds
+	 *            functional dependencies
+	 * @param con
+	 *            a database connection
+	 */
+	public void addFDs(String table, Collection<FDep> fds, Connection con) {
+		/*
+		 * The SQL statements as Strings.
+		 */
+		String getIDs = "SELECT nextval(pg_get_serial_sequence('fd_catalog', 'id')) "
+				+ "FROM generate_series(1, ?)";
+		String insertIntoCatalog = "INSERT INTO fd_catalog (id, relation, iskey, error) VALUES(?, ?, ?, ?)";
+		String insertIntoCatalogV2 = "INSERT INTO fd_catalog (id, relation, iskey, error, lhs, rhs) "
+				+ "VALUES(?, ?, ?, ?, ?, ?)";
+		String insertLHS = "INSERT INTO fd_catalog_lhs VALUES(?, ?)";
+		String insertRHS = "INSERT INTO fd_catalog_rhs VALUES(?, ?)";
 
-			int id = -1;
+		/*
+		 * FDs whose left-hand side is unique are implemented by unique
+		 * constraints, which key FDs get if there is none yet.
+		 */
+		List<Set<String>> uniques = getConstraints(con).getUniques(table);
+		List<FDep> nonKeys = new ArrayList<FDep>();
+		for (FDep fd : fds) {
+			if (uniques.contains(fd.getLeftSide())) {
+				insert(table, fd.getLeftSide(), con);
+			} else if (fd.getIsKey()) {
+				setAsUnique(table, fd.getLeftSide(), con);
+				insert(table, fd.getLeftSide(), con);
+				uniques.add(new HashSet<String>(fd.getLeftSide()));
+			} else {
+				nonKeys.add(fd);
+			}
+		}
+		if (nonKeys.isEmpty()) {
+			return;
+		}
 
-			IStatement gen = new StatementGenerator();
-			String funcName = null;
-			String func = null;
-			String trigger = null;
-			String triggerName = null;
+		try {
+			// Get ids for all fds.
+			PreparedStatement pstmt = con.prepareStatement(getIDs);
+			pstmt.setInt(1, nonKeys.size());
+			ResultSet rs = pstmt.executeQuery();
+			int[] ids = new int[nonKeys.size()];
+			for (int i = 0; i < ids.length && rs.next(); i++) {
+				ids[i] = rs.getInt(1);
+			}
+			rs.close();
+			pstmt.close();
 
-			try {
-				// Insert fd into fd_catalog.
-				pstmt = con.prepareStatement(insertIntoCatalog);
-				pstmt.setString(1, table);
-				pstmt.setBoolean(2, fd.getIsKey());
-				pstmt.executeUpdate();
+			PreparedStatement catalog;
+			PreparedStatement lhs = null;
+			PreparedStatement rhs = null;
+			if (layout == 1) {
+				catalog = con.prepareStatement(insertIntoCatalog);
+				lhs = con.prepareStatement(insertLHS);
+				rhs = con.prepareStatement(insertRHS);
+			} else {
+				catalog = con.prepareStatement(insertIntoCatalogV2);
+			}
+			PreparedStatement triggerRows = con.prepareStatement(INSERT_TRIGGER);
+			Statement ddl = con.createStatement();
 
-				// Get id for the inserted fd.
-				pstmt = con.prepareStatement(getID);
-				pstmt.setString(1, table);
-				rs = pstmt.executeQuery();
+			for (int i = 0; i < ids.length; i++) {
+				FDep fd = nonKeys.get(i);
 
-				while (rs.next()) {
-					id = rs.getInt(1);
+				// Insert fd into fd_catalog.
+				catalog.setInt(1, ids[i]);
+				catalog.setString(2, table);
+				catalog.setBoolean(3, false);
+				if (fd.isApproximate()) {
+					catalog.setDouble(4, fd.getError());
+				} else {
+					catalog.setNull(4, Types.REAL);
 				}
+				if (layout == 1) {
+					catalog.addBatch();
 
-				rs.close();
-
-				if (!fd.getIsKey()) {
 					/*
-					 * Generate trigger and trigger function.
+					 * For each left-hand side attribute, insert a tupel into
+					 * fd_catalog_lhs, for each right-hand side attribute into
+					 * fd_catalog_rhs.
 					 */
-					funcName = gen.generateTFunctionName(id, table);
-					func = gen.generateTFunction(fd, table, funcName);
-					triggerName = gen.generateTriggerName(id, table);
-					trigger = gen.generateTrigger(id, table, funcName);
-
-					// Insert trigger into fd_catalog_trigger.
-					pstmt = con.prepareStatement(insertTrigger);
-					pstmt.setInt(1, id);
-					pstmt.setString(2, triggerName);
-					pstmt.setString(3, funcName);
-
-					pstmt.executeUpdate();
-
-					// Implement trigger and trigger function.
-					pstmtFunc = con.prepareStatement(func);
-					pstmtTrigger = con.prepareStatement(trigger);
-
-					pstmtFunc.executeUpdate();
-					pstmtTrigger.executeUpdate();
-
-					pstmtFunc.close();
-					pstmtTrigger.close();
-				}
-
-				/*
-				 * For each left-hand side attribute, insert a tupel into
-				 * fd_catalog_lhs.
-				 */
-				pstmt = con.prepareStatement(insertLHS);
-				Set<String> columns = fd.getLeftSide();
-				for (String column : columns) {
-
-					pstmt.setInt(1, id);
-					pstmt.setString(2, column);
-					pstmt.executeUpdate();
-
-				}
-
-				/*
-				 * For each right-hand side attribute, insert a tupel into
-				 * fd_catalog_rhs.
-				 */
-				pstmt = con.prepareStatement(insertRHS);
-				columns = fd.getRightSide();
-				for (String column : columns) {
-
-					pstmt.setInt(1, id);
-					pstmt.setString(2, column);
-					pstmt.executeUpdate();
-
+					for (String column : fd.getLeftSide()) {
+						lhs.setInt(1, ids[i]);
+						lhs.setString(2, column);
+						lhs.addBatch();
+					}
+					for (String column : fd.getRightSide()) {
+						rhs.setInt(1, ids[i]);
+						rhs.setString(2, column);
+						rhs.addBatch();
+					}
+				} else {
+					catalog.setObject(5, arrayLiteral(fd.getLeftSide()),
+							Types.OTHER);
+					catalog.setObject(6, arrayLiteral(fd.getRightSide()),
+							Types.OTHER);
+					catalog.addBatch();
 				}
 
-				// Close ResultSets and Statements.
-				pstmt.close();
+				implement(ids[i], table, fd, triggerMode, triggerRows, ddl);
+			}
 
-			} catch (SQLException ex) {
-				logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-						"addFD", "Couldn't add FD.", ex);
+			// The catalog entries are referenced by all others.
+			catalog.executeBatch();
+			if (layout == 1) {
+				lhs.executeBatch();
+				rhs.executeBatch();
+				lhs.close();
+				rhs.close();
 			}
+			triggerRows.executeBatch();
+			ddl.executeBatch();
+
+			// Close Statements.
+			catalog.close();
+			triggerRows.close();
+			ddl.close();
+		} catch (SQLException ex) {
+			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+					"addFDs", "Couldn't add FDs.", ex);
 		}
 	}
 
@@ -175,8 +252,8 @@ public class CatalogManager {
 	 * fd_catalog user relations will be created. For each relation, its primary
 	 * and unique key constraints are added as initial values.</li>
 	 * <li>The <code>schema</code> is loaded at least for the second time. The
-	 * fd_catalog user relations already exists. No further action is
-	 * neccessary.</li>
+	 * fd_catalog user relations already exists. A catalog of an earlier
+	 * version is upgraded to the current layout.</li>
 	 * </ul>
 	 * <p>
 	 * Next, the functional dependencies are retrieved from the fd_catalog
@@ -187,6 +264,8 @@ public class CatalogManager {
 	 */
 	public void getFD(DbSchema schema) {
 		this.schema = schema;
+		this.layout = LAYOUT_VERSION;
+		constraints.invalidate();
 
 		Connection con = ConnectionManager.getConnection();
 
@@ -196,80 +275,196 @@ public class CatalogManager {
 			createCatalog(con);
 			insertPrimaries(con);
 			insertUniques(con);
+		} else {
+			upgradeCatalog(con);
 		}
 
-		fetchKeyFD(con);
-		fetchNonKeyFD(con);
+		fetchSchemaFD(con);
 
 		ConnectionManager.closeConnection();
 
 	}
 
 	/**
-	 * Retrieves a functional dependency that is specified by its ID from the
-	 * fd_catalog.
+	 * Removes a given functional dependency from the database, including all
+	 * trigger constraints, supporting indexes and fd_catalog entries. The
+	 * trigger of the relation is kept if it checks other FDs as well, and must
+	 * be regenerated with
+	 * {@link #updateConsolidatedTrigger(String, Connection)} afterwards.
 	 * 
 	 * @param id
-	 *            a FD's ID
-	 * @return a functional dependency
+	 *            the FD's ID
+	 * @param table
+	 *            the relation in that the FD is valid
+	 * @param con
+	 *            a database connection
 	 */
-	public FDep getFD(int id) {
+	public void removeFD(Integer id, String table, Connection con) {
 
-		String fdQuery = "SELECT fd.iskey, lhs.attribute, rhs.attribute "
-				+ "FROM fd_catalog fd " + "INNER JOIN fd_catalog_lhs lhs "
-				+ "ON fd.id = lhs.id " + "INNER JOIN fd_catalog_rhs rhs "
-				+ "ON lhs.id = rhs.id " + "WHERE iskey = FALSE "
-				+ "AND fd.id = ?";
+		String deleteFromCat = "DELETE FROM fd_catalog WHERE id = ?";
+		String deleteLHS = "DELETE FROM fd_catalog_lhs WHERE id = ?";
+		String deleteRHS = "DELETE FROM fd_catalog_rhs WHERE id = ?";
 
-		PreparedStatement queryFD;
-		ResultSet rs = null;
+		PreparedStatement pstmt = null;
 
-		/*
-		 * Local variables. lhs and rhs are sets of left- and right-hand side
-		 * column names.
-		 */
-		FDep fd = null;
-		SortedSet<String> lhs = new TreeSet<String>();
-		SortedSet<String> rhs = new TreeSet<String>();
-		String left, right;
-		boolean isKey = false;
+		try {
+			unimplement(id, table, con);
 
-		Connection con = ConnectionManager.getConnection();
+			if (layout == 1) {
+				// delete left-hand side entries
+				pstmt = con.prepareStatement(deleteLHS);
+				pstmt.setInt(1, id);
+				pstmt.executeUpdate();
 
-		try {
-			queryFD = con.prepareStatement(fdQuery);
+				// delete right-hand side entries
+				pstmt = con.prepareStatement(deleteRHS);
+				pstmt.setInt(1, id);
+				pstmt.executeUpdate();
+			}
 
-			queryFD.setInt(1, id);
-			rs = queryFD.executeQuery();
+			// delete master catalog entry
+			pstmt = con.prepareStatement(deleteFromCat);
+			pstmt.setInt(1, id);
+			pstmt.executeUpdate();
 
-			while (rs.next()) {
-				isKey = rs.getBoolean(1);
-				left = rs.getString(2);
-				right = rs.getString(3);
+			pstmt.close();
+		} catch (SQLException ex) {
+			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+					"removeFD", "Couldn't remove FD.", ex);
+		}
+	}
 
-				lhs.add(left);
-				rhs.add(right);
-			}
+	/**
+	 * Implements a non-key functional dependency with another trigger mode,
+	 * keeping its ID and catalog entries. If the FD is moved to or from the
+	 * trigger of its relation, that must be regenerated with
+	 * {@link #updateConsolidatedTrigger(String, Connection)} afterwards.
+	 * 
+	 * @param id
+	 *            the FD's ID
+	 * @param table
+	 *            the relation in that the FD is valid
+	 * @param mode
+	 *            the new trigger mode
+	 * @param con
+	 *            a database connection
+	 */
+	public void changeTriggerMode(Integer id, String table, TriggerMode mode,
+			Connection con) {
+		String fdQuery = "SELECT fd.id, fd.error, " + sideColumns()
+				+ " FROM fd_catalog fd WHERE fd.id = ? AND iskey = FALSE";
 
-			fd = new FDep(lhs, rhs);
-			fd.setIsKey(isKey);
-			fd.setId(id);
+		PreparedStatement pstmt;
+		try {
+			pstmt = con.prepareStatement(fdQuery);
+			pstmt.setInt(1, id);
+			FDep fd = fetchFDs(pstmt).get(id);
+			pstmt.close();
 
-			rs.close();
-			queryFD.close();
+			if (fd != null) {
+				unimplement(id, table, con);
+
+				PreparedStatement triggerRows = con
+						.prepareStatement(INSERT_TRIGGER);
+				Statement ddl = con.createStatement();
+				implement(id, table, fd, mode, triggerRows, ddl);
+				triggerRows.executeBatch();
+				ddl.executeBatch();
+				triggerRows.close();
+				ddl.close();
+			}
 		} catch (SQLException ex) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(), "getFD",
-					"Couldn't get FD.", ex);
-		} finally {
-			ConnectionManager.closeConnection();
+			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+					"changeTriggerMode", "Couldn't change the trigger mode.",
+					ex);
+		}
+	}
+
+	/**
+	 * Generates the trigger and trigger function that implement a functional
+	 * dependency as a dynamic constraint on the database, and records them in
+	 * fd_catalog_trigger together with the trigger mode. The statements are
+	 * only added to the batches of the given statements.
+	 * <ul>
+	 * <li>{@link TriggerMode#STATEMENT}: one statement-level trigger.</li>
+	 * <li>{@link TriggerMode#ROW}: one row-level trigger and an index on the
+	 * left-hand side, which is dropped together with the FD.</li>
+	 * <li>{@link TriggerMode#TRANSITION}: statement-level triggers for INSERT
+	 * and UPDATE that only check the changed rows, and the index.</li>
+	 * <li>{@link TriggerMode#CONSOLIDATED}: only the index is created, and the
+	 * trigger of the relation must be regenerated with
+	 * {@link #updateConsolidatedTrigger(String, Connection)} afterwards.</li>
+	 * </ul>
+	 * 
+	 * @param id
+	 *            the FD's ID
+	 * @param table
+	 *            the relation in that the FD is valid
+	 * @param fd
+	 *            a non-key functional dependency
+	 * @param mode
+	 *            the trigger mode
+	 * @param triggerRows
+	 *            a prepared {@link #INSERT_TRIGGER} statement
+	 * @param ddl
+	 *            a statement for the index, function and triggers
+	 * @throws SQLException
+	 *             if the statements cannot be added
+	 */
+	private void implement(int id, String table, FDep fd, TriggerMode mode,
+			PreparedStatement triggerRows, Statement ddl) throws SQLException {
+		IStatement gen = new StatementGenerator();
+		String funcName = gen.generateTFunctionName(id, table);
+		String triggerName = gen.generateTriggerName(id, table);
+		String func = null;
+		List<String> triggers = new ArrayList<String>();
+		String indexName = null;
+
+		if (mode == TriggerMode.CONSOLIDATED) {
+			funcName = gen.generateConsolidatedTFunctionName(table);
+			triggerName = gen.generateConsolidatedTriggerName(table);
+		} else if (mode == TriggerMode.ROW) {
+			func = gen.generateRowTFunction(fd, table, funcName);
+			triggers.add(gen.generateRowTrigger(id, table, funcName));
+		} else if (mode == TriggerMode.TRANSITION) {
+			func = gen.generateTransitionTFunction(fd, table, funcName);
+			triggers.add(gen.generateTransitionTrigger(id, table, funcName,
+					false));
+			triggers.add(gen.generateTransitionTrigger(id, table, funcName,
+					true));
+		} else {
+			func = gen.generateTFunction(fd, table, funcName);
+			triggers.add(gen.generateTrigger(id, table, funcName));
+		}
+		if (mode != TriggerMode.STATEMENT && !fd.getLeftSide().isEmpty()) {
+			indexName = gen.generateIndexName(id, table);
+		}
+
+		// Insert trigger into fd_catalog_trigger.
+		triggerRows.setInt(1, id);
+		triggerRows.setString(2, triggerName);
+		triggerRows.setString(3, funcName);
+		triggerRows.setString(4, indexName);
+		triggerRows.setString(5, mode.name());
+		triggerRows.addBatch();
+
+		if (indexName != null) {
+			ddl.addBatch(gen.generateLhsIndex(fd, table, indexName));
 		}
 
-		return fd;
+		// Implement trigger and trigger function.
+		if (func != null) {
+			ddl.addBatch(func);
+		}
+		for (String trigger : triggers) {
+			ddl.addBatch(trigger);
+		}
 	}
 
 	/**
-	 * Removes a given functional dependency from the database, including all
-	 * trigger constraints and fd_catalog entries.
+	 * Drops the trigger, trigger function and index that implement a
+	 * functional dependency, and deletes their fd_catalog_trigger entry. The
+	 * trigger of the relation is kept if it checks other FDs as well.
 	 * 
 	 * @param id
 	 *            the FD's ID
@@ -277,78 +472,55 @@ public class CatalogManager {
 	 *            the relation in that the FD is valid
 	 * @param con
 	 *            a database connection
+	 * @throws SQLException
+	 *             if the trigger cannot be dropped
 	 */
-	public void removeFD(Integer id, String table, Connection con) {
-
+	private void unimplement(int id, String table, Connection con)
+			throws SQLException {
 		String deleteTrigger = "DELETE FROM fd_catalog_trigger WHERE id = ?";
-		String deleteFromCat = "DELETE FROM fd_catalog WHERE id = ?";
-		String deleteLHS = "DELETE FROM fd_catalog_lhs WHERE id = ?";
-		String deleteRHS = "DELETE FROM fd_catalog_rhs WHERE id = ?";
-		String getName = "SELECT name, function FROM fd_catalog_trigger WHERE id = ?";
+		String getName = "SELECT name, function, lhs_index, mode FROM fd_catalog_trigger WHERE id = ?";
 
 		PreparedStatement pstmt = null;
 
 		ResultSet rs = null;
-		String trigger = null, function = null;
-
-		try {
-			/*
-			 * Get names of the (trigger, trigger function)-pair, that
-			 * implements the FD.
-			 */
-			pstmt = con.prepareStatement(getName);
-			pstmt.setInt(1, id);
-			rs = pstmt.executeQuery();
+		String trigger = null, function = null, index = null, mode = null;
 
-			while (rs.next()) {
-				trigger = rs.getString(1);
-				function = rs.getString(2);
-			}
-
-			rs.close();
+		/*
+		 * Get names of the (trigger, trigger function)-pair, that implements
+		 * the FD.
+		 */
+		pstmt = con.prepareStatement(getName);
+		pstmt.setInt(1, id);
+		rs = pstmt.executeQuery();
+
+		while (rs.next()) {
+			trigger = rs.getString(1);
+			function = rs.getString(2);
+			index = rs.getString(3);
+			mode = rs.getString(4);
+		}
 
-			if (trigger != null) {
-				/*
-				 * The typical use of a PreparedStatement via .setString(1,
-				 * trigger); .setString(2, table); doesn't work here, probably
-				 * because of the escaped quotation marks in the Strings.
-				 */
-				String dropTriggerQuery = "DROP TRIGGER " + trigger + " ON \""
-						+ table + "\"";
-				pstmt = con.prepareStatement(dropTriggerQuery);
-				pstmt.executeUpdate();
+		rs.close();
 
-				// drop function
-				String dropFunctionQuery = "DROP FUNCTION " + function;
-				pstmt = con.prepareStatement(dropFunctionQuery);
-				pstmt.executeUpdate();
+		boolean consolidated = new StatementGenerator()
+				.generateConsolidatedTriggerName(table).equals(trigger);
+		if (trigger != null && !consolidated) {
+			dropTriggers(id, table, trigger, function, mode, con);
+		}
 
-				// delete trigger catalog entries
-				pstmt = con.prepareStatement(deleteTrigger);
-				pstmt.setInt(1, id);
+		if (trigger != null) {
+			// drop the index of a row-level trigger
+			if (index != null) {
+				pstmt = con.prepareStatement("DROP INDEX " + index);
 				pstmt.executeUpdate();
 			}
 
-			// delete left-hand side entries
-			pstmt = con.prepareStatement(deleteLHS);
+			// delete trigger catalog entries
+			pstmt = con.prepareStatement(deleteTrigger);
 			pstmt.setInt(1, id);
 			pstmt.executeUpdate();
-
-			// delete right-hand side entries
-			pstmt = con.prepareStatement(deleteRHS);
-			pstmt.setInt(1, id);
-			pstmt.executeUpdate();
-
-			// delete master catalog entry
-			pstmt = con.prepareStatement(deleteFromCat);
-			pstmt.setInt(1, id);
-			pstmt.executeUpdate();
-
-			pstmt.close();
-		} catch (SQLException ex) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"removeFD", "Couldn't remove FD.", ex);
 		}
+		pstmt.close();
 	}
 
 	/**
@@ -394,267 +566,477 @@ public class CatalogManager {
 	}
 
 	/**
-	 * Creates the fd_catalog user relations.
+	 * Adds the columns to the fd_catalog user relations that catalogs created
+	 * by earlier versions lack, and migrates a catalog of layout 1 to the
+	 * current layout, see {@link #migrateCatalog(Connection)}.
 	 * 
 	 * @param con
 	 *            a database connection
 	 */
-	private void createCatalog(Connection con) {
-		/*
-		 * Create the fd_catalog relation, that holds a unique id, the
-		 * relation's name and whether the fd is implemented by a key
-		 * constraint.
-		 */
-		String createCatalog = "CREATE TABLE fd_catalog (" + "id serial, "
-				+ "relation character varying(80), " + "iskey boolean, "
-				+ "PRIMARY KEY (id) " + ");";
+	private void upgradeCatalog(Connection con) {
+		String query = "SELECT table_name, column_name "
+				+ "FROM information_schema.columns "
+				+ "WHERE table_schema NOT IN "
+				+ "('pg_catalog', 'information_schema') "
+				+ "AND table_name IN ('fd_catalog', 'fd_catalog_trigger')";
+		String addError = "ALTER TABLE fd_catalog ADD COLUMN error real";
+		String addIndex = "ALTER TABLE fd_catalog_trigger "
+				+ "ADD COLUMN lhs_index character varying(80)";
+		String addMode = "ALTER TABLE fd_catalog_trigger "
+				+ "ADD COLUMN mode character varying(20)";
 
-		/*
-		 * Create the fd_catalog_lhs relation, that holds information about the
-		 * fd's left-hand side attributes.
-		 */
-		String createLHS = "CREATE TABLE fd_catalog_lhs (" + "id integer, "
-				+ "attribute character varying(80), "
-				+ "FOREIGN KEY (id) REFERENCES fd_catalog (id) "
-				+ "ON UPDATE CASCADE ON DELETE CASCADE, "
-				+ "PRIMARY KEY (id, attribute) " + ");";
+		Statement stmt;
+		ResultSet rs;
+		try {
+			stmt = con.createStatement();
+			rs = stmt.executeQuery(query);
+			Set<String> columns = new HashSet<String>();
+			while (rs.next()) {
+				columns.add(rs.getString(1) + "." + rs.getString(2));
+			}
+			rs.close();
+			layout = columns.contains("fd_catalog.lhs") ? LAYOUT_VERSION : 1;
 
-		/*
-		 * Create the fd_catalog_rhs relation, that holds information about the
-		 * fd's right-hand side attributes.
-		 */
-		String createRHS = "CREATE TABLE fd_catalog_rhs (" + "id integer, "
-				+ "attribute character varying(80), "
-				+ "PRIMARY KEY (id, attribute), "
-				+ "FOREIGN KEY (id) REFERENCES fd_catalog (id) "
-				+ "ON UPDATE CASCADE ON DELETE CASCADE " + ");";
+			if (!columns.contains("fd_catalog.error")) {
+				stmt.executeUpdate(addError);
+			}
+			if (!columns.contains("fd_catalog_trigger.lhs_index")) {
+				stmt.executeUpdate(addIndex);
+			}
+			if (!columns.contains("fd_catalog_trigger.mode")) {
+				stmt.executeUpdate(addMode);
+			}
+			stmt.close();
 
-		/*
-		 * Create the fd_catalog_trigger relation, that holds information about
-		 * the fd's implementing trigger and trigger function.
-		 */
-		String createTriggers = "CREATE TABLE fd_catalog_trigger ( "
-				+ "id integer, " + "name character varying(80), "
-				+ "function character varying(80), "
-				+ "FOREIGN KEY (id) REFERENCES fd_catalog (id) "
-				+ "ON UPDATE CASCADE ON DELETE CASCADE, " + "PRIMARY KEY (id) "
-				+ ");";
+			if (!columns.contains("fd_catalog.lhs")) {
+				migrateCatalog(con);
+			}
+		} catch (SQLException ex) {
+			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+					"upgradeCatalog", "Couldn't upgrade catalog.", ex);
+		}
+	}
+
+	/**
+	 * Migrates a catalog of layout 1 to the current layout in a single
+	 * transaction: the attributes of fd_catalog_lhs and fd_catalog_rhs are
+	 * copied into arrays in fd_catalog, the two relations are dropped and
+	 * fd_catalog is indexed by relation. If the migration fails, e.g. because
+	 * the user may not alter the catalog, it keeps layout 1, which is still
+	 * read and written.
+	 * 
+	 * @param con
+	 *            a database connection
+	 */
+	private void migrateCatalog(Connection con) {
+		String addSides = "ALTER TABLE fd_catalog "
+				+ "ADD COLUMN lhs text[], ADD COLUMN rhs text[]";
+		String copySides = "UPDATE fd_catalog fd SET "
+				+ "lhs = ARRAY(SELECT attribute FROM fd_catalog_lhs l "
+				+ "WHERE l.id = fd.id), "
+				+ "rhs = ARRAY(SELECT attribute FROM fd_catalog_rhs r "
+				+ "WHERE r.id = fd.id)";
+		String requireSides = "ALTER TABLE fd_catalog "
+				+ "ALTER COLUMN lhs SET NOT NULL, ALTER COLUMN rhs SET NOT NULL";
+		String dropSides = "DROP TABLE fd_catalog_lhs, fd_catalog_rhs";
 
 		Statement stmt;
 		try {
 			con.setAutoCommit(false);
 
 			stmt = con.createStatement();
-			stmt.executeUpdate(createCatalog);
-			stmt.executeUpdate(createLHS);
-			stmt.executeUpdate(createRHS);
-			stmt.executeUpdate(createTriggers);
+			stmt.executeUpdate(addSides);
+			stmt.executeUpdate(copySides);
+			stmt.executeUpdate(requireSides);
+			stmt.executeUpdate(dropSides);
+			stmt.executeUpdate(CREATE_RELATION_INDEX);
 			stmt.close();
 
 			con.commit();
 			con.setAutoCommit(true);
+			layout = LAYOUT_VERSION;
 		} catch (SQLException ex) {
 			try {
 				con.rollback();
+				con.setAutoCommit(true);
 			} catch (SQLException ex1) {
 				logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-						"createCatalog", "Couldn't rollback transaction.", ex1);
+						"migrateCatalog", "Couldn't rollback transaction.", ex1);
 			}
 			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"createCatalog", "Couldn't commit transaction.", ex);
+					"migrateCatalog", "Couldn't migrate catalog.", ex);
 		}
 	}
 
 	/**
-	 * Retrieves functional dependencies from the fd_catalog relations that are
-	 * implemented via a SQL key constraint.
+	 * Drops the triggers and the trigger function of a single functional
+	 * dependency.
 	 * 
+	 * @param id
+	 *            the FD's ID
+	 * @param table
+	 *            the relation in that the FD is valid
+	 * @param trigger
+	 *            the name of the trigger
+	 * @param function
+	 *            the name of the trigger function
+	 * @param mode
+	 *            the name of the trigger mode, null for catalogs of earlier
+	 *            versions
 	 * @param con
 	 *            a database connection
+	 * @throws SQLException
+	 *             if a trigger cannot be dropped
 	 */
-	private void fetchKeyFD(Connection con) {
-
-		String keyQuery = "SELECT fd.id, " + "attribute "
-				+ "FROM fd_catalog fd " + "INNER JOIN fd_catalog_lhs lhs  "
-				+ "ON fd.id = lhs.id " + "WHERE iskey = TRUE "
-				+ "AND fd.relation = ?";
-
-		PreparedStatement queryKeys;
-		ResultSet rs = null;
-
+	private void dropTriggers(int id, String table, String trigger,
+			String function, String mode, Connection con) throws SQLException {
 		/*
-		 * Temporary variables. keyMap maps the fd's unique id to a set of
-		 * left-hand side column names.
+		 * The typical use of a PreparedStatement via .setString(1, trigger);
+		 * .setString(2, table); doesn't work here, probably because of the
+		 * escaped quotation marks in the Strings.
 		 */
-		SortedMap<Integer, SortedSet<String>> keyMap;
-		SortedSet<String> lhs;
-
-		try {
-			queryKeys = con.prepareStatement(keyQuery);
+		Statement stmt = con.createStatement();
+		stmt.executeUpdate("DROP TRIGGER " + trigger + " ON \"" + table + "\"");
+
+		// drop the second trigger of a transition table check
+		if (TriggerMode.TRANSITION.name().equals(mode)) {
+			stmt.executeUpdate("DROP TRIGGER "
+					+ new StatementGenerator().generateUpdateTriggerName(id,
+							table) + " ON \"" + table + "\"");
+		}
 
-			String table = null;
-			int id;
-			String column;
+		// drop function
+		stmt.executeUpdate("DROP FUNCTION " + function);
+		stmt.close();
+	}
 
-			/*
-			 * Gets the fd's id and all left-hand side attributes for each
-			 * relation in the schema and stores them in a map. If keyMap
-			 * already contains the retrieved id as a key, get it's associated
-			 * set and add the column name to it. If keyMap doesn't contain id
-			 * as a key, create a new set, add the column to it and put the (id,
-			 * set)-tupel into the map.
-			 */
-			for (Relation rel : schema.getRelations()) {
-				table = rel.getRelationName();
-				keyMap = new TreeMap<Integer, SortedSet<String>>();
+	/**
+	 * Regenerates the trigger that checks all FDs of a relation that are
+	 * implemented by it, after FDs have been added or removed. In the
+	 * {@link TriggerMode#CONSOLIDATED} mode, FDs of the relation whose
+	 * triggers were created before trigger modes were recorded are moved to it
+	 * first. FDs with a recorded mode keep it, as it may have been chosen for
+	 * the FD with {@link #changeTriggerMode}.
+	 * The trigger is dropped if the relation has no FDs left that it checks.
+	 * 
+	 * @param table
+	 *            the relation
+	 * @param con
+	 *            a database connection
+	 */
+	public void updateConsolidatedTrigger(String table, Connection con) {
+		String ownTriggers = "SELECT t.id, t.name, t.function, t.lhs_index, t.mode "
+				+ "FROM fd_catalog fd INNER JOIN fd_catalog_trigger t "
+				+ "ON fd.id = t.id WHERE fd.relation = ? AND t.name <> ? "
+				+ "AND t.mode IS NULL";
+		String updateTrigger = "UPDATE fd_catalog_trigger "
+				+ "SET name = ?, function = ?, mode = ? WHERE id = ?";
+		String updateIndex = "UPDATE fd_catalog_trigger "
+				+ "SET lhs_index = ? WHERE id = ?";
+		String fdQuery = "SELECT fd.id, fd.error, " + sideColumns()
+				+ " FROM fd_catalog fd INNER JOIN fd_catalog_trigger t "
+				+ "ON fd.id = t.id WHERE fd.relation = ? AND t.name = ?";
+
+		IStatement gen = new StatementGenerator();
+		String triggerName = gen.generateConsolidatedTriggerName(table);
+		String funcName = gen.generateConsolidatedTFunctionName(table);
 
-				queryKeys.setString(1, table);
-				rs = queryKeys.executeQuery();
+		PreparedStatement pstmt;
+		Statement stmt;
+		ResultSet rs;
+		try {
+			stmt = con.createStatement();
 
+			// FDs whose index is created once their sides are known
+			Set<Integer> unindexed = new HashSet<Integer>();
+			if (triggerMode == TriggerMode.CONSOLIDATED) {
+				pstmt = con.prepareStatement(ownTriggers);
+				pstmt.setString(1, table);
+				pstmt.setString(2, triggerName);
+				rs = pstmt.executeQuery();
+				List<Integer> ids = new ArrayList<Integer>();
 				while (rs.next()) {
-					id = rs.getInt(1);
-					column = rs.getString(2);
-
-					if (keyMap.containsKey(id)) {
-						lhs = keyMap.get(id);
-					} else {
-						lhs = new TreeSet<String>();
-						keyMap.put(id, lhs);
+					ids.add(rs.getInt(1));
+					dropTriggers(rs.getInt(1), table, rs.getString(2), rs
+							.getString(3), rs.getString(5), con);
+					if (rs.getString(4) == null) {
+						unindexed.add(rs.getInt(1));
 					}
-
-					lhs.add(column);
 				}
+				rs.close();
 
-				FDep fd;
-				int key;
-				SortedSet<String> value;
-
-				/*
-				 * For each entry in the map, create a new FDep object and set
-				 * its left side attributes according to the map values.
-				 */
-				for (Map.Entry<Integer, SortedSet<String>> entry : keyMap
-						.entrySet()) {
-					key = entry.getKey();
-					value = entry.getValue();
-
-					fd = new FDep(true);
-					fd.setId(key);
-					fd.setLeftSide(value);
-					SortedSet<String> cols = new TreeSet<String>(rel
-							.getColumns());
-                    cols.removeAll(value);
-					fd.setRightSide(cols);
-					rel.addFDep(fd);
+				pstmt = con.prepareStatement(updateTrigger);
+				for (int id : ids) {
+					pstmt.setString(1, triggerName);
+					pstmt.setString(2, funcName);
+					pstmt.setString(3, TriggerMode.CONSOLIDATED.name());
+					pstmt.setInt(4, id);
+					pstmt.executeUpdate();
 				}
+				pstmt.close();
+			}
+
+			// Collect the FDs of the trigger.
+			pstmt = con.prepareStatement(fdQuery);
+			pstmt.setString(1, table);
+			pstmt.setString(2, triggerName);
+			SortedMap<Integer, FDep> fds = fetchFDs(pstmt);
+			pstmt.close();
 
+			pstmt = con.prepareStatement(updateIndex);
+			for (int id : unindexed) {
+				FDep fd = fds.get(id);
+				if (fd != null && !fd.getLeftSide().isEmpty()) {
+					String indexName = gen.generateIndexName(id, table);
+					stmt.executeUpdate(gen.generateLhsIndex(fd, table,
+							indexName));
+					pstmt.setString(1, indexName);
+					pstmt.setInt(2, id);
+					pstmt.executeUpdate();
+				}
 			}
+			pstmt.close();
 
-			rs.close();
-			queryKeys.close();
+			stmt.executeUpdate("DROP TRIGGER IF EXISTS " + triggerName
+					+ " ON \"" + table + "\"");
+			if (fds.isEmpty()) {
+				stmt.executeUpdate("DROP FUNCTION IF EXISTS " + funcName);
+			} else {
+				stmt.executeUpdate(gen.generateConsolidatedTFunction(fds
+						.values(), table, funcName));
+				stmt.executeUpdate(gen.generateConsolidatedTrigger(table,
+						funcName));
+			}
+			stmt.close();
 		} catch (SQLException ex) {
 			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"fetchKeyFD", "Couldn't get key FDs.", ex);
+					"updateConsolidatedTrigger",
+					"Couldn't update the trigger of the relation.", ex);
 		}
+	}
 
+	/**
+	 * Executes a query for the sides of functional dependencies.
+	 * 
+	 * @param pstmt
+	 *            a query for the ID, error and the arrays of left- and
+	 *            right-hand side attributes, see {@link #sideColumns()}
+	 * @return the FDs, by ID
+	 * @throws SQLException
+	 *             if the query fails
+	 */
+	private SortedMap<Integer, FDep> fetchFDs(PreparedStatement pstmt)
+			throws SQLException {
+		ResultSet rs = pstmt.executeQuery();
+		SortedMap<Integer, FDep> fds = new TreeMap<Integer, FDep>();
+		while (rs.next()) {
+			FDep fd = new FDep(attributes(rs.getArray(3)), attributes(rs
+					.getArray(4)));
+			fd.setId(rs.getInt(1));
+			fd.setError(rs.getDouble(2));
+			fds.put(fd.getId(), fd);
+		}
+		rs.close();
+		return fds;
 	}
 
 	/**
-	 * Retrieves functional dependencies from the fd_catalog relations that are
-	 * implemented via a trigger and, thus, are specified manually by the user.
-	 * These fd can later be removed from the catalog.
+	 * Creates the fd_catalog user relations.
 	 * 
 	 * @param con
 	 *            a database connection
 	 */
-	private void fetchNonKeyFD(Connection con) {
-		String fdQuery = "SELECT fd.id, lhs.attribute, rhs.attribute "
-				+ "FROM fd_catalog fd " + "INNER JOIN fd_catalog_lhs lhs "
-				+ "ON fd.id = lhs.id " + "INNER JOIN fd_catalog_rhs rhs "
-				+ "ON lhs.id = rhs.id " + "WHERE iskey = FALSE "
-				+ "AND fd.relation = ?";
-
-		PreparedStatement queryFD;
-		ResultSet rs = null;
+	private void createCatalog(Connection con) {
+		/*
+		 * Create the fd_catalog relation, that holds a unique id, the
+		 * relation's name, whether the fd is implemented by a key
+		 * constraint, the error of an approximate fd and the fd's left- and
+		 * right-hand side attributes. The right-hand side of a key fd is
+		 * empty, as it consists of all other columns of the relation.
+		 */
+		String createCatalog = "CREATE TABLE fd_catalog (" + "id serial, "
+				+ "relation character varying(80), " + "iskey boolean, "
+				+ "error real, " + "lhs text[] NOT NULL, "
+				+ "rhs text[] NOT NULL, "
+				+ "PRIMARY KEY (id) " + ");";
 
 		/*
-		 * Temporary variables. keyMap maps the FD's unique id to a set of left-
-		 * and right-hand side column names.
+		 * Create the fd_catalog_trigger relation, that holds information about
+		 * the fd's implementing trigger and trigger function, the index
+		 * supporting it and the trigger mode.
 		 */
-		SortedMap<Integer, List<SortedSet<String>>> keyMap;
-		List<SortedSet<String>> att;
-		SortedSet<String> lhs;
-		SortedSet<String> rhs;
+		String createTriggers = "CREATE TABLE fd_catalog_trigger ( "
+				+ "id integer, " + "name character varying(80), "
+				+ "function character varying(80), "
+				+ "lhs_index character varying(80), "
+				+ "mode character varying(20), "
+				+ "FOREIGN KEY (id) REFERENCES fd_catalog (id) "
+				+ "ON UPDATE CASCADE ON DELETE CASCADE, " + "PRIMARY KEY (id) "
+				+ ");";
 
+		Statement stmt;
 		try {
-			queryFD = con.prepareStatement(fdQuery);
-
-			String table = null;
-			int id;
-			String left, right;
-			/*
-			 * Gets the fd's id and all left-hand side attributes as well as all
-			 * right-hand side attributes for each relation in the schema and
-			 * stores them in a map. If keyMap already contains the retrieved id
-			 * as a key, get it's associated sets and add the column name to it.
-			 * If keyMap doesn't contain id as a key, create new sets, add the
-			 * column to it and put the (id, set)-tupel into the map.
-			 */
-			for (Relation rel : schema.getRelations()) {
-				table = rel.getRelationName();
-				keyMap = new TreeMap<Integer, List<SortedSet<String>>>();
+			con.setAutoCommit(false);
 
-				queryFD.setString(1, table);
-				rs = queryFD.executeQuery();
+			stmt = con.createStatement();
+			stmt.executeUpdate(createCatalog);
+			stmt.executeUpdate(CREATE_RELATION_INDEX);
+			stmt.executeUpdate(createTriggers);
+			stmt.close();
 
-				while (rs.next()) {
-					id = rs.getInt(1);
-					left = rs.getString(2);
-					right = rs.getString(3);
+			con.commit();
+			con.setAutoCommit(true);
+		} catch (SQLException ex) {
+			try {
+				con.rollback();
+			} catch (SQLException ex1) {
+				logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+						"createCatalog", "Couldn't rollback transaction.", ex1);
+			}
+			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+					"createCatalog", "Couldn't commit transaction.", ex);
+		}
+	}
 
-					if (keyMap.containsKey(id)) {
-						lhs = keyMap.get(id).get(0);
-						rhs = keyMap.get(id).get(1);
-					} else {
-						lhs = new TreeSet<String>();
-						rhs = new TreeSet<String>();
-						att = new ArrayList<SortedSet<String>>();
+	/**
+	 * Retrieves the functional dependencies of all relations in the schema
+	 * from the fd_catalog relations in a single query. Every FD is one row
+	 * with an array of attributes for each side, and the rows are fetched
+	 * in chunks of {@link #FETCH_SIZE} through a cursor.
+	 * <p>
+	 * The FDs are also registered by id in the registry of the schema. FDs
+	 * implemented via a key constraint determine all other columns of their
+	 * relation. The others are implemented via a trigger and, thus, are
+	 * specified manually by the user. These FDs can later be removed from the
+	 * catalog.
+	 * 
+	 * @param con
+	 *            a database connection
+	 */
+	private void fetchSchemaFD(Connection con) {
+		String fdQuery = "SELECT fd.id, fd.relation, fd.iskey, fd.error, "
+				+ sideColumns() + " FROM fd_catalog fd "
+				+ "ORDER BY fd.relation, fd.id";
+
+		Map<String, Relation> relations = new HashMap<String, Relation>();
+		for (Relation rel : schema.getRelations()) {
+			relations.put(rel.getRelationName(), rel);
+		}
 
-						att.add(lhs);
-						att.add(rhs);
+		try {
+			boolean autoCommit = con.getAutoCommit();
+			// the driver only fetches in chunks within a transaction
+			con.setAutoCommit(false);
+			Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			try {
+				stmt.setFetchSize(FETCH_SIZE);
+				ResultSet rs = stmt.executeQuery(fdQuery);
 
-						keyMap.put(id, att);
+				Relation rel = null;
+				String table = null;
+				while (rs.next()) {
+					/*
+					 * The rows are ordered by relation, so the relation only
+					 * has to be looked up when it changes. FDs of relations
+					 * that are not part of the schema are skipped.
+					 */
+					if (!rs.getString(2).equals(table)) {
+						table = rs.getString(2);
+						rel = relations.get(table);
+					}
+					if (rel == null) {
+						continue;
 					}
 
-					lhs.add(left);
-					rhs.add(right);
-				}
-
-				FDep fd;
-				int key;
-				List<SortedSet<String>> value;
-				/*
-				 * For each entry in the map, create a new FDep object and set
-				 * its left and right side attributes according to the map
-				 * values.
-				 */
-				for (Map.Entry<Integer, List<SortedSet<String>>> entry : keyMap
-						.entrySet()) {
-					key = entry.getKey();
-					value = entry.getValue();
-
-					fd = new FDep(value.get(0), value.get(1));
-					fd.setId(key);
+					SortedSet<String> lhs = attributes(rs.getArray(5));
+					FDep fd;
+					if (rs.getBoolean(3)) {
+						fd = new FDep(true);
+						fd.setLeftSide(lhs);
+						SortedSet<String> cols = new TreeSet<String>(rel
+								.getColumns());
+						cols.removeAll(lhs);
+						fd.setRightSide(cols);
+					} else {
+						fd = new FDep(lhs, attributes(rs.getArray(6)));
+						fd.setError(rs.getDouble(4));
+					}
+					fd.setId(rs.getInt(1));
 					rel.addFDep(fd);
+					schema.getFDepRegistry().put(fd);
+				}
+				rs.close();
+			} finally {
+				stmt.close();
+				if (autoCommit) {
+					con.commit();
+					con.setAutoCommit(true);
 				}
-
 			}
-			rs.close();
-			queryFD.close();
 		} catch (SQLException ex) {
 			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"fetchNonKeyFD", "Couldn't get non-key FDs.", ex);
+					"fetchSchemaFD", "Couldn't get FDs.", ex);
+		}
+	}
+
+	/**
+	 * @param array
+	 *            an array of attribute names
+	 * @return the attribute names
+	 * @throws SQLException
+	 *             if the array cannot be read
+	 */
+	private static SortedSet<String> attributes(Array array)
+			throws SQLException {
+		SortedSet<String> attributes = new TreeSet<String>();
+		for (Object attribute : (Object[]) array.getArray()) {
+			attributes.add((String) attribute);
+		}
+		return attributes;
+	}
+
+	/**
+	 * Returns the select list for the left- and right-hand side attributes of
+	 * an FD as arrays, for the layout of the loaded catalog. The fd_catalog
+	 * relation must be aliased <code>fd</code>.
+	 * 
+	 * @return the select list
+	 */
+	private String sideColumns() {
+		if (layout == 1) {
+			/*
+			 * ARRAY(subquery) instead of array_agg, which needs PostgreSQL
+			 * 8.4.
+			 */
+			return "ARRAY(SELECT lhs.attribute FROM fd_catalog_lhs lhs "
+					+ "WHERE lhs.id = fd.id), "
+					+ "ARRAY(SELECT rhs.attribute FROM fd_catalog_rhs rhs "
+					+ "WHERE rhs.id = fd.id)";
+		}
+		return "fd.lhs, fd.rhs";
+	}
+
+	/**
+	 * Returns a literal for a <code>text[]</code> parameter, as the driver
+	 * cannot create arrays.
+	 * 
+	 * @param attributes
+	 *            attribute names
+	 * @return the array literal, e.g. <code>{"A","B"}</code>
+	 */
+	private static String arrayLiteral(Collection<String> attributes) {
+		StringBuffer sb = new StringBuffer("{");
+		for (String attribute : attributes) {
+			if (sb.length() > 1) {
+				sb.append(',');
+			}
+			sb.append('"');
+			sb.append(attribute.replace("\\", "\\\\").replace("\"",
+					"\\\""));
+			sb.append('"');
 		}
+		return sb.append('}').toString();
 	}
 
 	/**
@@ -671,6 +1053,8 @@ public class CatalogManager {
 	private void insert(String table, Set<String> columns, Connection con) {
 
 		String insertCatalogQuery = "INSERT INTO fd_catalog (relation, iskey) VALUES(?, true)";
+		String insertCatalogV2Query = "INSERT INTO fd_catalog (relation, iskey, lhs, rhs) "
+				+ "VALUES(?, true, ?, '{}')";
 		String insertLHSQuery = "INSERT INTO fd_catalog_lhs VALUES(?, ?)";
 		String getIDQuery = "SELECT MAX(id) FROM fd_catalog WHERE relation = ?";
 
@@ -683,6 +1067,16 @@ public class CatalogManager {
 		int id = -1;
 
 		try {
+			if (layout != 1) {
+				// A single row, which needs no transaction.
+				insertCatalog = con.prepareStatement(insertCatalogV2Query);
+				insertCatalog.setString(1, table);
+				insertCatalog.setObject(2, arrayLiteral(columns), Types.OTHER);
+				insertCatalog.executeUpdate();
+				insertCatalog.close();
+				return;
+			}
+
 			con.setAutoCommit(false);
 
 			insertCatalog = con.prepareStatement(insertCatalogQuery);
@@ -732,212 +1126,67 @@ public class CatalogManager {
 	}
 
 	/**
-	 * Fetches primary key constraints and inserts them as functional
-	 * dependencies into the fd_catalog.
+	 * Returns the constraints of the database, which are loaded if they have
+	 * not been loaded since the schema was loaded or
+	 * {@link #invalidateConstraints()} was called.
 	 * 
 	 * @param con
 	 *            a database connection
+	 * @return the constraints, none if they cannot be loaded
 	 */
-	private void insertPrimaries(Connection con) {
-		Statement stmt;
-		DatabaseMetaData dbmd;
-
-		ResultSet rs = null;
-		Set<String> columns = null;
-
-		try {
-			stmt = con.createStatement();
-			/*
-			 * Retrieves a <code>DatabaseMetaData</code> object that contains
-			 * metadata about the database to which this <code>Connection</code>
-			 * object represents a connection. This includes the primary keys.
-			 */
-			dbmd = con.getMetaData();
-
-			// For each relation, get primary keys.
-			for (Relation rel : schema.getRelations()) {
-				columns = new HashSet<String>();
-				String table = rel.getRelationName();
-
-				rs = dbmd.getPrimaryKeys(null, null, table);
-
-				// For each attribute of the key, add it to the colums set.
-				while (rs.next()) {
-					String column = rs.getString("COLUMN_NAME");
-					columns.add(column);
-				}
-				// Insert attributes into the relation.
-				insert(table, columns, con);
-
+	public ConstraintCache getConstraints(Connection con) {
+		if (!constraints.isLoaded()) {
+			try {
+				constraints.load(con);
+			} catch (SQLException ex) {
+				logger.logp(Level.SEVERE, CatalogManager.class.getName(),
+						"getConstraints", "Couldn't fetch constraints.", ex);
 			}
-
-			rs.close();
-			stmt.close();
-		} catch (SQLException ex) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"insertPrimaries",
-					"Couldn't insert primary keys into catalog.", ex);
 		}
+		return constraints;
+	}
 
+	/**
+	 * Discards the loaded constraints of the database after DDL that changed
+	 * them, so that they are loaded again on their next use.
+	 */
+	public void invalidateConstraints() {
+		constraints.invalidate();
 	}
 
 	/**
-	 * Checks whether the given FD is implemented as a unique constraint in the
-	 * given table.
+	 * Inserts the primary key constraints of all relations as functional
+	 * dependencies into the fd_catalog.
 	 * 
-	 * @param table
-	 *            a table name
-	 * @param fd
-	 *            a FD
 	 * @param con
 	 *            a database connection
-	 * @return true, if FD is unique in <code>table</code>
 	 */
-	private boolean isUnique(String table, FDep fd, Connection con) {
-		boolean isUnique = false;
-
-		ResultSet rsConstraints = null;
-		ResultSet rsColumns = null;
-		PreparedStatement queryColumns = null;
-		PreparedStatement queryConstraints = null;
-
-		// Query unique constraints using information_schema.
-		String constraintQuery = "SELECT " + "constraint_name "
-				+ "FROM information_schema.table_constraints "
-				+ "WHERE table_name = ?" + "AND constraint_type = 'UNIQUE'";
-
-		/*
-		 * Query attributes of a specific unique constraint using
-		 * information_schema.
-		 */
-		String columnsQuery = "SELECT " + "kcu.column_name "
-				+ "FROM information_schema.table_constraints tc "
-				+ "LEFT JOIN information_schema.key_column_usage kcu "
-				+ "ON tc.constraint_catalog = kcu.constraint_catalog "
-				+ "AND tc.constraint_schema = kcu.constraint_schema "
-				+ "AND tc.constraint_name = kcu.constraint_name "
-				+ "WHERE tc.table_name = ? " + "AND tc.constraint_name = ?";
-
-		Set<String> columns = null;
-
-		try {
-			queryConstraints = con.prepareStatement(constraintQuery);
-			queryColumns = con.prepareStatement(columnsQuery);
-			columns = new HashSet<String>();
-
-			// Set table name.
-			queryConstraints.setString(1, table);
-			queryColumns.setString(1, table);
-
-			// Fetch unique constraints.
-			rsConstraints = queryConstraints.executeQuery();
-			String constraintName = null;
-
-			// For each unique constraint fetch corresponding column names.
-			while (rsConstraints.next()) {
-				columns.clear();
-				constraintName = rsConstraints.getString(1);
-
-				queryColumns.setString(2, constraintName);
-				rsColumns = queryColumns.executeQuery();
-				while (rsColumns.next()) {
-					columns.add(rsColumns.getString(1));
-				}
-
-				// If columns equal the FD's LHS attributes, FD is unique.
-				if (columns.equals(fd.getLeftSide())) {
-					isUnique = true;
-				}
-
-				rsColumns.close();
+	private void insertPrimaries(Connection con) {
+		ConstraintCache cache = getConstraints(con);
+		for (Relation rel : schema.getRelations()) {
+			String table = rel.getRelationName();
+			Set<String> columns = cache.getPrimaryKey(table);
+			// Relations without primary key have no key FD.
+			if (!columns.isEmpty()) {
+				insert(table, columns, con);
 			}
-
-			rsConstraints.close();
-			queryColumns.close();
-			queryConstraints.close();
-
-		} catch (SQLException ex) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"isUnique", "Couldn't fetch unique attributes.", ex);
 		}
-
-		return isUnique;
 	}
 
 	/**
-	 * Fetches unique key constraints and inserts them as functional
+	 * Inserts the unique constraints of all relations as functional
 	 * dependencies into the fd_catalog.
 	 * 
 	 * @param con
 	 *            a database connection
 	 */
 	private void insertUniques(Connection con) {
-		ResultSet rsConstraints = null;
-		ResultSet rsColumns = null;
-		PreparedStatement queryColumns = null;
-		PreparedStatement queryConstraints = null;
-
-		// Query unique constraints using information_schema.
-		String constraintQuery = "SELECT " + "constraint_name "
-				+ "FROM information_schema.table_constraints "
-				+ "WHERE table_name = ?" + "AND constraint_type = 'UNIQUE'";
-
-		/*
-		 * Query attributes of a specific unique constraint using
-		 * information_schema.
-		 */
-		String columnsQuery = "SELECT " + "kcu.column_name "
-				+ "FROM information_schema.table_constraints tc "
-				+ "LEFT JOIN information_schema.key_column_usage kcu "
-				+ "ON tc.constraint_catalog = kcu.constraint_catalog "
-				+ "AND tc.constraint_schema = kcu.constraint_schema "
-				+ "AND tc.constraint_name = kcu.constraint_name "
-				+ "WHERE tc.table_name = ? " + "AND tc.constraint_name = ?";
-
-		Set<String> columns = null;
-
-		try {
-			queryConstraints = con.prepareStatement(constraintQuery);
-			queryColumns = con.prepareStatement(columnsQuery);
-
-			// For each relation fetch unique constraints.
-			for (Relation rel : schema.getRelations()) {
-				columns = new HashSet<String>();
-				String table = rel.getRelationName();
-
-				// Set table name.
-				queryConstraints.setString(1, table);
-				queryColumns.setString(1, table);
-
-				rsConstraints = queryConstraints.executeQuery();
-				String constraintName = null;
-
-				// For each unique constraint fetch corresponding column names.
-				while (rsConstraints.next()) {
-					constraintName = rsConstraints.getString(1);
-
-					queryColumns.setString(2, constraintName);
-					rsColumns = queryColumns.executeQuery();
-
-					while (rsColumns.next()) {
-						columns.add(rsColumns.getString(1));
-					}
-					rsColumns.close();
-
-					// Insert attributes into the relation.
-					insert(table, columns, con);
-
-				}
-				rsConstraints.close();
+		ConstraintCache cache = getConstraints(con);
+		for (Relation rel : schema.getRelations()) {
+			String table = rel.getRelationName();
+			for (Set<String> columns : cache.getUniques(table)) {
+				insert(table, columns, con);
 			}
-
-			queryColumns.close();
-			queryConstraints.close();
-
-		} catch (SQLException ex) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"insertUniques",
-					"Couldn't insert unique keys into catalog.", ex);
 		}
 	}
 
@@ -955,25 +1204,11 @@ public class CatalogManager {
 	public void setAsUnique(String referencedTable, Set<String> ckey,
 			Connection con) {
 
-		ResultSet rs = null;
-		DatabaseMetaData dbmd;
-		Set<String> columns = new HashSet<String>();
+		ConstraintCache cache = getConstraints(con);
 		/**
 		 * Retrieve the relation's primary key attributes.
 		 */
-		try {
-			dbmd = con.getMetaData();
-			rs = dbmd.getPrimaryKeys(null, null, referencedTable);
-
-			while (rs.next()) {
-				String column = rs.getString("COLUMN_NAME");
-				columns.add(column);
-			}
-		} catch (SQLException e) {
-			logger.logp(Level.SEVERE, CatalogManager.class.getName(),
-					"setAsUnique", "Couldn't retrieve primary key attributes.",
-					e);
-		}
+		Set<String> columns = cache.getPrimaryKey(referencedTable);
 
 		/*
 		 * If the retrieved primary key equals the given candidate key, do
@@ -1001,6 +1236,11 @@ public class CatalogManager {
 				stmt = con.createStatement();
 				stmt.executeUpdate(sb.toString());
 				stmt.close();
+
+				// The server names the constraint.
+				cache.add(new Constraint(null, Constraint.Type.UNIQUE,
+						referencedTable, new ArrayList<String>(ckey), null,
+						null, null, null, null));
 			} catch (SQLException ex) {
 				logger.logp(Level.SEVERE, CatalogManager.class.getName(),
 						"setAsUniques", "Couldn't update unique constraint.",
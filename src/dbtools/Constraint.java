@@ -0,0 +1,161 @@
+package dbtools;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A primary key, unique, foreign key or check constraint of a relation, as
+ * read by {@link ConstraintCache}.
+ */
+public class Constraint {
+
+	/**
+	 * The kinds of constraints.
+	 */
+	public enum Type {
+		PRIMARY_KEY, UNIQUE, FOREIGN_KEY, CHECK
+	}
+
+	/** The name of the constraint, null if unknown */
+	private final String name;
+	/** The kind of the constraint */
+	private final Type type;
+	/** The name of the constrained relation */
+	private final String table;
+	/** The constrained columns, in the order of the constraint */
+	private final List<String> columns;
+	/** The name of the referenced relation of a foreign key */
+	private final String referencedTable;
+	/** The referenced columns of a foreign key, in the order of the columns */
+	private final List<String> referencedColumns;
+	/** The actions of a foreign key, e.g. <code>NO ACTION</code> */
+	private final String onUpdate;
+	private final String onDelete;
+	/** The condition of a check constraint, in parentheses */
+	private final String clause;
+
+	/**
+	 * Constructs a constraint. Arguments that do not apply to the type of the
+	 * constraint are null.
+	 *
+	 * @param name
+	 *            the name of the constraint, null if unknown
+	 * @param type
+	 *            the kind of the constraint
+	 * @param table
+	 *            the name of the constrained relation
+	 * @param columns
+	 *            the constrained columns
+	 * @param referencedTable
+	 *            the name of the referenced relation of a foreign key
+	 * @param referencedColumns
+	 *            the referenced columns of a foreign key, in the order of the
+	 *            constrained ones
+	 * @param onUpdate
+	 *            the action of a foreign key on update
+	 * @param onDelete
+	 *            the action of a foreign key on delete
+	 * @param clause
+	 *            the condition of a check constraint
+	 */
+	public Constraint(String name, Type type, String table,
+			List<String> columns, String referencedTable,
+			List<String> referencedColumns, String onUpdate, String onDelete,
+			String clause) {
+		this.name = name;
+		this.type = type;
+		this.table = table;
+		this.columns = Collections.unmodifiableList(columns);
+		this.referencedTable = referencedTable;
+		this.referencedColumns = referencedColumns == null ? null
+				: Collections.unmodifiableList(referencedColumns);
+		this.onUpdate = onUpdate;
+		this.onDelete = onDelete;
+		this.clause = clause;
+	}
+
+	/**
+	 * @return the name of the constraint, null if unknown
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the kind of the constraint
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the name of the constrained relation
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @return the constrained columns, in the order of the constraint
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return the name of the referenced relation of a foreign key
+	 */
+	public String getReferencedTable() {
+		return referencedTable;
+	}
+
+	/**
+	 * @return the referenced columns of a foreign key, in the order of the
+	 *         constrained ones
+	 */
+	public List<String> getReferencedColumns() {
+		return referencedColumns;
+	}
+
+	/**
+	 * @return a map from each column of a foreign key to the column it
+	 *         references, in the order of the constraint
+	 */
+	public Map<String, String> getReferences() {
+		Map<String, String> references = new LinkedHashMap<String, String>();
+		for (int i = 0; i < columns.size(); i++) {
+			references.put(columns.get(i), referencedColumns.get(i));
+		}
+		return references;
+	}
+
+	/**
+	 * @return the action of a foreign key on update, e.g.
+	 *         <code>CASCADE</code>
+	 */
+	public String getOnUpdate() {
+		return onUpdate;
+	}
+
+	/**
+	 * @return the action of a foreign key on delete, e.g.
+	 *         <code>CASCADE</code>
+	 */
+	public String getOnDelete() {
+		return onDelete;
+	}
+
+	/**
+	 * @return the condition of a check constraint, in parentheses
+	 */
+	public String getClause() {
+		return clause;
+	}
+
+	@Override
+	public String toString() {
+		return table + "." + name + " " + type + " " + columns;
+	}
+}
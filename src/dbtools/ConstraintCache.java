@@ -0,0 +1,256 @@
+package dbtools;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the primary key, unique, foreign key and check constraints of all
+ * relations of the database, by relation. They are read from
+ * <code>pg_constraint</code> in a single query, with the columns of each
+ * constraint resolved from its <code>conkey</code> and <code>confkey</code>
+ * arrays, instead of querying <code>information_schema</code> once per
+ * relation and constraint.
+ * <p>
+ * The constraints are loaded on first use. DDL issued through this tool must
+ * either be recorded with {@link #add(Constraint)} or be followed by
+ * {@link #invalidate()}, so that the constraints are read again.
+ */
+public class ConstraintCache {
+
+	/**
+	 * Reads all constraints. The columns are listed in the order of the
+	 * constraint, without unnest, which needs PostgreSQL 8.4.
+	 */
+	private static final String CONSTRAINT_QUERY = "SELECT c.conname, c.contype, "
+			+ "t.relname, r.relname, "
+			+ "ARRAY(SELECT a.attname FROM generate_series(1, "
+			+ "array_upper(c.conkey, 1)) i INNER JOIN pg_attribute a "
+			+ "ON a.attrelid = c.conrelid AND a.attnum = c.conkey[i] "
+			+ "ORDER BY i), "
+			+ "ARRAY(SELECT a.attname FROM generate_series(1, "
+			+ "array_upper(c.confkey, 1)) i INNER JOIN pg_attribute a "
+			+ "ON a.attrelid = c.confrelid AND a.attnum = c.confkey[i] "
+			+ "ORDER BY i), "
+			+ "c.confupdtype, c.confdeltype, pg_get_constraintdef(c.oid) "
+			+ "FROM pg_constraint c "
+			+ "INNER JOIN pg_class t ON t.oid = c.conrelid "
+			+ "INNER JOIN pg_namespace n ON n.oid = t.relnamespace "
+			+ "LEFT JOIN pg_class r ON r.oid = c.confrelid "
+			+ "WHERE c.contype IN ('p', 'u', 'f', 'c') "
+			+ "AND n.nspname NOT IN ('pg_catalog', 'information_schema') "
+			+ "ORDER BY t.relname, c.conname";
+
+	/** The foreign key actions, by their codes "arcnd" */
+	private static final String[] ACTIONS = { "NO ACTION", "RESTRICT",
+			"CASCADE", "SET NULL", "SET DEFAULT" };
+
+	/** The constraints by constrained relation, null until loaded */
+	private Map<String, List<Constraint>> byTable;
+	/** The foreign keys by referenced relation, null until loaded */
+	private Map<String, List<Constraint>> byReferencedTable;
+
+	/**
+	 * @return true if the constraints have been loaded and not invalidated
+	 *         since
+	 */
+	public boolean isLoaded() {
+		return byTable != null;
+	}
+
+	/**
+	 * Reads the constraints of all relations, replacing any loaded ones.
+	 *
+	 * @param con
+	 *            a database connection
+	 * @throws SQLException
+	 *             if the constraints cannot be read
+	 */
+	public void load(Connection con) throws SQLException {
+		Map<String, List<Constraint>> tables = new HashMap<String, List<Constraint>>();
+		Map<String, List<Constraint>> referencedTables = new HashMap<String, List<Constraint>>();
+		Statement stmt = con.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(CONSTRAINT_QUERY);
+			while (rs.next()) {
+				Constraint c;
+				String table = rs.getString(3);
+				List<String> columns = columns(rs.getArray(5));
+				switch (rs.getString(2).charAt(0)) {
+				case 'p':
+					c = new Constraint(rs.getString(1),
+							Constraint.Type.PRIMARY_KEY, table, columns, null,
+							null, null, null, null);
+					break;
+				case 'u':
+					c = new Constraint(rs.getString(1), Constraint.Type.UNIQUE,
+							table, columns, null, null, null, null, null);
+					break;
+				case 'f':
+					c = new Constraint(rs.getString(1),
+							Constraint.Type.FOREIGN_KEY, table, columns, rs
+									.getString(4), columns(rs.getArray(6)),
+							action(rs.getString(7)), action(rs.getString(8)),
+							null);
+					break;
+				default:
+					// like information_schema.check_constraints.check_clause
+					String clause = rs.getString(9);
+					if (clause.startsWith("CHECK ")) {
+						clause = clause.substring(6);
+					}
+					c = new Constraint(rs.getString(1), Constraint.Type.CHECK,
+							table, columns, null, null, null, null, clause);
+				}
+				put(tables, table, c);
+				if (c.getReferencedTable() != null) {
+					put(referencedTables, c.getReferencedTable(), c);
+				}
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+		byTable = tables;
+		byReferencedTable = referencedTables;
+	}
+
+	/**
+	 * Discards the loaded constraints, so that they are read again on the
+	 * next load.
+	 */
+	public void invalidate() {
+		byTable = null;
+		byReferencedTable = null;
+	}
+
+	/**
+	 * Records a constraint that has been created after the constraints were
+	 * loaded. Does nothing if they are not loaded.
+	 *
+	 * @param c
+	 *            the new constraint
+	 */
+	public void add(Constraint c) {
+		if (byTable == null) {
+			return;
+		}
+		put(byTable, c.getTable(), c);
+		if (c.getReferencedTable() != null) {
+			put(byReferencedTable, c.getReferencedTable(), c);
+		}
+	}
+
+	/**
+	 * @param table
+	 *            a relation
+	 * @return all constraints of the relation
+	 */
+	public List<Constraint> getConstraints(String table) {
+		List<Constraint> constraints = byTable == null ? null : byTable
+				.get(table);
+		if (constraints == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(constraints);
+	}
+
+	/**
+	 * @param table
+	 *            a relation
+	 * @param type
+	 *            the kind of constraints
+	 * @return the constraints of the relation of the given kind
+	 */
+	public List<Constraint> getConstraints(String table, Constraint.Type type) {
+		List<Constraint> constraints = new ArrayList<Constraint>();
+		for (Constraint c : getConstraints(table)) {
+			if (c.getType() == type) {
+				constraints.add(c);
+			}
+		}
+		return constraints;
+	}
+
+	/**
+	 * @param table
+	 *            a relation
+	 * @return the columns of the primary key of the relation, empty if it has
+	 *         none
+	 */
+	public Set<String> getPrimaryKey(String table) {
+		Set<String> columns = new LinkedHashSet<String>();
+		for (Constraint c : getConstraints(table, Constraint.Type.PRIMARY_KEY)) {
+			columns.addAll(c.getColumns());
+		}
+		return columns;
+	}
+
+	/**
+	 * @param table
+	 *            a relation
+	 * @return the column sets of the unique constraints of the relation
+	 */
+	public List<Set<String>> getUniques(String table) {
+		List<Set<String>> uniques = new ArrayList<Set<String>>();
+		for (Constraint c : getConstraints(table, Constraint.Type.UNIQUE)) {
+			uniques.add(new LinkedHashSet<String>(c.getColumns()));
+		}
+		return uniques;
+	}
+
+	/**
+	 * @param table
+	 *            a relation
+	 * @return the foreign keys that reference the relation
+	 */
+	public List<Constraint> getReferencingKeys(String table) {
+		List<Constraint> constraints = byReferencedTable == null ? null
+				: byReferencedTable.get(table);
+		if (constraints == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(constraints);
+	}
+
+	private static void put(Map<String, List<Constraint>> map, String table,
+			Constraint c) {
+		List<Constraint> constraints = map.get(table);
+		if (constraints == null) {
+			constraints = new ArrayList<Constraint>();
+			map.put(table, constraints);
+		}
+		constraints.add(c);
+	}
+
+	private static List<String> columns(Array array) throws SQLException {
+		List<String> columns = new ArrayList<String>();
+		for (Object column : (Object[]) array.getArray()) {
+			columns.add((String) column);
+		}
+		return columns;
+	}
+
+	/**
+	 * @param code
+	 *            the code of a foreign key action in
+	 *            <code>pg_constraint</code>
+	 * @return the action as in SQL, null for no foreign key
+	 */
+	private static String action(String code) {
+		if (code == null || code.length() != 1) {
+			return null;
+		}
+		int i = "arcnd".indexOf(code);
+		return i < 0 ? null : ACTIONS[i];
+	}
+}
@@ -1,6 +1,7 @@
 package dbtools;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,7 +41,9 @@ public interface IStatement {
     String generateCreateTable(Map<String, String> typeMap, SynRelation srel);
 
     /**
-     * Generates a SQL statement that implements a trigger function.
+     * Generates a SQL statement that implements a trigger function. The
+     * function of an approximate FD only raises a notice, as the instance
+     * already violates it.
      *
      * @param fd the FD that is to be implemented by the function
      * @param rname the relation's name
@@ -49,6 +52,51 @@ public interface IStatement {
      */
     String generateTFunction(FDep fd, String rname, String fname);
 
+    /**
+     * Generates a SQL statement that implements the trigger function of a
+     * row-level trigger, which only looks up the rows sharing the left-hand
+     * side of the new row.
+     *
+     * @param fd the FD that is to be implemented by the function
+     * @param rname the relation's name
+     * @param fname the trigger function's name
+     * @return a SQL statement that implements the function
+     */
+    String generateRowTFunction(FDep fd, String rname, String fname);
+
+    /**
+     * Generates a SQL statement that implements the trigger function of a
+     * statement-level trigger, which only joins the changed rows of its
+     * transition table with the relation.
+     *
+     * @param fd the FD that is to be implemented by the function
+     * @param rname the relation's name
+     * @param fname the trigger function's name
+     * @return a SQL statement that implements the function
+     */
+    String generateTransitionTFunction(FDep fd, String rname, String fname);
+
+    /**
+     * Generates a SQL statement that implements the trigger function of a
+     * row-level trigger that checks several FDs of a relation at once.
+     *
+     * @param fds the FDs that are to be implemented by the function
+     * @param rname the relation's name
+     * @param fname the trigger function's name
+     * @return a SQL statement that implements the function
+     */
+    String generateConsolidatedTFunction(Collection<FDep> fds, String rname,
+            String fname);
+
+    /**
+     * Generates a name for the trigger function that checks all FDs of a
+     * relation.
+     *
+     * @param rname the relation's name
+     * @return a name for the trigger function
+     */
+    String generateConsolidatedTFunctionName(String rname);
+
     /**
      * Generates a name for a trigger function.
      *
@@ -68,6 +116,57 @@ public interface IStatement {
      */
     String generateTrigger(int id, String rname, String fname);
 
+    /**
+     * Generates a SQL statement that implements a row-level trigger.
+     *
+     * @param id the ID of the FD in the catalog
+     * @param rname the relation's name
+     * @param fname the name of the trigger function
+     * @return a SQL statement that implements a trigger
+     */
+    String generateRowTrigger(int id, String rname, String fname);
+
+    /**
+     * Generates a SQL statement that implements a statement-level trigger
+     * with a transition table, either for INSERT or for UPDATE.
+     *
+     * @param id the ID of the FD in the catalog
+     * @param rname the relation's name
+     * @param fname the name of the trigger function
+     * @param update true for the trigger on UPDATE
+     * @return a SQL statement that implements a trigger
+     */
+    String generateTransitionTrigger(int id, String rname, String fname,
+            boolean update);
+
+    /**
+     * Generates a name for the trigger on UPDATE of an FD that is checked
+     * with transition tables.
+     *
+     * @param id the ID of the FD in the catalog that the trigger is for
+     * @param rname the relation's name
+     * @return a name for the trigger
+     */
+    String generateUpdateTriggerName(int id, String rname);
+
+    /**
+     * Generates a SQL statement that implements the row-level trigger that
+     * checks all FDs of a relation.
+     *
+     * @param rname the relation's name
+     * @param fname the name of the trigger function
+     * @return a SQL statement that implements a trigger
+     */
+    String generateConsolidatedTrigger(String rname, String fname);
+
+    /**
+     * Generates a name for the trigger that checks all FDs of a relation.
+     *
+     * @param rname the relation's name
+     * @return a name for the trigger
+     */
+    String generateConsolidatedTriggerName(String rname);
+
     /**
      * Generates a name for a new trigger.
      *
@@ -77,10 +176,31 @@ public interface IStatement {
      */
     String generateTriggerName(int id, String rname);
 
+    /**
+     * Generates a name for the index on the left-hand side of an FD.
+     *
+     * @param id the ID of the FD in the catalog that the index is for
+     * @param rname the relation's name
+     * @return a name for the index
+     */
+    String generateIndexName(int id, String rname);
+
+    /**
+     * Generates a SQL statement that creates an index on the left-hand side
+     * of an FD, which supports its row-level trigger.
+     *
+     * @param fd the FD, with a non-empty left-hand side
+     * @param rname the relation's name
+     * @param iname the name of the index
+     * @return a SQL statement that creates the index
+     */
+    String generateLhsIndex(FDep fd, String rname, String iname);
+
     /**
      * Generates intra-relation foreign keys for new relations.
      *
      * @param newRelations a set of new relations
+     * @param con a database connection
      * @return a set of SQL statements for adding foreign keys
      */
     Set<String> generateIntraFKeys(Set<SynRelation> newRelations, Connection con);
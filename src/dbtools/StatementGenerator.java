@@ -4,19 +4,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fd.FDep;
-import fd.Relation;
 import fd.SynRelation;
 
 /**
@@ -64,7 +63,43 @@ public class StatementGenerator implements IStatement {
     }
 
     /**
-     * Generates the SQL-Statement to implement the Triggerfunction
+     * Generates the name of the Trigger for updates of a fd that is checked
+     * with transition tables, which needs a trigger per event
+     *
+     * @param id
+     *            the id of the fd in the catalog
+     * @param rname
+     *            the relation name
+     * @return the name for the trigger
+     */
+    public String generateUpdateTriggerName(int id, String rname) {
+        String triggerName = "\"Trigger";
+        triggerName += rname + "FA" + id + "Update\"";
+
+        return triggerName;
+    }
+
+    /**
+     * Generates the name of the index on the left-hand side of a fd, which
+     * supports its row-level trigger
+     *
+     * @param id
+     *            the id of the fd in the catalog
+     * @param rname
+     *            the relation name
+     * @return the name of the index
+     */
+    public String generateIndexName(int id, String rname) {
+        String indexName = "\"Index";
+        indexName += rname + "FA" + id + "\"";
+
+        return indexName;
+    }
+
+    /**
+     * Generates the SQL-Statement to implement the Triggerfunction. Violations
+     * of an approximate FD are reported as notice instead of an exception,
+     * since the instance already infringes it.
      *
      * @param fd
      *            the fd that shall be implemented by the function
@@ -104,7 +139,85 @@ public class StatementGenerator implements IStatement {
             }
         }
         sb.append("IF anzahl > 0 THEN" + nl);
-        sb.append("RAISE EXCEPTION 'Fehler bei FA';" + nl);
+        if (fd.isApproximate()) {
+            sb.append("RAISE NOTICE 'Fehler bei approximativer FA';" + nl);
+        } else {
+            sb.append("RAISE EXCEPTION 'Fehler bei FA';" + nl);
+        }
+        sb.append("END IF;" + nl);
+        sb.append("RETURN NULL;" + nl);
+        sb.append("END;$BODY$" + nl);
+        sb.append("LANGUAGE 'plpgsql'");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the SQL-Statement to implement the Triggerfunction of a
+     * row-level trigger. Instead of joining the whole relation with itself,
+     * only the rows that share the left-hand side of the new row are looked
+     * up, which the index on the left-hand side makes cheap. Violations of an
+     * approximate FD are reported as notice instead of an exception.
+     *
+     * @param fd
+     *            the fd that shall be implemented by the function
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the trigger function name
+     * @return the SQL-Statement to implement the function
+     */
+    public String generateRowTFunction(FDep fd, String rname, String fname) {
+        List<FDep> fds = new ArrayList<FDep>();
+        fds.add(fd);
+        return generateConsolidatedTFunction(fds, rname, fname);
+    }
+
+    /**
+     * Generates the SQL-Statement to implement the Triggerfunction of a
+     * statement-level trigger with a transition table. Only the inserted or
+     * updated rows, which the trigger references as new_rows, are joined with
+     * the relation on the left-hand side, so that a bulk load is checked in
+     * one join instead of a self-join of the whole relation or one query per
+     * row. Violations of an approximate FD are reported as notice.
+     *
+     * @param fd
+     *            the fd that shall be implemented by the function
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the trigger function name
+     * @return the SQL-Statement to implement the function
+     */
+    public String generateTransitionTFunction(FDep fd, String rname,
+            String fname) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("CREATE OR REPLACE FUNCTION " + fname + " RETURNS trigger AS" + nl);
+        sb.append("$BODY$BEGIN" + nl);
+        sb.append("IF EXISTS (SELECT 1 FROM new_rows n, \"" + rname + "\" t" + nl);
+        sb.append("WHERE ");
+        Iterator<String> lhs = fd.getLeftSide().iterator();
+        while (lhs.hasNext()) {
+            String nextLHS = lhs.next();
+            sb.append("t.\"" + nextLHS + "\"=n.\"" + nextLHS + "\"");
+            sb.append(" AND ");
+        }
+        Iterator<String> rhs = fd.getRightSide().iterator();
+        sb.append("(");
+        while (rhs.hasNext()) {
+            String nextRHS = rhs.next();
+            sb.append("t.\"" + nextRHS + "\"!=n.\"" + nextRHS + "\"");
+            if (rhs.hasNext()) {
+                sb.append(" OR ");
+            } else {
+                sb.append(")) THEN" + nl);
+            }
+        }
+        if (fd.isApproximate()) {
+            sb.append("RAISE NOTICE 'Fehler bei approximativer FA';" + nl);
+        } else {
+            sb.append("RAISE EXCEPTION 'Fehler bei FA';" + nl);
+        }
         sb.append("END IF;" + nl);
         sb.append("RETURN NULL;" + nl);
         sb.append("END;$BODY$" + nl);
@@ -113,6 +226,109 @@ public class StatementGenerator implements IStatement {
         return sb.toString();
     }
 
+    /**
+     * Generates the name of the Triggerfunction that checks all fds of a
+     * relation
+     *
+     * @param rname
+     *            the relation name
+     * @return the name of the triggerfunction
+     */
+    public String generateConsolidatedTFunctionName(String rname) {
+        return "\"check" + rname + "FA\"()";
+    }
+
+    /**
+     * Generates the name of the Trigger that checks all fds of a relation
+     *
+     * @param rname
+     *            the relation name
+     * @return the name for the trigger
+     */
+    public String generateConsolidatedTriggerName(String rname) {
+        return "\"Trigger" + rname + "FA\"";
+    }
+
+    /**
+     * Generates the SQL-Statement to implement the Triggerfunction of a
+     * row-level trigger that checks several fds of a relation. The exact fds
+     * are tested in one query, whose conditions are combined with OR, so that
+     * the indexes on their left-hand sides can be used together. Violations
+     * of approximate fds are reported in a second query as notice.
+     *
+     * @param fds
+     *            the fds that shall be implemented by the function
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the trigger function name
+     * @return the SQL-Statement to implement the function
+     */
+    public String generateConsolidatedTFunction(Collection<FDep> fds,
+            String rname, String fname) {
+        List<FDep> exact = new ArrayList<FDep>();
+        List<FDep> approximate = new ArrayList<FDep>();
+        for (FDep fd : fds) {
+            if (fd.isApproximate()) {
+                approximate.add(fd);
+            } else {
+                exact.add(fd);
+            }
+        }
+
+        StringBuffer sb = new StringBuffer();
+        sb.append("CREATE OR REPLACE FUNCTION " + fname + " RETURNS trigger AS" + nl);
+        sb.append("$BODY$BEGIN" + nl);
+        if (!exact.isEmpty()) {
+            appendRowCheck(sb, exact, rname);
+            sb.append("RAISE EXCEPTION 'Fehler bei FA';" + nl);
+            sb.append("END IF;" + nl);
+        }
+        if (!approximate.isEmpty()) {
+            appendRowCheck(sb, approximate, rname);
+            sb.append("RAISE NOTICE 'Fehler bei approximativer FA';" + nl);
+            sb.append("END IF;" + nl);
+        }
+        sb.append("RETURN NULL;" + nl);
+        sb.append("END;$BODY$" + nl);
+        sb.append("LANGUAGE 'plpgsql'");
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends an IF statement that tests whether a row violates one of the
+     * given fds together with the new row.
+     */
+    private void appendRowCheck(StringBuffer sb, List<FDep> fds, String rname) {
+        sb.append("IF EXISTS (SELECT 1 FROM \"" + rname + "\" t" + nl);
+        sb.append("WHERE ");
+        for (int i = 0; i < fds.size(); i++) {
+            if (i > 0) {
+                sb.append(nl + "OR ");
+            }
+            sb.append("(");
+            // a NULL on the left-hand side matches no row, as in the self-join
+            Iterator<String> lhs = fds.get(i).getLeftSide().iterator();
+            while (lhs.hasNext()) {
+                String nextLHS = lhs.next();
+                sb.append("t.\"" + nextLHS + "\"=NEW.\"" + nextLHS + "\"");
+                sb.append(" AND ");
+            }
+            Iterator<String> rhs = fds.get(i).getRightSide().iterator();
+            sb.append("(");
+            while (rhs.hasNext()) {
+                String nextRHS = rhs.next();
+                sb.append("t.\"" + nextRHS + "\"!=NEW.\"" + nextRHS + "\"");
+                if (rhs.hasNext()) {
+                    sb.append(" OR ");
+                }
+            }
+            sb.append("))");
+        }
+        sb.append(") THEN" + nl);
+    }
+
     /**
      * Generates the SQL-Statement to implement the trigger
      *
@@ -133,6 +349,104 @@ public class StatementGenerator implements IStatement {
         return sb.toString();
     }
 
+    /**
+     * Generates the SQL-Statement to implement a row-level trigger, which
+     * checks each inserted or updated row on its own
+     *
+     * @param id
+     *            the id of the fd in the database
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the name of the triggerfunction
+     * @return the SQL-Statement to implement the trigger
+     */
+    public String generateRowTrigger(int id, String rname, String fname) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("CREATE TRIGGER \"Trigger" + rname + "FA" + id + "\"" + nl);
+        sb.append("AFTER INSERT OR UPDATE ON \"" + rname + "\"" + nl);
+        sb.append("FOR EACH ROW EXECUTE PROCEDURE public." + fname + ";");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the SQL-Statement to implement a statement-level trigger with
+     * a transition table. A trigger with a transition table can only fire on
+     * one event, so INSERT and UPDATE need a trigger each.
+     *
+     * @param id
+     *            the id of the fd in the database
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the name of the triggerfunction
+     * @param update
+     *            true for the trigger on UPDATE, false for the one on INSERT
+     * @return the SQL-Statement to implement the trigger
+     */
+    public String generateTransitionTrigger(int id, String rname,
+            String fname, boolean update) {
+        StringBuffer sb = new StringBuffer();
+        if (update) {
+            sb.append("CREATE TRIGGER " + generateUpdateTriggerName(id, rname) + nl);
+            sb.append("AFTER UPDATE ON \"" + rname + "\"" + nl);
+        } else {
+            sb.append("CREATE TRIGGER " + generateTriggerName(id, rname) + nl);
+            sb.append("AFTER INSERT ON \"" + rname + "\"" + nl);
+        }
+        sb.append("REFERENCING NEW TABLE AS new_rows" + nl);
+        sb.append("FOR EACH STATEMENT EXECUTE PROCEDURE public." + fname + ";");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the SQL-Statement to implement the row-level trigger that
+     * checks all fds of a relation
+     *
+     * @param rname
+     *            the relation name
+     * @param fname
+     *            the name of the triggerfunction
+     * @return the SQL-Statement to implement the trigger
+     */
+    public String generateConsolidatedTrigger(String rname, String fname) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("CREATE TRIGGER " + generateConsolidatedTriggerName(rname) + nl);
+        sb.append("AFTER INSERT OR UPDATE ON \"" + rname + "\"" + nl);
+        sb.append("FOR EACH ROW EXECUTE PROCEDURE public." + fname + ";");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the SQL-Statement to create the index on the left-hand side of
+     * a fd
+     *
+     * @param fd
+     *            the fd with a non-empty left-hand side
+     * @param rname
+     *            the relation name
+     * @param iname
+     *            the name of the index
+     * @return the SQL-Statement to create the index
+     */
+    public String generateLhsIndex(FDep fd, String rname, String iname) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("CREATE INDEX " + iname + " ON \"" + rname + "\" (");
+        Iterator<String> lhs = fd.getLeftSide().iterator();
+        while (lhs.hasNext()) {
+            sb.append("\"" + lhs.next() + "\"");
+            if (lhs.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append(")");
+
+        return sb.toString();
+    }
+
     /**
      * Generates the SQL-Statement to create a table specified by the given
      * typeMap
@@ -280,8 +594,15 @@ public class StatementGenerator implements IStatement {
     }
 
     /**
-     * Detects all possible foreign keys between new SynRelations and generates
-     * SQL-Statements to implement foreign keys between new created SynRelations
+     * Detects all foreign keys between new SynRelations and generates
+     * SQL-Statements to implement them. As the new relations are projections
+     * of one relation, a foreign key consists of the same columns in both
+     * relations: the columns of a relation that form a candidate key of
+     * another one reference that key. The keys are determined from the FDs
+     * of the relations, without reading their instances, so that the
+     * transaction of <code>con</code> is not burdened. Inclusion dependencies
+     * between differently named columns are left to the foreign key
+     * suggestions.
      *
      * @param newRelations
      *            a set of all new created SynRelation-objects
@@ -293,82 +614,55 @@ public class StatementGenerator implements IStatement {
             Connection con) {
         CatalogManager catMan = new CatalogManager();
         Set<String> statements = new HashSet<String>();
-        Set<String> colsToRemove;
-        for (Relation rel : newRelations) {
-            Set<Set<String>> power_cols = Relation.powerset(rel.getColumns().toArray(new String[0]));
-
-            String stmt = "SELECT DISTINCT kcu.column_name " + "FROM information_schema.table_constraints tc " + "LEFT JOIN information_schema.key_column_usage kcu " + "ON tc.constraint_catalog = kcu.constraint_catalog " + "AND tc.constraint_schema = kcu.constraint_schema " + "AND tc.constraint_name = kcu.constraint_name " + "LEFT JOIN information_schema.referential_constraints rc " + "ON tc.constraint_catalog = rc.constraint_catalog " + "AND tc.constraint_schema = rc.constraint_schema " + "AND tc.constraint_name = rc.constraint_name " + "LEFT JOIN information_schema.constraint_column_usage ccu " + "ON rc.unique_constraint_catalog = ccu.constraint_catalog " + "AND rc.unique_constraint_schema = ccu.constraint_schema " + "AND rc.unique_constraint_name = ccu.constraint_name " + "WHERE tc.table_name = ? " + "AND constraint_type = 'FOREIGN KEY'";
-
-            ResultSet rs = null;
-            colsToRemove = new HashSet<String>();
-            try {
-                PreparedStatement pstmt = con.prepareStatement(stmt);
-                pstmt.setString(1, rel.getRelationName());
-                rs = pstmt.executeQuery();
-                while (rs.next()) {
-                    colsToRemove.add(rs.getString(1));
-                }
-            } catch (SQLException e) {
-                logger.logp(Level.SEVERE, StatementGenerator.class.getName(),
-                        "generateIntraFKeys", "Couldn't retrieve attributes.",
-                        e);
-            }
-
-            power_cols.removeAll(colsToRemove);
-            List<Set<String>> list = new LinkedList<Set<String>>(power_cols);
-            Comparator<Set<String>> c = new SetComparator();
-            Collections.sort(list, c);
-
-            // Search in all other newRelations if it contains list
-            for (Set<String> potential_foreign_key : list) {
-                if (potential_foreign_key.size() != 0) {
-                    for (Relation different_rel : newRelations) {
-                        if (rel != different_rel) {
-                            if (different_rel.getColumns().containsAll(
-                                    potential_foreign_key)) {
-                                if (different_rel.isKey(potential_foreign_key)) {
-                                    catMan.setAsUnique(different_rel.getRelationName(),
-                                            potential_foreign_key, con);
-                                    StringBuffer fk_atts = new StringBuffer();
-                                    Iterator<String> it = potential_foreign_key.iterator();
-
-                                    while (it.hasNext()) {
-                                        fk_atts.append("\"" + it.next() + "\"");
-                                        if (it.hasNext()) {
-                                            fk_atts.append(",");
-                                        }
-                                    }
-                                    String one_element = fk_atts.toString().split(",")[0].replaceAll("\"", "");
-                                    String name = getFKname(con, one_element, rel.getRelationName());
-
-                                    StringBuffer sb = new StringBuffer();
-                                    sb.append("ALTER TABLE ");
-                                    sb.append("\"" + rel + "\" ");
-                                    sb.append("ADD CONSTRAINT \"" + name + "\" FOREIGN KEY ");
-                                    sb.append("(" + fk_atts + ")" + " REFERENCES \"" + different_rel.getRelationName() + "\" (" + fk_atts.toString() + ");");
-                                    statements.add(sb.toString());
-                                }
-                            }
-                        }
+        Set<String> uniques = new HashSet<String>();
+        for (SynRelation referenced : newRelations) {
+            for (Set<String> key : referenced.determineKeys(false)) {
+                List<String> columns = new ArrayList<String>(
+                        new TreeSet<String>(key));
+                for (SynRelation rel : newRelations) {
+                    if (rel == referenced
+                            || !rel.getColumns().containsAll(key)) {
+                        continue;
                     }
+                    // each referenced key needs a unique constraint only once
+                    if (uniques.add(referenced.getRelationName() + columns)) {
+                        catMan.setAsUnique(referenced.getRelationName(), key,
+                                con);
+                    }
+
+                    String name = getFKname(con, columns.get(0),
+                            rel.getRelationName());
+
+                    StringBuffer sb = new StringBuffer();
+                    sb.append("ALTER TABLE ");
+                    sb.append("\"" + rel.getRelationName() + "\" ");
+                    sb.append("ADD CONSTRAINT \"" + name + "\" FOREIGN KEY ");
+                    sb.append("(" + columnList(columns) + ")");
+                    sb.append(" REFERENCES \"" + referenced.getRelationName()
+                            + "\" (");
+                    sb.append(columnList(columns) + ");");
+                    statements.add(sb.toString());
                 }
             }
         }
 
         return statements;
     }
-}
 
-/**
- * Compares two sets of Strings according to their cardinality.
- * 
- * @author Matthias Meine
- */
-class SetComparator implements Comparator<Set<String>> {
-
-    @Override
-    public int compare(Set<String> arg0, Set<String> arg1) {
-
-        return (((Set<String>) arg1).size() - ((Set<String>) arg0).size());
+    /**
+     * @param columns
+     *            a list of column names
+     * @return the quoted column names, separated by commas
+     */
+    private String columnList(List<String> columns) {
+        StringBuffer sb = new StringBuffer();
+        Iterator<String> it = columns.iterator();
+        while (it.hasNext()) {
+            sb.append("\"" + it.next() + "\"");
+            if (it.hasNext()) {
+                sb.append(",");
+            }
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,29 @@
+package dbtools;
+
+/**
+ * The ways functional dependencies are implemented as triggers.
+ */
+public enum TriggerMode {
+
+    /**
+     * One trigger per statement that joins the whole relation with itself.
+     */
+    STATEMENT,
+    /**
+     * One trigger per row that only looks up the rows sharing the left-hand
+     * side of the new row, supported by an index on the left-hand side.
+     */
+    ROW,
+    /**
+     * Statement-level triggers for INSERT and UPDATE that only join the
+     * changed rows of their transition table with the relation, supported by
+     * the index on the left-hand side. Requires PostgreSQL 10.
+     */
+    TRANSITION,
+    /**
+     * One trigger per relation that checks all its FDs like {@link #ROW}, but
+     * with a single function call and query per row. The trigger is
+     * regenerated whenever the FDs of the relation change.
+     */
+    CONSOLIDATED
+}
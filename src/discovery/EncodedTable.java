@@ -0,0 +1,192 @@
+package discovery;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instance of a relation with dictionary encoded columns. Every value of a
+ * column is replaced by a number that is unique within the column, so that
+ * the discovery algorithms compare integers instead of strings. Values are
+ * compared by their string representation and NULL is treated as an ordinary
+ * value that equals itself, like GROUP BY does.
+ * <p>
+ * The table is read with a single forward-only query. Autocommit is turned off
+ * while reading, so that the JDBC driver fetches the rows in chunks of
+ * {@link #FETCH_SIZE} through a cursor instead of loading the whole result.
+ */
+public class EncodedTable {
+
+	/** The number of rows fetched per round trip */
+	public static final int FETCH_SIZE = 10000;
+
+	/** The name of the relation */
+	private final String name;
+	/** The names of the columns */
+	private final String[] columns;
+	/** The encoded values, one array per column */
+	private final int[][] codes;
+	/** The number of distinct values of each column */
+	private final int[] cardinalities;
+	/** The number of rows */
+	private final int rows;
+
+	/**
+	 * @param name
+	 *            the name of the relation
+	 * @param columns
+	 *            the names of the columns
+	 * @param codes
+	 *            the encoded values, one array per column
+	 * @param cardinalities
+	 *            the number of distinct values of each column
+	 * @param rows
+	 *            the number of rows
+	 */
+	EncodedTable(String name, String[] columns, int[][] codes,
+			int[] cardinalities, int rows) {
+		this.name = name;
+		this.columns = columns;
+		this.codes = codes;
+		this.cardinalities = cardinalities;
+		this.rows = rows;
+	}
+
+	/**
+	 * Reads and encodes the given columns of a relation.
+	 *
+	 * @param con
+	 *            the database connection
+	 * @param table
+	 *            the name of the relation
+	 * @param columnNames
+	 *            the columns that are read
+	 * @return the encoded table
+	 * @throws SQLException
+	 *             if the relation cannot be read
+	 */
+	public static EncodedTable load(Connection con, String table,
+			Collection<String> columnNames) throws SQLException {
+		String[] columns = columnNames.toArray(new String[0]);
+		StringBuffer sb = new StringBuffer("SELECT ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append('"').append(columns[i]).append('"');
+		}
+		sb.append(" FROM \"").append(table).append('"');
+
+		List<Map<String, Integer>> dictionaries = new ArrayList<Map<String, Integer>>();
+		int capacity = 1024;
+		int[][] codes = new int[columns.length][capacity];
+		for (int i = 0; i < columns.length; i++) {
+			dictionaries.add(new HashMap<String, Integer>());
+		}
+		int rows = 0;
+
+		boolean autoCommit = con.getAutoCommit();
+		con.setAutoCommit(false);
+		Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		try {
+			stmt.setFetchSize(FETCH_SIZE);
+			ResultSet rs = stmt.executeQuery(sb.toString());
+			while (rs.next()) {
+				if (rows == capacity) {
+					capacity *= 2;
+					for (int i = 0; i < columns.length; i++) {
+						codes[i] = Arrays.copyOf(codes[i], capacity);
+					}
+				}
+				for (int i = 0; i < columns.length; i++) {
+					Map<String, Integer> dictionary = dictionaries.get(i);
+					String value = rs.getString(i + 1);
+					Integer code = dictionary.get(value);
+					if (code == null) {
+						code = dictionary.size();
+						dictionary.put(value, code);
+					}
+					codes[i][rows] = code;
+				}
+				rows++;
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+			con.commit();
+			con.setAutoCommit(autoCommit);
+		}
+
+		int[] cardinalities = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			codes[i] = Arrays.copyOf(codes[i], rows);
+			cardinalities[i] = dictionaries.get(i).size();
+		}
+		return new EncodedTable(table, columns, codes, cardinalities, rows);
+	}
+
+	/**
+	 * @return the name of the relation
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of columns
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * @param column
+	 *            the position of a column
+	 * @return the name of the column
+	 */
+	public String getColumnName(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * @param column
+	 *            the position of a column
+	 * @return the encoded values of the column, which must not be modified
+	 */
+	public int[] getColumn(int column) {
+		return codes[column];
+	}
+
+	/**
+	 * @param column
+	 *            the position of a column
+	 * @return the number of distinct values of the column
+	 */
+	public int getCardinality(int column) {
+		return cardinalities[column];
+	}
+
+	/**
+	 * @param column
+	 *            the position of a column
+	 * @return the stripped partition of the column
+	 */
+	public StrippedPartition partition(int column) {
+		return StrippedPartition.of(codes[column], cardinalities[column]);
+	}
+}
@@ -0,0 +1,241 @@
+package discovery;
+
+import fd.AttributeIndex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A prefix tree of candidate FDs. Every path from the root spells a left side
+ * in ascending attribute order and each node stores the right side attributes
+ * of the FDs whose left side ends there. Each node also knows all right side
+ * attributes of its subtree, so that the search for generalizations of an FD
+ * only descends into subtrees that can contain one.
+ */
+class FDTree {
+
+	/** The number of attributes */
+	private final int attributes;
+	/** The number of words of the bitsets */
+	private final int words;
+	/** The root, i.e. the empty left side */
+	private final Node root;
+	/** The size of the largest left side ever added */
+	private int depth;
+
+	/**
+	 * A node of the tree.
+	 */
+	private class Node {
+
+		/** The children by attribute, null until the first one is added */
+		Node[] children;
+		/** The right sides of the FDs ending in this node */
+		final long[] fds = new long[words];
+		/** The right sides of all FDs in this subtree */
+		final long[] rhsAttributes = new long[words];
+
+		Node child(int a) {
+			if (children == null) {
+				children = new Node[attributes];
+			}
+			if (children[a] == null) {
+				children[a] = new Node();
+			}
+			return children[a];
+		}
+	}
+
+	/**
+	 * Constructs an empty tree.
+	 *
+	 * @param attributes
+	 *            the number of attributes
+	 */
+	FDTree(int attributes) {
+		this.attributes = attributes;
+		this.words = AttributeIndex.words(attributes);
+		this.root = new Node();
+	}
+
+	/**
+	 * @return the size of the largest left side ever added
+	 */
+	int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Adds the FD <code>lhs -> a</code>.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param a
+	 *            the right side attribute
+	 */
+	void add(long[] lhs, int a) {
+		Node node = root;
+		AttributeIndex.set(node.rhsAttributes, a);
+		int size = 0;
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			node = node.child(b);
+			AttributeIndex.set(node.rhsAttributes, a);
+			size++;
+		}
+		AttributeIndex.set(node.fds, a);
+		depth = Math.max(depth, size);
+	}
+
+	/**
+	 * Removes the FD <code>lhs -> a</code> if it is part of the tree.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param a
+	 *            the right side attribute
+	 */
+	void remove(long[] lhs, int a) {
+		Node node = root;
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0 && node != null; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			node = node.children == null ? null : node.children[b];
+		}
+		if (node != null) {
+			AttributeIndex.clear(node.fds, a);
+		}
+	}
+
+	/**
+	 * Tests whether the tree contains <code>lhs -> a</code> or an FD
+	 * <code>Y -> a</code> with <code>Y</code> a subset of <code>lhs</code>.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param a
+	 *            the right side attribute
+	 * @return true if such an FD exists
+	 */
+	boolean containsGeneralization(long[] lhs, int a) {
+		return containsGeneralization(root, lhs, a, 0);
+	}
+
+	private boolean containsGeneralization(Node node, long[] lhs, int a,
+			int from) {
+		if (AttributeIndex.get(node.fds, a)) {
+			return true;
+		}
+		if (node.children == null) {
+			return false;
+		}
+		for (int b = AttributeIndex.nextSetBit(lhs, from); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			Node child = node.children[b];
+			if (child != null && AttributeIndex.get(child.rhsAttributes, a)
+					&& containsGeneralization(child, lhs, a, b + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all FDs <code>Y -> a</code> that a non-FD contradicts, i.e.
+	 * with <code>Y</code> a subset and <code>a</code> not an element of the
+	 * non-FD. The right sides of the visited subtrees are recomputed on the
+	 * way back, so later searches skip subtrees that became empty.
+	 *
+	 * @param nonFd
+	 *            the attributes that determine no other attribute
+	 * @return the removed FDs as pairs of left side and right sides
+	 */
+	List<long[][]> removeGeneralizations(long[] nonFd) {
+		List<long[][]> removed = new ArrayList<long[][]>();
+		long[] rhs = new long[words];
+		for (int a = 0; a < attributes; a++) {
+			if (!AttributeIndex.get(nonFd, a)) {
+				AttributeIndex.set(rhs, a);
+			}
+		}
+		removeGeneralizations(root, new long[words], nonFd, rhs, 0, removed);
+		return removed;
+	}
+
+	private boolean removeGeneralizations(Node node, long[] path,
+			long[] nonFd, long[] rhs, int from, List<long[][]> removed) {
+		boolean changed = false;
+		long[] invalid = AttributeIndex.and(node.fds, rhs);
+		if (!AttributeIndex.isEmpty(invalid)) {
+			removed.add(new long[][] { Arrays.copyOf(path, words), invalid });
+			for (int w = 0; w < words; w++) {
+				node.fds[w] &= ~invalid[w];
+			}
+			changed = true;
+		}
+		if (node.children != null) {
+			for (int b = AttributeIndex.nextSetBit(nonFd, from); b >= 0; b = AttributeIndex
+					.nextSetBit(nonFd, b + 1)) {
+				Node child = node.children[b];
+				if (child != null
+						&& AttributeIndex.intersects(child.rhsAttributes, rhs)) {
+					AttributeIndex.set(path, b);
+					changed |= removeGeneralizations(child, path, nonFd, rhs,
+							b + 1, removed);
+					AttributeIndex.clear(path, b);
+				}
+			}
+		}
+		if (changed) {
+			System.arraycopy(node.fds, 0, node.rhsAttributes, 0, words);
+			if (node.children != null) {
+				for (Node child : node.children) {
+					if (child != null) {
+						AttributeIndex.orInto(node.rhsAttributes,
+								child.rhsAttributes);
+					}
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Collects the FDs whose left sides have the given size.
+	 *
+	 * @param size
+	 *            the size of the left sides
+	 * @return the FDs as pairs of left side and right sides
+	 */
+	List<long[][]> getLevel(int size) {
+		List<long[][]> level = new ArrayList<long[][]>();
+		collect(root, new long[words], 0, size, level);
+		return level;
+	}
+
+	/**
+	 * @return all FDs as pairs of left side and right sides
+	 */
+	List<long[][]> getAll() {
+		List<long[][]> all = new ArrayList<long[][]>();
+		collect(root, new long[words], 0, -1, all);
+		return all;
+	}
+
+	private void collect(Node node, long[] path, int depth, int size,
+			List<long[][]> result) {
+		if ((size < 0 || depth == size) && !AttributeIndex.isEmpty(node.fds)) {
+			result.add(new long[][] { Arrays.copyOf(path, words),
+					Arrays.copyOf(node.fds, words) });
+		}
+		if (node.children == null || depth == size) {
+			return;
+		}
+		for (int b = 0; b < attributes; b++) {
+			if (node.children[b] != null) {
+				AttributeIndex.set(path, b);
+				collect(node.children[b], path, depth + 1, size, result);
+				AttributeIndex.clear(path, b);
+			}
+		}
+	}
+}
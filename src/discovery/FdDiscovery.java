@@ -0,0 +1,27 @@
+package discovery;
+
+import fd.FDep;
+import java.util.SortedSet;
+
+/**
+ * An algorithm that discovers the minimal non-trivial functional dependencies
+ * that hold on the instance of a relation.
+ */
+public interface FdDiscovery {
+
+	/**
+	 * Limits the size of the left sides. FDs with larger left sides are not
+	 * reported.
+	 *
+	 * @param maxLhsSize
+	 *            the maximum size, 0 for no limit
+	 */
+	void setMaxLhsSize(int maxLhsSize);
+
+	/**
+	 * Discovers the FDs.
+	 *
+	 * @return the minimal FDs with equal left sides composed
+	 */
+	SortedSet<FDep> discover();
+}
@@ -0,0 +1,519 @@
+package discovery;
+
+import fd.FDep;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates a batch of functional dependencies against the instance of a
+ * relation in a single streaming pass.
+ * <p>
+ * For each FD a hash map is kept from the left side values of a row to the
+ * first right side values seen with them. A row with the same left side but a
+ * different right side violates the FD, which is not tracked any further, and
+ * the scan stops as soon as all FDs are violated. Like the comparison of two
+ * rows in SQL, NULL equals nothing: rows with NULL on the left side are
+ * skipped, and NULL on the right side never differs.
+ * <p>
+ * Unlike SQL, values are compared by their text as returned by
+ * {@link ResultSet#getString(int)}, not by the equality of their type. For
+ * types whose equal values may have different texts, e.g.
+ * <code>numeric</code> with different scales (<code>1.0</code> and
+ * <code>1.00</code>) or <code>citext</code>, an FD may be refuted although it
+ * holds, or accepted although equal left sides have different right sides.
+ * Relations with such columns should be validated with
+ * {@link GroupingValidator}, see {@link ValidationStrategy#GROUP_BY}.
+ * <p>
+ * The <code>g3</code> error of an FD, see {@link #error(FDep)}, is computed in
+ * the same pass by counting the right sides of each left side instead of
+ * stopping at the first violation, with the NULL semantics of
+ * {@link GroupingValidator#error(FDep)} but again comparing values by text.
+ * <p>
+ * Each map holds at most {@link #MAX_ENTRIES} left sides. Rows with further
+ * left sides are spilled to {@link #PARTITIONS} temporary files by the hash of
+ * their left side, and each file is validated on its own after the scan,
+ * spilling again if necessary.
+ */
+public class FdValidator {
+
+	/** The number of left sides per FD that are kept in memory */
+	public static final int MAX_ENTRIES = 500000;
+	/** The number of files the rows of an FD are spilled to */
+	public static final int PARTITIONS = 16;
+	/** Separates the values of a left side */
+	private static final char SEPARATOR = '\0';
+
+	/** The database connection */
+	private final Connection con;
+	/** The name of the relation */
+	private final String table;
+
+	/**
+	 * The right sides seen with one left side, counted for the
+	 * <code>g3</code> error.
+	 */
+	private static class Group {
+
+		/** The first non-NULL right side values */
+		final String[] first;
+		/** True if two rows differ in a non-NULL right side value */
+		boolean differs;
+		/** The number of rows without NULL on the right side, by right side */
+		final Map<String, int[]> counts = new HashMap<String, int[]>();
+
+		Group(int rhsSize) {
+			first = new String[rhsSize];
+		}
+
+		/**
+		 * Adds the right side of a row.
+		 */
+		void add(String[] rhs, StringBuffer key) {
+			key.setLength(0);
+			boolean complete = true;
+			for (int i = 0; i < rhs.length; i++) {
+				if (rhs[i] == null) {
+					complete = false;
+					continue;
+				}
+				if (first[i] == null) {
+					first[i] = rhs[i];
+				} else if (!rhs[i].equals(first[i])) {
+					differs = true;
+				}
+				key.append(rhs[i]).append(SEPARATOR);
+			}
+			if (complete) {
+				int[] count = counts.get(key.toString());
+				if (count == null) {
+					counts.put(key.toString(), new int[] { 1 });
+				} else {
+					count[0]++;
+				}
+			}
+		}
+
+		/**
+		 * Counts the rows to remove so that the left side determines the
+		 * right side: all rows without NULL on the right side but those of
+		 * the most frequent right side, and at least one if values differ.
+		 */
+		long violations() {
+			if (!differs) {
+				return 0;
+			}
+			long rows = 0;
+			int max = 0;
+			for (int[] count : counts.values()) {
+				rows += count[0];
+				max = Math.max(max, count[0]);
+			}
+			return Math.max(rows - max, 1);
+		}
+	}
+
+	/**
+	 * The state of the validation of one FD on the rows seen so far.
+	 */
+	private static class Check {
+
+		/** The level of spilling, which selects the hash function */
+		final int level;
+		/** True to count the violating rows instead of stopping at the first */
+		final boolean counting;
+		/** The first non-NULL right side values, by left side */
+		Map<String, String[]> seen = new HashMap<String, String[]>();
+		/** The counted right sides, by left side */
+		Map<String, Group> groups = new HashMap<String, Group>();
+		/** The spilled rows, null until the map is full */
+		File[] files;
+		DataOutputStream[] spill;
+		int[] spilled;
+		boolean violated;
+		/** The number of violating rows, if they are counted */
+		long violations;
+		private final StringBuffer key = new StringBuffer();
+
+		Check(int level, boolean counting) {
+			this.level = level;
+			this.counting = counting;
+		}
+
+		/**
+		 * Adds a row.
+		 */
+		void add(String lhs, String[] rhs) throws IOException {
+			if (counting) {
+				Group group = groups.get(lhs);
+				if (group == null && spill == null
+						&& groups.size() < MAX_ENTRIES) {
+					group = new Group(rhs.length);
+					groups.put(lhs, group);
+				}
+				if (group != null) {
+					group.add(rhs, key);
+					return;
+				}
+			} else {
+				String[] first = seen.get(lhs);
+				if (first != null) {
+					for (int i = 0; i < rhs.length; i++) {
+						if (first[i] == null) {
+							first[i] = rhs[i];
+						} else if (rhs[i] != null
+								&& !rhs[i].equals(first[i])) {
+							violated = true;
+							return;
+						}
+					}
+					return;
+				} else if (spill == null && seen.size() < MAX_ENTRIES) {
+					seen.put(lhs, rhs.clone());
+					return;
+				}
+			}
+
+			if (spill == null) {
+				files = new File[PARTITIONS];
+				spill = new DataOutputStream[PARTITIONS];
+				spilled = new int[PARTITIONS];
+			}
+			int p = partition(lhs);
+			if (spill[p] == null) {
+				files[p] = File.createTempFile("fdvalidator", ".spill");
+				files[p].deleteOnExit();
+				spill[p] = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(files[p])));
+			}
+			write(spill[p], lhs);
+			for (String value : rhs) {
+				write(spill[p], value);
+			}
+			spilled[p]++;
+		}
+
+		/**
+		 * Validates the spilled rows, once all rows have been added. Counted
+		 * violations are summed up over all left sides.
+		 *
+		 * @return true if the FD holds
+		 */
+		boolean finish(int rhsSize) throws IOException {
+			seen = null;
+			if (groups != null) {
+				for (Group group : groups.values()) {
+					violations += group.violations();
+				}
+				groups = null;
+			}
+			if (spill == null) {
+				return !violated && violations == 0;
+			}
+			try {
+				close();
+				for (int p = 0; p < PARTITIONS && !violated; p++) {
+					if (files[p] == null) {
+						continue;
+					}
+					Check check = new Check(level + 1, counting);
+					DataInputStream in = new DataInputStream(
+							new BufferedInputStream(new FileInputStream(
+									files[p])));
+					try {
+						String[] rhs = new String[rhsSize];
+						for (int r = 0; r < spilled[p] && !check.violated; r++) {
+							String lhs = read(in);
+							for (int i = 0; i < rhsSize; i++) {
+								rhs[i] = read(in);
+							}
+							check.add(lhs, rhs);
+						}
+					} finally {
+						in.close();
+					}
+					check.finish(rhsSize);
+					violated = check.violated;
+					violations += check.violations;
+					check.discard();
+				}
+			} finally {
+				discard();
+			}
+			return !violated && violations == 0;
+		}
+
+		/**
+		 * Selects the file of a left side. Each level mixes the hash
+		 * differently, so that a file is split up when it spills again.
+		 */
+		private int partition(String lhs) {
+			int h = lhs.hashCode() ^ (level * 0x9E3779B9);
+			h ^= h >>> 16;
+			h *= 0x85EBCA6B;
+			h ^= h >>> 13;
+			return (h & 0x7FFFFFFF) % PARTITIONS;
+		}
+
+		private void close() throws IOException {
+			for (DataOutputStream out : spill) {
+				if (out != null) {
+					out.close();
+				}
+			}
+		}
+
+		/**
+		 * Releases the map and deletes the spilled rows.
+		 */
+		void discard() throws IOException {
+			seen = null;
+			groups = null;
+			if (spill != null) {
+				close();
+				for (File file : files) {
+					if (file != null) {
+						file.delete();
+					}
+				}
+				spill = null;
+			}
+		}
+	}
+
+	/**
+	 * Constructs a validator for the given relation. The relation is read in
+	 * the current transaction of the connection, if there is one.
+	 *
+	 * @param con
+	 *            the database connection
+	 * @param table
+	 *            the name of the relation
+	 */
+	public FdValidator(Connection con, String table) {
+		this.con = con;
+		this.table = table;
+	}
+
+	/**
+	 * Validates the given FDs with a single scan of the relation.
+	 *
+	 * @param fds
+	 *            the FDs
+	 * @return for each FD, in the order of the list, whether it holds
+	 * @throws SQLException
+	 *             if the relation cannot be read
+	 * @throws IOException
+	 *             if spilled rows cannot be written or read
+	 */
+	public boolean[] validate(List<FDep> fds) throws SQLException,
+			IOException {
+		Check[] checks = new Check[fds.size()];
+		for (int i = 0; i < checks.length; i++) {
+			checks[i] = new Check(0, false);
+		}
+		boolean[] holds = new boolean[fds.size()];
+		scan(fds, checks, holds);
+		return holds;
+	}
+
+	/**
+	 * Computes the <code>g3</code> error of an FD, i.e. the fraction of rows
+	 * that have to be removed so that it holds, with a single scan of the
+	 * relation. Unlike {@link #validate(List)}, the scan does not stop at the
+	 * first violation, and the right sides of each left side are counted.
+	 *
+	 * @param fd
+	 *            the FD
+	 * @return the fraction of violating rows, 0 if the FD holds or the
+	 *         relation is empty
+	 * @throws SQLException
+	 *             if the relation cannot be read
+	 * @throws IOException
+	 *             if spilled rows cannot be written or read
+	 */
+	public double error(FDep fd) throws SQLException, IOException {
+		if (fd.getRightSide().isEmpty()) {
+			return 0;
+		}
+		List<FDep> fds = new ArrayList<FDep>();
+		fds.add(fd);
+		Check[] checks = { new Check(0, true) };
+		long rows = scan(fds, checks, new boolean[1]);
+		return rows == 0 ? 0 : (double) checks[0].violations / rows;
+	}
+
+	/**
+	 * Adds all rows of the relation to the checks of the given FDs and
+	 * finishes them. Checks that do not count violations are dropped when
+	 * violated, and the scan stops once all are.
+	 *
+	 * @param fds
+	 *            the FDs
+	 * @param checks
+	 *            the checks of the FDs
+	 * @param holds
+	 *            receives for each FD whether it holds
+	 * @return the number of rows read
+	 */
+	private long scan(List<FDep> fds, Check[] checks, boolean[] holds)
+			throws SQLException, IOException {
+		// the columns of all FDs, by their position in the query
+		Map<String, Integer> columns = new LinkedHashMap<String, Integer>();
+		int[][] lhs = new int[fds.size()][];
+		int[][] rhs = new int[fds.size()][];
+		for (int i = 0; i < fds.size(); i++) {
+			lhs[i] = positions(fds.get(i).getLeftSide(), columns);
+			rhs[i] = positions(fds.get(i).getRightSide(), columns);
+		}
+		if (columns.isEmpty()) {
+			// FDs without attributes hold trivially
+			Arrays.fill(holds, true);
+			return 0;
+		}
+
+		StringBuffer sb = new StringBuffer("SELECT ");
+		for (String column : columns.keySet()) {
+			if (sb.length() > 7) {
+				sb.append(", ");
+			}
+			sb.append('"').append(column).append('"');
+		}
+		sb.append(" FROM \"").append(table).append('"');
+
+		boolean autoCommit = con.getAutoCommit();
+		// the driver only fetches in chunks within a transaction
+		con.setAutoCommit(false);
+		long count = 0;
+		Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		try {
+			stmt.setFetchSize(EncodedTable.FETCH_SIZE);
+			ResultSet rs = stmt.executeQuery(sb.toString());
+			String[] row = new String[columns.size()];
+			StringBuffer key = new StringBuffer();
+			int active = checks.length;
+			while (active > 0 && rs.next()) {
+				count++;
+				for (int c = 0; c < row.length; c++) {
+					row[c] = rs.getString(c + 1);
+				}
+				rows: for (int i = 0; i < checks.length; i++) {
+					if (checks[i].violated) {
+						continue;
+					}
+					key.setLength(0);
+					for (int c : lhs[i]) {
+						if (row[c] == null) {
+							continue rows;
+						}
+						key.append(row[c]).append(SEPARATOR);
+					}
+					String[] values = new String[rhs[i].length];
+					for (int j = 0; j < values.length; j++) {
+						values[j] = row[rhs[i][j]];
+					}
+					checks[i].add(key.toString(), values);
+					if (checks[i].violated) {
+						checks[i].discard();
+						active--;
+					}
+				}
+			}
+			rs.close();
+
+			for (int i = 0; i < checks.length; i++) {
+				holds[i] = checks[i].finish(rhs[i].length);
+			}
+		} finally {
+			stmt.close();
+			for (Check check : checks) {
+				check.discard();
+			}
+			if (autoCommit) {
+				con.commit();
+				con.setAutoCommit(true);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Validates a single FD.
+	 *
+	 * @param fd
+	 *            the FD
+	 * @return true if the FD holds
+	 * @throws SQLException
+	 *             if the relation cannot be read
+	 * @throws IOException
+	 *             if spilled rows cannot be written or read
+	 */
+	public boolean validate(FDep fd) throws SQLException, IOException {
+		List<FDep> fds = new ArrayList<FDep>();
+		fds.add(fd);
+		return validate(fds)[0];
+	}
+
+	/**
+	 * @param attributes
+	 *            the attributes of one side of an FD
+	 * @param columns
+	 *            the columns of the query so far, to which the attributes are
+	 *            added
+	 * @return the positions of the attributes in the query
+	 */
+	private static int[] positions(Iterable<String> attributes,
+			Map<String, Integer> columns) {
+		List<Integer> positions = new ArrayList<Integer>();
+		for (String a : attributes) {
+			Integer position = columns.get(a);
+			if (position == null) {
+				position = columns.size();
+				columns.put(a, position);
+			}
+			positions.add(position);
+		}
+		int[] result = new int[positions.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = positions.get(i);
+		}
+		return result;
+	}
+
+	private static void write(DataOutputStream out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String read(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,340 @@
+package discovery;
+
+import fd.FDep;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates functional dependencies against the instance of a relation on the
+ * server, so that no rows are transferred to the client. An FD
+ * <code>X -> A, B</code> is violated if a query like
+ *
+ * <pre>
+ * SELECT 1 FROM relation WHERE X IS NOT NULL GROUP BY X
+ * HAVING COUNT(DISTINCT A) &gt; 1 OR COUNT(DISTINCT B) &gt; 1 LIMIT 1
+ * </pre>
+ *
+ * returns a row. This costs a sort or hash of the relation instead of a self
+ * join, and the server stops at the first counterexample. Like the comparison
+ * of two rows, NULL equals nothing: rows with NULL on the left side are
+ * skipped, and NULL on the right side is not counted.
+ * <p>
+ * Up to {@link #BATCH_SIZE} FDs are checked in one statement, with one
+ * <code>UNION ALL</code> branch per FD that returns the position of the FD if
+ * it is violated. Optionally, the FDs are first checked on a sample of the
+ * first rows, which refutes most FDs that do not hold without grouping the
+ * whole relation.
+ * <p>
+ * The <code>g3</code> error of an FD, see {@link #error(FDep)}, is computed
+ * with the same grouping and NULL semantics, so that it is 0 exactly if the FD
+ * holds.
+ */
+public class GroupingValidator {
+
+	/** The maximum number of FDs checked in one statement */
+	public static final int BATCH_SIZE = 50;
+
+	/** The database connection */
+	private final Connection con;
+	/** The name of the relation */
+	private final String table;
+	/** The number of rows of the pre-check, 0 for none */
+	private int sampleSize = 0;
+
+	/**
+	 * Constructs a validator for the given relation.
+	 *
+	 * @param con
+	 *            the database connection
+	 * @param table
+	 *            the name of the relation
+	 */
+	public GroupingValidator(Connection con, String table) {
+		this.con = con;
+		this.table = table;
+	}
+
+	/**
+	 * Enables a pre-check of the FDs on a sample of the relation. Only FDs
+	 * that hold on the sample are checked on the whole relation.
+	 *
+	 * @param sampleSize
+	 *            the number of rows of the sample, 0 for no pre-check
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Validates the given FDs.
+	 *
+	 * @param fds
+	 *            the FDs
+	 * @return for each FD, in the order of the list, whether it holds
+	 * @throws SQLException
+	 *             if the relation cannot be queried
+	 */
+	public boolean[] validate(List<FDep> fds) throws SQLException {
+		boolean[] holds = new boolean[fds.size()];
+		Arrays.fill(holds, true);
+		List<Integer> open = new ArrayList<Integer>();
+		for (int i = 0; i < fds.size(); i++) {
+			// FDs without right side hold trivially
+			if (!fds.get(i).getRightSide().isEmpty()) {
+				open.add(i);
+			}
+		}
+
+		if (sampleSize > 0) {
+			open = refute(fds, open, holds, true);
+		}
+		refute(fds, open, holds, false);
+		return holds;
+	}
+
+	/**
+	 * Validates a single FD.
+	 *
+	 * @param fd
+	 *            the FD
+	 * @return true if the FD holds
+	 * @throws SQLException
+	 *             if the relation cannot be queried
+	 */
+	public boolean validate(FDep fd) throws SQLException {
+		List<FDep> fds = new ArrayList<FDep>();
+		fds.add(fd);
+		return validate(fds)[0];
+	}
+
+	/**
+	 * Computes the <code>g3</code> error of an FD, i.e. the fraction of rows
+	 * that have to be removed so that it holds, in a single query. The rows
+	 * are grouped by both sides, so that each group of equal left sides keeps
+	 * its most frequent right side and loses all other rows. As in
+	 * {@link #validate(FDep)}, rows with NULL on the left side never violate
+	 * the FD, and rows with NULL on the right side are never removed. A group
+	 * whose right sides only differ in such rows loses one row.
+	 *
+	 * @param fd
+	 *            the FD
+	 * @return the fraction of violating rows, 0 if the FD holds or the
+	 *         relation is empty
+	 * @throws SQLException
+	 *             if the relation cannot be queried
+	 */
+	public double error(FDep fd) throws SQLException {
+
+		/*
+		 * Example for A -> B, C:
+		 * SELECT SUM(n), SUM(CASE WHEN d THEN GREATEST(v - m, 1) ELSE 0 END)
+		 * FROM (SELECT SUM(c) AS n, SUM(CASE WHEN k THEN c ELSE 0 END) AS v,
+		 * MAX(CASE WHEN k THEN c ELSE 0 END) AS m, "A" IS NOT NULL
+		 * AND (COUNT(DISTINCT "B") > 1 OR COUNT(DISTINCT "C") > 1) AS d
+		 * FROM (SELECT "A", "B", "C", COUNT(*) AS c,
+		 * "B" IS NOT NULL AND "C" IS NOT NULL AS k
+		 * FROM relation GROUP BY "A", "B", "C") g GROUP BY "A") h
+		 */
+		if (fd.getRightSide().isEmpty()) {
+			return 0;
+		}
+		Set<String> columns = new LinkedHashSet<String>(fd.getLeftSide());
+		columns.addAll(fd.getRightSide());
+		String lhs = columnList(fd.getLeftSide());
+		String both = columnList(columns);
+
+		StringBuffer sb = new StringBuffer("SELECT SUM(n), SUM(CASE WHEN d "
+				+ "THEN GREATEST(v - m, 1) ELSE 0 END) FROM (SELECT SUM(c) "
+				+ "AS n, SUM(CASE WHEN k THEN c ELSE 0 END) AS v, "
+				+ "MAX(CASE WHEN k THEN c ELSE 0 END) AS m, ");
+		for (String a : fd.getLeftSide()) {
+			sb.append('"').append(a).append("\" IS NOT NULL AND ");
+		}
+		sb.append('(');
+		boolean first = true;
+		for (String b : fd.getRightSide()) {
+			if (!first) {
+				sb.append(" OR ");
+			}
+			sb.append("COUNT(DISTINCT \"").append(b).append("\") > 1");
+			first = false;
+		}
+		sb.append(") AS d FROM (SELECT ").append(both).append(
+				", COUNT(*) AS c, ");
+		first = true;
+		for (String b : fd.getRightSide()) {
+			if (!first) {
+				sb.append(" AND ");
+			}
+			sb.append('"').append(b).append("\" IS NOT NULL");
+			first = false;
+		}
+		sb.append(" AS k FROM \"").append(table).append("\" GROUP BY ")
+				.append(both).append(") g");
+		if (!fd.getLeftSide().isEmpty()) {
+			sb.append(" GROUP BY ").append(lhs);
+		}
+		sb.append(") h");
+
+		double error = 0;
+		Statement stmt = con.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(sb.toString());
+			if (rs.next() && rs.getLong(1) > 0) {
+				error = (double) rs.getLong(2) / rs.getLong(1);
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+		return error;
+	}
+
+	/**
+	 * Returns the number of rows of a relation as estimated by the last
+	 * <code>ANALYZE</code>, which is read from the catalog at no cost.
+	 *
+	 * @param con
+	 *            the database connection
+	 * @param table
+	 *            the name of the relation
+	 * @return the estimated number of rows, or -1 if the relation has never
+	 *         been analyzed
+	 * @throws SQLException
+	 *             if the catalog cannot be queried
+	 */
+	public static long estimateRows(Connection con, String table)
+			throws SQLException {
+		PreparedStatement stmt = con.prepareStatement(
+				"SELECT reltuples, relpages FROM pg_class WHERE oid = ?::regclass");
+		try {
+			stmt.setString(1, '"' + table.replace("\"", "\"\"") + '"');
+			ResultSet rs = stmt.executeQuery();
+			long rows = -1;
+			// reltuples is 0 or -1 before the first ANALYZE
+			if (rs.next() && (rs.getFloat(1) > 0 || rs.getInt(2) > 0)) {
+				rows = (long) rs.getFloat(1);
+			}
+			rs.close();
+			return rows;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Checks the given FDs in batches and marks the violated ones.
+	 *
+	 * @param fds
+	 *            all FDs
+	 * @param open
+	 *            the positions of the FDs to check
+	 * @param holds
+	 *            the results, which are set to false for violated FDs
+	 * @param sample
+	 *            true to check on the sample only
+	 * @return the positions of the FDs that were not violated
+	 */
+	private List<Integer> refute(List<FDep> fds, List<Integer> open,
+			boolean[] holds, boolean sample) throws SQLException {
+		List<Integer> remaining = new ArrayList<Integer>();
+		Statement stmt = con.createStatement();
+		try {
+			for (int from = 0; from < open.size(); from += BATCH_SIZE) {
+				List<Integer> batch = open.subList(from, Math.min(from
+						+ BATCH_SIZE, open.size()));
+				ResultSet rs = stmt.executeQuery(query(fds, batch, sample));
+				while (rs.next()) {
+					holds[rs.getInt(1)] = false;
+				}
+				rs.close();
+				for (int i : batch) {
+					if (holds[i]) {
+						remaining.add(i);
+					}
+				}
+			}
+		} finally {
+			stmt.close();
+		}
+		return remaining;
+	}
+
+	/**
+	 * Generates a statement with one branch per FD, which returns the position
+	 * of the FD if it is violated.
+	 */
+	private String query(List<FDep> fds, List<Integer> batch, boolean sample) {
+
+		/*
+		 * Example for A -> B and C -> D, E on the sample:
+		 * (SELECT 0 FROM (SELECT "A", "B", "C", "D", "E" FROM relation
+		 * LIMIT 1000) s WHERE "A" IS NOT NULL GROUP BY "A"
+		 * HAVING COUNT(DISTINCT "B") > 1 LIMIT 1)
+		 * UNION ALL
+		 * (SELECT 1 FROM (...) s WHERE "C" IS NOT NULL GROUP BY "C"
+		 * HAVING COUNT(DISTINCT "D") > 1 OR COUNT(DISTINCT "E") > 1 LIMIT 1)
+		 */
+		String from = '"' + table + '"';
+		if (sample) {
+			Set<String> columns = new LinkedHashSet<String>();
+			for (int i : batch) {
+				columns.addAll(fds.get(i).getLeftSide());
+				columns.addAll(fds.get(i).getRightSide());
+			}
+			from = "(SELECT " + columnList(columns) + " FROM " + from
+					+ " LIMIT " + sampleSize + ") s";
+		}
+
+		StringBuffer sb = new StringBuffer();
+		for (int i : batch) {
+			FDep fd = fds.get(i);
+			if (sb.length() > 0) {
+				sb.append(" UNION ALL ");
+			}
+			sb.append("(SELECT ").append(i).append(" FROM ").append(from);
+			if (!fd.getLeftSide().isEmpty()) {
+				sb.append(" WHERE ");
+				boolean first = true;
+				for (String a : fd.getLeftSide()) {
+					if (!first) {
+						sb.append(" AND ");
+					}
+					sb.append('"').append(a).append("\" IS NOT NULL");
+					first = false;
+				}
+				sb.append(" GROUP BY ").append(columnList(fd.getLeftSide()));
+			}
+			sb.append(" HAVING ");
+			boolean first = true;
+			for (String b : fd.getRightSide()) {
+				if (!first) {
+					sb.append(" OR ");
+				}
+				sb.append("COUNT(DISTINCT \"").append(b).append("\") > 1");
+				first = false;
+			}
+			sb.append(" LIMIT 1)");
+		}
+		return sb.toString();
+	}
+
+	private static String columnList(Iterable<String> columns) {
+		StringBuffer sb = new StringBuffer();
+		for (String column : columns) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append('"').append(column).append('"');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,393 @@
+package discovery;
+
+import fd.AttributeIndex;
+import fd.BitsetKey;
+import fd.FDep;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Discovers all minimal non-trivial functional dependencies that hold on the
+ * instance of a relation with the hybrid approach of HyFD by Papenbrock and
+ * Naumann, which scales to tables with many columns where the lattice of
+ * TANE becomes too large.
+ * <p>
+ * The algorithm alternates between two phases:
+ * <ul>
+ * <li>Sampling compares pairs of rows that share a value in some column. The
+ * attributes on which a pair agrees form a non-FD: they determine none of the
+ * other attributes. Each non-FD is induced into a prefix tree of the minimal
+ * candidate FDs that no non-FD contradicts. Rows are compared within the
+ * classes of the column partitions at growing distances, and the column whose
+ * comparisons contradict candidates most often is sampled next, until this
+ * efficiency drops below a threshold.</li>
+ * <li>Validation checks the candidates level by level against the
+ * partitions. Invalid candidates are specialized,
+ * and if too many candidates of a level fail, the violating row pairs are
+ * fed back and sampling continues with a lower threshold.</li>
+ * </ul>
+ * Like {@link Tane}, FDs with an empty left side are not reported.
+ */
+public class HyFD implements FdDiscovery {
+
+	/** The share of invalid candidates of a level that triggers sampling */
+	public static final double VALIDATION_THRESHOLD = 0.01;
+	/** The initial minimum efficiency of sampling */
+	public static final double SAMPLING_THRESHOLD = 0.01;
+
+	/** The table the FDs are discovered on */
+	private final EncodedTable table;
+	/** The number of attributes */
+	private final int n;
+	/** The number of words of the bitsets */
+	private final int words;
+	/** The maximum size of left sides, 0 for no limit */
+	private int maxLhsSize = 0;
+	/** The partitions of the single columns, sorted for sampling */
+	private StrippedPartition[] partitions;
+	/** The current comparison distance of each column */
+	private int[] windows;
+	/**
+	 * The efficiency of the last sampling run of each column, i.e. the share
+	 * of comparisons that contradicted a candidate
+	 */
+	private double[] efficiencies;
+	/** All non-FDs found so far */
+	private Set<BitsetKey> nonFds;
+	/** The candidate FDs */
+	private FDTree tree;
+
+	/**
+	 * Constructs a discovery for the given table.
+	 *
+	 * @param table
+	 *            the encoded table
+	 */
+	public HyFD(EncodedTable table) {
+		this.table = table;
+		this.n = table.getColumnCount();
+		this.words = AttributeIndex.words(n);
+	}
+
+	/**
+	 * Limits the size of the left sides. FDs with larger left sides are not
+	 * reported.
+	 *
+	 * @param maxLhsSize
+	 *            the maximum size, 0 for no limit
+	 */
+	public void setMaxLhsSize(int maxLhsSize) {
+		this.maxLhsSize = maxLhsSize;
+	}
+
+	/**
+	 * Discovers the FDs.
+	 *
+	 * @return the minimal FDs with equal left sides composed
+	 */
+	public SortedSet<FDep> discover() {
+		partitions = new StrippedPartition[n];
+		for (int a = 0; a < n; a++) {
+			partitions[a] = table.partition(a);
+		}
+		nonFds = new HashSet<BitsetKey>();
+
+		// without any non-FD every single attribute determines all others
+		tree = new FDTree(n);
+		for (int b = 0; b < n; b++) {
+			long[] lhs = new long[words];
+			AttributeIndex.set(lhs, b);
+			for (int a = 0; a < n; a++) {
+				if (a != b) {
+					tree.add(lhs, a);
+				}
+			}
+		}
+
+		double threshold = SAMPLING_THRESHOLD;
+		initSampling();
+		sample(threshold);
+
+		int level = 1;
+		while (level <= tree.getDepth()) {
+			List<int[]> violations = new ArrayList<int[]>();
+			int validated = 0;
+			int invalid = 0;
+			for (long[][] candidate : tree.getLevel(level)) {
+				long[] lhs = candidate[0];
+				long[] rhs = candidate[1];
+				long[] valid = validate(lhs, rhs, violations);
+				validated += AttributeIndex.cardinality(rhs);
+				long[] failed = AttributeIndex.andNot(rhs, valid);
+				for (int a = AttributeIndex.nextSetBit(failed, 0); a >= 0; a = AttributeIndex
+						.nextSetBit(failed, a + 1)) {
+					invalid++;
+					tree.remove(lhs, a);
+					specialize(lhs, lhs, a);
+				}
+			}
+			level++;
+
+			if (invalid > VALIDATION_THRESHOLD * validated
+					&& level <= tree.getDepth()) {
+				for (int[] pair : violations) {
+					compare(pair[0], pair[1]);
+				}
+				threshold /= 2;
+				sample(threshold);
+			}
+		}
+
+		SortedSet<FDep> fds = new TreeSet<FDep>();
+		for (long[][] fd : tree.getAll()) {
+			fds.add(toFDep(fd[0], fd[1]));
+		}
+		partitions = null;
+		tree = null;
+		return fds;
+	}
+
+	/**
+	 * Sorts the classes of each column partition, so that rows that are
+	 * compared are likely to agree on further columns, and runs the first
+	 * comparisons for every column.
+	 */
+	private void initSampling() {
+		windows = new int[n];
+		efficiencies = new double[n];
+		for (int a = 0; a < n; a++) {
+			// the order of the rows within a class does not matter otherwise
+			partitions[a].sortClasses(table.getColumn((a + 1) % n), table
+					.getColumn((a + 2) % n));
+			windows[a] = 1;
+			runWindow(a);
+		}
+	}
+
+	/**
+	 * Samples the most efficient column as long as its efficiency reaches
+	 * the threshold.
+	 *
+	 * @param threshold
+	 *            the minimum share of comparisons that contradict a candidate
+	 */
+	private void sample(double threshold) {
+		while (true) {
+			int best = -1;
+			for (int a = 0; a < n; a++) {
+				if (best < 0 || efficiencies[a] > efficiencies[best]) {
+					best = a;
+				}
+			}
+			if (best < 0 || efficiencies[best] < threshold) {
+				return;
+			}
+			runWindow(best);
+		}
+	}
+
+	/**
+	 * Compares every row of the classes of a column with the row at the
+	 * current distance and increases the distance afterwards.
+	 *
+	 * @param a
+	 *            the column
+	 */
+	private void runWindow(int a) {
+		int distance = windows[a]++;
+		long comparisons = 0;
+		int found = 0;
+		StrippedPartition p = partitions[a];
+		for (int c = 0; c < p.getClassCount(); c++) {
+			for (int i = p.begin(c); i + distance < p.begin(c + 1); i++) {
+				comparisons++;
+				if (compare(p.row(i), p.row(i + distance))) {
+					found++;
+				}
+			}
+		}
+		efficiencies[a] = comparisons == 0 ? 0 : (double) found / comparisons;
+	}
+
+	/**
+	 * Compares two rows. The attributes they agree on form a non-FD, which
+	 * is induced into the candidates right away.
+	 *
+	 * @param r
+	 *            a row
+	 * @param s
+	 *            another row
+	 * @return true if the non-FD contradicted at least one candidate
+	 */
+	private boolean compare(int r, int s) {
+		long[] agree = new long[words];
+		for (int a = 0; a < n; a++) {
+			int[] codes = table.getColumn(a);
+			if (codes[r] == codes[s]) {
+				AttributeIndex.set(agree, a);
+			}
+		}
+		if (AttributeIndex.cardinality(agree) == n
+				|| !nonFds.add(new BitsetKey(agree))) {
+			return false;
+		}
+		List<long[][]> invalid = tree.removeGeneralizations(agree);
+		for (long[][] fd : invalid) {
+			long[] rhs = fd[1];
+			for (int a = AttributeIndex.nextSetBit(rhs, 0); a >= 0; a = AttributeIndex
+					.nextSetBit(rhs, a + 1)) {
+				specialize(fd[0], agree, a);
+			}
+		}
+		return !invalid.isEmpty();
+	}
+
+	/**
+	 * Replaces an invalid candidate <code>lhs -> a</code> by the minimal
+	 * candidates that extend it with an attribute outside the non-FD.
+	 *
+	 * @param lhs
+	 *            the left side of the invalid candidate
+	 * @param nonFd
+	 *            a superset of lhs that does not determine a
+	 * @param a
+	 *            the right side attribute
+	 */
+	private void specialize(long[] lhs, long[] nonFd, int a) {
+		if (maxLhsSize > 0 && AttributeIndex.cardinality(lhs) >= maxLhsSize) {
+			return;
+		}
+		for (int b = 0; b < n; b++) {
+			if (b != a && !AttributeIndex.get(nonFd, b)) {
+				long[] specialization = Arrays.copyOf(lhs, words);
+				AttributeIndex.set(specialization, b);
+				if (!tree.containsGeneralization(specialization, a)) {
+					tree.add(specialization, a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Validates candidates with a common left side. The rows of each class
+	 * of the most selective left side column are grouped by the other left
+	 * side columns, and each group must agree on the right side.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param rhs
+	 *            the right side attributes
+	 * @param violations
+	 *            receives one violating pair of rows per invalid attribute
+	 * @return the right side attributes that are valid
+	 */
+	private long[] validate(long[] lhs, long[] rhs, List<int[]> violations) {
+		long[] valid = Arrays.copyOf(rhs, words);
+		int pivot = -1;
+		int size = 0;
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			if (pivot < 0
+					|| partitions[b].getSize() < partitions[pivot].getSize()) {
+				pivot = b;
+			}
+			size++;
+		}
+		int[][] otherColumns = new int[size - 1][];
+		int k = 0;
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			if (b != pivot) {
+				otherColumns[k++] = table.getColumn(b);
+			}
+		}
+
+		StrippedPartition p = partitions[pivot];
+		Map<Values, Integer> groups = new HashMap<Values, Integer>();
+		for (int c = 0; c < p.getClassCount()
+				&& !AttributeIndex.isEmpty(valid); c++) {
+			groups.clear();
+			for (int i = p.begin(c); i < p.begin(c + 1); i++) {
+				int r = p.row(i);
+				Integer s;
+				if (otherColumns.length == 0) {
+					s = i == p.begin(c) ? null : p.row(p.begin(c));
+				} else {
+					int[] key = new int[otherColumns.length];
+					for (int j = 0; j < key.length; j++) {
+						key[j] = otherColumns[j][r];
+					}
+					Values values = new Values(key);
+					s = groups.get(values);
+					if (s == null) {
+						groups.put(values, r);
+					}
+				}
+				if (s == null) {
+					continue;
+				}
+				for (int a = AttributeIndex.nextSetBit(valid, 0); a >= 0; a = AttributeIndex
+						.nextSetBit(valid, a + 1)) {
+					int[] codes = table.getColumn(a);
+					if (codes[r] != codes[s]) {
+						AttributeIndex.clear(valid, a);
+						violations.add(new int[] { s, r });
+					}
+				}
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * @param lhs
+	 *            the left side
+	 * @param rhs
+	 *            the right side attributes
+	 * @return the FD with column names
+	 */
+	private FDep toFDep(long[] lhs, long[] rhs) {
+		FDep fd = new FDep();
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			fd.addLeftSide(table.getColumnName(b));
+		}
+		for (int b = AttributeIndex.nextSetBit(rhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(rhs, b + 1)) {
+			fd.addRightSide(table.getColumnName(b));
+		}
+		return fd;
+	}
+
+	/**
+	 * The values of a row in some columns, used to group rows.
+	 */
+	private static final class Values {
+
+		private final int[] values;
+		private final int hash;
+
+		Values(int[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Values
+					&& Arrays.equals(values, ((Values) o).values);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package discovery;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An inclusion dependency <code>R[X] &sube; S[Y]</code>: every combination of
+ * values of the columns <code>X</code> of <code>R</code> that contains no NULL
+ * also occurs in the columns <code>Y</code> of <code>S</code>. The columns of
+ * both sides correspond by position, so if <code>Y</code> is a key of
+ * <code>S</code>, <code>X</code> can reference it as foreign key.
+ */
+public class InclusionDependency implements Comparable<InclusionDependency> {
+
+	/** The name of the dependent relation */
+	private final String dependentTable;
+	/** The dependent columns */
+	private final List<String> dependentColumns;
+	/** The name of the referenced relation */
+	private final String referencedTable;
+	/** The referenced columns */
+	private final List<String> referencedColumns;
+
+	/**
+	 * Constructs an inclusion dependency.
+	 *
+	 * @param dependentTable
+	 *            the name of the dependent relation
+	 * @param dependentColumns
+	 *            the dependent columns
+	 * @param referencedTable
+	 *            the name of the referenced relation
+	 * @param referencedColumns
+	 *            the referenced columns, in the order of the dependent ones
+	 */
+	public InclusionDependency(String dependentTable,
+			List<String> dependentColumns, String referencedTable,
+			List<String> referencedColumns) {
+		this.dependentTable = dependentTable;
+		this.dependentColumns = Collections.unmodifiableList(dependentColumns);
+		this.referencedTable = referencedTable;
+		this.referencedColumns = Collections
+				.unmodifiableList(referencedColumns);
+	}
+
+	/**
+	 * @return the name of the dependent relation
+	 */
+	public String getDependentTable() {
+		return dependentTable;
+	}
+
+	/**
+	 * @return the dependent columns
+	 */
+	public List<String> getDependentColumns() {
+		return dependentColumns;
+	}
+
+	/**
+	 * @return the name of the referenced relation
+	 */
+	public String getReferencedTable() {
+		return referencedTable;
+	}
+
+	/**
+	 * @return the referenced columns, in the order of the dependent ones
+	 */
+	public List<String> getReferencedColumns() {
+		return referencedColumns;
+	}
+
+	/**
+	 * @return the number of columns on each side
+	 */
+	public int getArity() {
+		return dependentColumns.size();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof InclusionDependency)) {
+			return false;
+		}
+		InclusionDependency ind = (InclusionDependency) o;
+		return dependentTable.equals(ind.dependentTable)
+				&& dependentColumns.equals(ind.dependentColumns)
+				&& referencedTable.equals(ind.referencedTable)
+				&& referencedColumns.equals(ind.referencedColumns);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = dependentTable.hashCode();
+		h = 31 * h + dependentColumns.hashCode();
+		h = 31 * h + referencedTable.hashCode();
+		return 31 * h + referencedColumns.hashCode();
+	}
+
+	/**
+	 * Compares by the string representation, i.e. by the dependent side
+	 * first.
+	 *
+	 * @param o
+	 *            the inclusion dependency to be compared
+	 * @return a negative integer, zero, or a positive integer as this object
+	 *         is less than, equal to, or greater than the specified object
+	 */
+	public int compareTo(InclusionDependency o) {
+		return toString().compareTo(o.toString());
+	}
+
+	/**
+	 * Returns a string representation like <code>R[A, B] <= S[C, D]</code>.
+	 */
+	@Override
+	public String toString() {
+		return side(dependentTable, dependentColumns) + " <= "
+				+ side(referencedTable, referencedColumns);
+	}
+
+	private static String side(String table, List<String> columns) {
+		StringBuffer sb = new StringBuffer(table).append('[');
+		Iterator<String> it = columns.iterator();
+		while (it.hasNext()) {
+			sb.append(it.next());
+			if (it.hasNext()) {
+				sb.append(", ");
+			}
+		}
+		return sb.append(']').toString();
+	}
+}
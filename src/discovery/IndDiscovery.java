@@ -0,0 +1,725 @@
+package discovery;
+
+import fd.AttributeIndex;
+import fd.Relation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Discovers the unary and n-ary inclusion dependencies that hold between the
+ * instances of relations.
+ * <p>
+ * The unary INDs are found with SPIDER of Bauckmann et al.: the distinct
+ * values of every column are read once and sorted, and all sorted streams are
+ * merged in a single pass. Each time the smallest value is taken from the
+ * streams, a column that contains it can only be included in the columns that
+ * contain it as well. Only columns of the same type are candidates, and a
+ * column is never included in one with fewer distinct values. Streams with
+ * more than {@link #SPILL_SIZE} values, or that exceed the memory budget of
+ * {@link #MEMORY_SIZE} values of all streams, are sorted externally in
+ * temporary files.
+ * <p>
+ * The INDs of arity <code>k + 1</code> are generated apriori style from the
+ * valid INDs of arity <code>k</code>, like MIND of De Marchi et al. does, and
+ * validated with the same merge over the value combinations of their columns.
+ * Value combinations containing NULL are left out, like a foreign key with
+ * MATCH SIMPLE ignores them. Therefore an n-ary IND need not imply its
+ * projections, and it is only found if they hold as well.
+ */
+public class IndDiscovery {
+
+	/** The number of values that are sorted in memory before they spill */
+	public static final int SPILL_SIZE = 100000;
+	/** The number of values that all streams of one merge keep in memory */
+	public static final int MEMORY_SIZE = 1000000;
+	/** Separates the values of a value combination */
+	private static final char SEPARATOR = '\0';
+	/** Reads the names and types of the columns of a relation */
+	private static final String COLUMN_TYPES_QUERY = "SELECT a.attname, "
+			+ "t.typname FROM pg_attribute a INNER JOIN pg_type t "
+			+ "ON t.oid = a.atttypid WHERE a.attrelid = ?::regclass "
+			+ "AND a.attnum > 0 AND NOT a.attisdropped ORDER BY a.attnum";
+
+	/** The database connection */
+	private final Connection con;
+	/** The columns of each relation, in order */
+	private final Map<String, List<String>> relations = new LinkedHashMap<String, List<String>>();
+	/** The maximum arity of INDs, 0 for no limit */
+	private int maxArity = 0;
+	/** The number of values the streams may still keep in memory */
+	private int budget;
+
+	/**
+	 * A list of columns of a relation, i.e. one side of an IND.
+	 */
+	private static class Columns {
+
+		final String table;
+		final List<String> columns;
+
+		Columns(String table, List<String> columns) {
+			this.table = table;
+			this.columns = columns;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Columns && table.equals(((Columns) o).table)
+					&& columns.equals(((Columns) o).columns);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * table.hashCode() + columns.hashCode();
+		}
+	}
+
+	/**
+	 * Reads a sorted run of values from a temporary file.
+	 */
+	private static class RunReader {
+
+		final File file;
+		final DataInputStream in;
+		String current;
+
+		RunReader(File file) throws IOException {
+			this.file = file;
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+		}
+
+		boolean next() throws IOException {
+			int length = in.readInt();
+			if (length < 0) {
+				current = null;
+				return false;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			current = new String(bytes, "UTF-8");
+			return true;
+		}
+
+		void close() throws IOException {
+			in.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Iterates the sorted distinct values of one side of a candidate, either
+	 * from memory or from a temporary file.
+	 */
+	private static class ValueCursor {
+
+		/** The position of the side in the merge */
+		final int index;
+		/** The number of distinct values */
+		final int size;
+		final List<String> values;
+		final RunReader reader;
+		int position = 0;
+		String current;
+
+		ValueCursor(int index, List<String> values) {
+			this.index = index;
+			this.size = values.size();
+			this.values = values;
+			this.reader = null;
+		}
+
+		ValueCursor(int index, int size, RunReader reader) {
+			this.index = index;
+			this.size = size;
+			this.values = null;
+			this.reader = reader;
+		}
+
+		boolean next() throws IOException {
+			if (reader != null) {
+				boolean hasNext = reader.next();
+				current = reader.current;
+				return hasNext;
+			}
+			current = position < size ? values.get(position++) : null;
+			return current != null;
+		}
+
+		void close() throws IOException {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Constructs a discovery on the given connection. The relations are read
+	 * in the current transaction, if there is one, so that relations created
+	 * in it are visible.
+	 *
+	 * @param con
+	 *            the database connection
+	 */
+	public IndDiscovery(Connection con) {
+		this.con = con;
+	}
+
+	/**
+	 * Adds a relation whose columns take part in the discovery.
+	 *
+	 * @param table
+	 *            the name of the relation
+	 * @param columns
+	 *            the columns
+	 */
+	public void addRelation(String table, Collection<String> columns) {
+		relations.put(table, new ArrayList<String>(columns));
+	}
+
+	/**
+	 * Limits the arity of INDs, which bounds the number of levels.
+	 *
+	 * @param maxArity
+	 *            the maximum arity, 0 for no limit
+	 */
+	public void setMaxArity(int maxArity) {
+		this.maxArity = maxArity;
+	}
+
+	/**
+	 * Discovers the inclusion dependencies between the columns of all added
+	 * relations.
+	 *
+	 * @return all valid INDs, including those implied by INDs of larger arity
+	 * @throws SQLException
+	 *             if a relation cannot be read
+	 * @throws IOException
+	 *             if a temporary file cannot be written or read
+	 */
+	public SortedSet<InclusionDependency> discover() throws SQLException,
+			IOException {
+		SortedSet<InclusionDependency> result = new TreeSet<InclusionDependency>();
+		boolean autoCommit = con.getAutoCommit();
+		// the driver only fetches in chunks within a transaction
+		con.setAutoCommit(false);
+		try {
+			Set<InclusionDependency> valid = new HashSet<InclusionDependency>();
+			for (List<Columns> columns : unaryCandidates()) {
+				long[][] refs = new long[columns.size()][];
+				for (int d = 0; d < refs.length; d++) {
+					refs[d] = new long[AttributeIndex.words(refs.length)];
+					for (int r = 0; r < refs.length; r++) {
+						if (r != d) {
+							AttributeIndex.set(refs[d], r);
+						}
+					}
+				}
+				valid.addAll(validate(columns, refs));
+			}
+
+			int arity = 1;
+			while (!valid.isEmpty()) {
+				result.addAll(valid);
+				if (maxArity > 0 && arity == maxArity) {
+					break;
+				}
+				valid = validate(nextCandidates(valid));
+				arity++;
+			}
+		} finally {
+			if (autoCommit) {
+				con.commit();
+				con.setAutoCommit(true);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Discovers the INDs between different relations whose referenced columns
+	 * form a candidate key of the referenced relation, i.e. the foreign keys
+	 * that the instances admit.
+	 *
+	 * @param con
+	 *            the database connection
+	 * @param relations
+	 *            the relations, with their FDs
+	 * @return the INDs that can be implemented as foreign keys
+	 * @throws SQLException
+	 *             if a relation cannot be read
+	 * @throws IOException
+	 *             if a temporary file cannot be written or read
+	 */
+	public static SortedSet<InclusionDependency> discoverForeignKeys(
+			Connection con, Collection<? extends Relation> relations)
+			throws SQLException, IOException {
+		IndDiscovery discovery = new IndDiscovery(con);
+		Map<String, Set<Set<String>>> keys = new HashMap<String, Set<Set<String>>>();
+		int maxKeySize = 1;
+		for (Relation rel : relations) {
+			discovery.addRelation(rel.getRelationName(), rel.getColumns());
+			Set<Set<String>> relKeys = rel.determineKeys(false);
+			keys.put(rel.getRelationName(), relKeys);
+			for (Set<String> key : relKeys) {
+				maxKeySize = Math.max(maxKeySize, key.size());
+			}
+		}
+		discovery.setMaxArity(maxKeySize);
+
+		SortedSet<InclusionDependency> fks = new TreeSet<InclusionDependency>();
+		for (InclusionDependency ind : discovery.discover()) {
+			if (!ind.getDependentTable().equals(ind.getReferencedTable())
+					&& keys.get(ind.getReferencedTable()).contains(
+							new HashSet<String>(ind.getReferencedColumns()))) {
+				fks.add(ind);
+			}
+		}
+		return fks;
+	}
+
+	/**
+	 * Groups all columns by their type, as only columns of the same type can
+	 * be included in each other. The types are read from
+	 * <code>pg_attribute</code> for the relation that the name resolves to,
+	 * like in the queries that read the values, instead of matching the name
+	 * as a pattern in all schemas.
+	 *
+	 * @return the single columns, grouped by type
+	 * @throws SQLException
+	 *             if the types cannot be read
+	 */
+	private Collection<List<Columns>> unaryCandidates() throws SQLException {
+		Map<String, List<Columns>> byType = new LinkedHashMap<String, List<Columns>>();
+		PreparedStatement stmt = con.prepareStatement(COLUMN_TYPES_QUERY);
+		try {
+			for (Map.Entry<String, List<String>> e : relations.entrySet()) {
+				stmt.setString(1, '"' + e.getKey().replace("\"", "\"\"") + '"');
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next()) {
+					String column = rs.getString(1);
+					if (e.getValue().contains(column)) {
+						String type = rs.getString(2);
+						List<Columns> columns = byType.get(type);
+						if (columns == null) {
+							columns = new ArrayList<Columns>();
+							byType.put(type, columns);
+						}
+						columns.add(new Columns(e.getKey(), Collections
+								.singletonList(column)));
+					}
+				}
+				rs.close();
+			}
+		} finally {
+			stmt.close();
+		}
+		return byType.values();
+	}
+
+	/**
+	 * Generates the candidates of the next arity from pairs of valid INDs
+	 * that share the same relations and all but their last columns. A
+	 * candidate is only generated if all its projections to one column less
+	 * are valid. The dependent columns of an IND are kept in the order of
+	 * their relation, so that no permutation is generated twice.
+	 *
+	 * @param valid
+	 *            the valid INDs of the current arity
+	 * @return the candidates of the next arity
+	 */
+	private List<InclusionDependency> nextCandidates(
+			Set<InclusionDependency> valid) {
+		Map<List<Object>, List<InclusionDependency>> groups = new LinkedHashMap<List<Object>, List<InclusionDependency>>();
+		for (InclusionDependency ind : valid) {
+			int k = ind.getArity();
+			List<Object> prefix = new ArrayList<Object>();
+			prefix.add(ind.getDependentTable());
+			prefix.add(ind.getReferencedTable());
+			prefix.add(ind.getDependentColumns().subList(0, k - 1));
+			prefix.add(ind.getReferencedColumns().subList(0, k - 1));
+			List<InclusionDependency> group = groups.get(prefix);
+			if (group == null) {
+				group = new ArrayList<InclusionDependency>();
+				groups.put(prefix, group);
+			}
+			group.add(ind);
+		}
+
+		List<InclusionDependency> candidates = new ArrayList<InclusionDependency>();
+		for (List<InclusionDependency> group : groups.values()) {
+			for (InclusionDependency a : group) {
+				List<String> order = relations.get(a.getDependentTable());
+				int k = a.getArity();
+				String aDep = a.getDependentColumns().get(k - 1);
+				for (InclusionDependency b : group) {
+					String bDep = b.getDependentColumns().get(k - 1);
+					String bRef = b.getReferencedColumns().get(k - 1);
+					if (order.indexOf(aDep) >= order.indexOf(bDep)
+							|| a.getReferencedColumns().contains(bRef)) {
+						continue;
+					}
+					List<String> dep = new ArrayList<String>(a
+							.getDependentColumns());
+					dep.add(bDep);
+					List<String> ref = new ArrayList<String>(a
+							.getReferencedColumns());
+					ref.add(bRef);
+					if (projectionsValid(a, dep, ref, valid)) {
+						candidates.add(new InclusionDependency(a
+								.getDependentTable(), dep, a
+								.getReferencedTable(), ref));
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private static boolean projectionsValid(InclusionDependency a,
+			List<String> dep, List<String> ref, Set<InclusionDependency> valid) {
+		for (int p = 0; p < dep.size() - 2; p++) {
+			List<String> d = new ArrayList<String>(dep);
+			d.remove(p);
+			List<String> r = new ArrayList<String>(ref);
+			r.remove(p);
+			if (!valid.contains(new InclusionDependency(a.getDependentTable(),
+					d, a.getReferencedTable(), r))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Validates candidates of arity greater than one.
+	 *
+	 * @param candidates
+	 *            the candidates
+	 * @return the valid INDs
+	 * @throws SQLException
+	 *             if a relation cannot be read
+	 * @throws IOException
+	 *             if a temporary file cannot be written or read
+	 */
+	private Set<InclusionDependency> validate(
+			List<InclusionDependency> candidates) throws SQLException,
+			IOException {
+		List<Columns> columns = new ArrayList<Columns>();
+		Map<Columns, Integer> positions = new HashMap<Columns, Integer>();
+		int[][] pairs = new int[candidates.size()][2];
+		for (int i = 0; i < pairs.length; i++) {
+			InclusionDependency ind = candidates.get(i);
+			pairs[i][0] = position(new Columns(ind.getDependentTable(), ind
+					.getDependentColumns()), columns, positions);
+			pairs[i][1] = position(new Columns(ind.getReferencedTable(), ind
+					.getReferencedColumns()), columns, positions);
+		}
+		long[][] refs = new long[columns.size()][];
+		for (int[] pair : pairs) {
+			if (refs[pair[0]] == null) {
+				refs[pair[0]] = new long[AttributeIndex.words(columns.size())];
+			}
+			AttributeIndex.set(refs[pair[0]], pair[1]);
+		}
+		return validate(columns, refs);
+	}
+
+	private static int position(Columns c, List<Columns> columns,
+			Map<Columns, Integer> positions) {
+		Integer position = positions.get(c);
+		if (position == null) {
+			position = columns.size();
+			positions.put(c, position);
+			columns.add(c);
+		}
+		return position;
+	}
+
+	/**
+	 * Validates candidates by merging the sorted value streams of all their
+	 * sides in a single pass.
+	 *
+	 * @param columns
+	 *            the sides of the candidates
+	 * @param refs
+	 *            for each side the sides that it may be included in, null if
+	 *            none; the array is modified
+	 * @return the valid INDs
+	 * @throws SQLException
+	 *             if a relation cannot be read
+	 * @throws IOException
+	 *             if a temporary file cannot be written or read
+	 */
+	private Set<InclusionDependency> validate(List<Columns> columns,
+			long[][] refs) throws SQLException, IOException {
+		int m = columns.size();
+		ValueCursor[] cursors = new ValueCursor[m];
+		Set<InclusionDependency> valid = new HashSet<InclusionDependency>();
+		budget = MEMORY_SIZE;
+		try {
+			for (int i = 0; i < m; i++) {
+				cursors[i] = open(columns.get(i), i);
+			}
+
+			int active = 0;
+			for (int d = 0; d < m; d++) {
+				if (refs[d] == null) {
+					continue;
+				}
+				for (int r = AttributeIndex.nextSetBit(refs[d], 0); r >= 0; r = AttributeIndex
+						.nextSetBit(refs[d], r + 1)) {
+					if (cursors[r].size < cursors[d].size) {
+						AttributeIndex.clear(refs[d], r);
+					}
+				}
+				// a column without values is included trivially
+				if (cursors[d].size == 0 || AttributeIndex.isEmpty(refs[d])) {
+					refs[d] = null;
+				} else {
+					active++;
+				}
+			}
+
+			PriorityQueue<ValueCursor> queue = new PriorityQueue<ValueCursor>(
+					Math.max(1, m), new Comparator<ValueCursor>() {
+
+						public int compare(ValueCursor a, ValueCursor b) {
+							int cmp = a.current.compareTo(b.current);
+							return cmp != 0 ? cmp : a.index - b.index;
+						}
+					});
+			for (ValueCursor cursor : cursors) {
+				if (cursor.next()) {
+					queue.add(cursor);
+				}
+			}
+
+			long[] group = new long[AttributeIndex.words(m)];
+			int[] members = new int[m];
+			while (active > 0 && !queue.isEmpty()) {
+				String value = queue.peek().current;
+				int n = 0;
+				while (!queue.isEmpty() && queue.peek().current.equals(value)) {
+					members[n] = queue.poll().index;
+					AttributeIndex.set(group, members[n++]);
+				}
+				for (int j = 0; j < n; j++) {
+					long[] r = refs[members[j]];
+					if (r != null) {
+						for (int w = 0; w < r.length; w++) {
+							r[w] &= group[w];
+						}
+						if (AttributeIndex.isEmpty(r)) {
+							refs[members[j]] = null;
+							active--;
+						}
+					}
+				}
+				for (int j = 0; j < n; j++) {
+					AttributeIndex.clear(group, members[j]);
+					if (cursors[members[j]].next()) {
+						queue.add(cursors[members[j]]);
+					}
+				}
+			}
+
+			for (int d = 0; d < m; d++) {
+				if (refs[d] == null) {
+					continue;
+				}
+				Columns dep = columns.get(d);
+				for (int r = AttributeIndex.nextSetBit(refs[d], 0); r >= 0; r = AttributeIndex
+						.nextSetBit(refs[d], r + 1)) {
+					Columns ref = columns.get(r);
+					valid.add(new InclusionDependency(dep.table, dep.columns,
+							ref.table, ref.columns));
+				}
+			}
+		} finally {
+			for (ValueCursor cursor : cursors) {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Reads and sorts the distinct value combinations of a side. They are
+	 * kept in memory if they fit into the budget, and written to a temporary
+	 * file otherwise.
+	 *
+	 * @param c
+	 *            the side
+	 * @param index
+	 *            the position of the side in the merge
+	 * @return a cursor before the first value
+	 * @throws SQLException
+	 *             if the relation cannot be read
+	 * @throws IOException
+	 *             if a temporary file cannot be written
+	 */
+	private ValueCursor open(Columns c, int index) throws SQLException,
+			IOException {
+		StringBuffer select = new StringBuffer("SELECT DISTINCT ");
+		StringBuffer where = new StringBuffer(" WHERE ");
+		for (int i = 0; i < c.columns.size(); i++) {
+			String column = '"' + c.columns.get(i) + '"';
+			if (i > 0) {
+				select.append(", ");
+				where.append(" AND ");
+			}
+			select.append("CAST(").append(column).append(" AS text)");
+			where.append(column).append(" IS NOT NULL");
+		}
+		select.append(" FROM \"").append(c.table).append('"').append(where);
+
+		List<String> values = new ArrayList<String>();
+		List<File> runs = new ArrayList<File>();
+		int size = 0;
+		Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		try {
+			stmt.setFetchSize(EncodedTable.FETCH_SIZE);
+			ResultSet rs = stmt.executeQuery(select.toString());
+			StringBuffer sb = new StringBuffer();
+			while (rs.next()) {
+				sb.setLength(0);
+				for (int i = 1; i <= c.columns.size(); i++) {
+					if (i > 1) {
+						sb.append(SEPARATOR);
+					}
+					sb.append(rs.getString(i));
+				}
+				values.add(sb.toString());
+				size++;
+				if (values.size() == SPILL_SIZE) {
+					runs.add(writeRun(values));
+					values.clear();
+				}
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+
+		if (runs.isEmpty() && values.size() <= budget) {
+			Collections.sort(values);
+			budget -= values.size();
+			return new ValueCursor(index, values);
+		}
+		runs.add(writeRun(values));
+		return new ValueCursor(index, size, new RunReader(merge(runs)));
+	}
+
+	/**
+	 * Sorts values and writes them to a temporary file.
+	 *
+	 * @param values
+	 *            the values
+	 * @return the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private static File writeRun(List<String> values) throws IOException {
+		Collections.sort(values);
+		File file = File.createTempFile("ind", ".run");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			for (String value : values) {
+				write(out, value);
+			}
+			out.writeInt(-1);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void write(DataOutputStream out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Merges sorted runs into one sorted file and deletes them.
+	 *
+	 * @param runs
+	 *            the files of the runs
+	 * @return the merged file
+	 * @throws IOException
+	 *             if a file cannot be read or written
+	 */
+	private static File merge(List<File> runs) throws IOException {
+		if (runs.size() == 1) {
+			return runs.get(0);
+		}
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs
+				.size(), new Comparator<RunReader>() {
+
+			public int compare(RunReader a, RunReader b) {
+				return a.current.compareTo(b.current);
+			}
+		});
+		File file = File.createTempFile("ind", ".run");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			for (File run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.next()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				write(out, reader.current);
+				if (reader.next()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			out.writeInt(-1);
+		} finally {
+			out.close();
+			for (RunReader reader : queue) {
+				reader.close();
+			}
+		}
+		return file;
+	}
+}
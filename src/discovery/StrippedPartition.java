@@ -0,0 +1,303 @@
+package discovery;
+
+import java.util.Arrays;
+
+/**
+ * A stripped partition of the rows of a table by a set of attributes. Rows
+ * with equal values in all attributes form an equivalence class, and classes
+ * with a single row are left out, as they can never violate a dependency.
+ * <p>
+ * The classes are stored in one array of row numbers together with the start
+ * offset of each class, which keeps even partitions of millions of rows
+ * compact. The partition of <code>XY</code> is computed from the partitions of
+ * <code>X</code> and <code>Y</code> in linear time with the probe table
+ * algorithm of TANE.
+ */
+public class StrippedPartition {
+
+	/** The rows of all classes, grouped by class */
+	private final int[] rows;
+	/** The start offsets of the classes in rows, plus the end as last entry */
+	private final int[] begins;
+
+	/**
+	 * @param rows
+	 *            the rows of all classes, grouped by class
+	 * @param begins
+	 *            the start offsets of the classes, plus the end
+	 */
+	StrippedPartition(int[] rows, int[] begins) {
+		this.rows = rows;
+		this.begins = begins;
+	}
+
+	/**
+	 * Partitions the rows by the values of a single column.
+	 *
+	 * @param codes
+	 *            the encoded values of the column
+	 * @param cardinality
+	 *            the number of distinct values
+	 * @return the stripped partition
+	 */
+	public static StrippedPartition of(int[] codes, int cardinality) {
+		// counting sort by value, keeping only values that occur twice
+		int[] counts = new int[cardinality];
+		for (int code : codes) {
+			counts[code]++;
+		}
+		int classes = 0;
+		int size = 0;
+		for (int count : counts) {
+			if (count > 1) {
+				classes++;
+				size += count;
+			}
+		}
+		int[] begins = new int[classes + 1];
+		int[] offsets = new int[cardinality];
+		int c = 0;
+		int offset = 0;
+		for (int v = 0; v < cardinality; v++) {
+			if (counts[v] > 1) {
+				begins[c++] = offset;
+				offsets[v] = offset;
+				offset += counts[v];
+			}
+		}
+		begins[classes] = size;
+		int[] rows = new int[size];
+		for (int r = 0; r < codes.length; r++) {
+			if (counts[codes[r]] > 1) {
+				rows[offsets[codes[r]]++] = r;
+			}
+		}
+		return new StrippedPartition(rows, begins);
+	}
+
+	/**
+	 * @return the number of classes
+	 */
+	public int getClassCount() {
+		return begins.length - 1;
+	}
+
+	/**
+	 * @return the number of rows in all classes
+	 */
+	public int getSize() {
+		return rows.length;
+	}
+
+	/**
+	 * @param c
+	 *            the position of a class, or the number of classes for the
+	 *            end of the last class
+	 * @return the offset of the first row of the class
+	 */
+	int begin(int c) {
+		return begins[c];
+	}
+
+	/**
+	 * @param i
+	 *            an offset between the begin of the first and the end of the
+	 *            last class
+	 * @return the row at the offset
+	 */
+	int row(int i) {
+		return rows[i];
+	}
+
+	/**
+	 * Sorts the rows of each class in place by their values in two columns
+	 * and then by row, so that neighbouring rows of a class are likely to
+	 * agree on further columns. The classes themselves do not change.
+	 *
+	 * @param first
+	 *            the encoded values of the column to sort by first
+	 * @param second
+	 *            the encoded values of the column to sort by second
+	 */
+	void sortClasses(int[] first, int[] second) {
+		for (int c = 0; c < getClassCount(); c++) {
+			sort(begins[c], begins[c + 1], first, second);
+		}
+	}
+
+	/**
+	 * Sorts the rows between two offsets by quicksort. The smaller part is
+	 * sorted recursively and the larger one in the loop, which bounds the
+	 * depth of the recursion by the logarithm of the class size.
+	 */
+	private void sort(int from, int to, int[] first, int[] second) {
+		while (to - from > 1) {
+			int pivot = rows[from + (to - from) / 2];
+			// rows before lt are smaller than the pivot, rows from gt larger
+			int lt = from;
+			int gt = to;
+			int i = from;
+			while (i < gt) {
+				int cmp = compare(rows[i], pivot, first, second);
+				if (cmp < 0) {
+					swap(lt++, i++);
+				} else if (cmp > 0) {
+					swap(i, --gt);
+				} else {
+					i++;
+				}
+			}
+			if (lt - from < to - gt) {
+				sort(from, lt, first, second);
+				from = gt;
+			} else {
+				sort(gt, to, first, second);
+				to = lt;
+			}
+		}
+	}
+
+	private static int compare(int r, int s, int[] first, int[] second) {
+		if (first[r] != first[s]) {
+			return first[r] < first[s] ? -1 : 1;
+		}
+		if (second[r] != second[s]) {
+			return second[r] < second[s] ? -1 : 1;
+		}
+		return r < s ? -1 : r == s ? 0 : 1;
+	}
+
+	private void swap(int i, int j) {
+		int row = rows[i];
+		rows[i] = rows[j];
+		rows[j] = row;
+	}
+
+	/**
+	 * Returns the error <code>e(X)</code> of TANE, i.e. the number of rows
+	 * that would have to be removed for <code>X</code> to become a key. An FD
+	 * <code>X -> A</code> holds exactly if <code>e(X) = e(XA)</code>.
+	 *
+	 * @return the number of rows in classes minus the number of classes
+	 */
+	public int getError() {
+		return rows.length - getClassCount();
+	}
+
+	/**
+	 * @return true if all rows are distinct, i.e. the attributes are a key
+	 */
+	public boolean isUnique() {
+		return rows.length == 0;
+	}
+
+	/**
+	 * Computes the partition by the attributes of both partitions.
+	 *
+	 * @param other
+	 *            the other partition
+	 * @param probe
+	 *            a table with one entry per row of the table that is filled
+	 *            with -1, it is restored before this method returns
+	 * @return the product of both partitions
+	 */
+	public StrippedPartition intersect(StrippedPartition other, int[] probe) {
+		int classes = getClassCount();
+		for (int c = 0; c < classes; c++) {
+			for (int i = begins[c]; i < begins[c + 1]; i++) {
+				probe[rows[i]] = c;
+			}
+		}
+
+		int[] counts = new int[classes];
+		int[] offsets = new int[classes];
+		int[] touched = new int[classes];
+		int[] result = new int[Math.min(rows.length, other.rows.length)];
+		int[] resultBegins = new int[result.length / 2 + 1];
+		int size = 0;
+		int resultClasses = 0;
+		for (int d = 0; d < other.getClassCount(); d++) {
+			// count the rows of the class per class of this partition
+			int t = 0;
+			for (int i = other.begins[d]; i < other.begins[d + 1]; i++) {
+				int c = probe[other.rows[i]];
+				if (c >= 0 && counts[c]++ == 0) {
+					touched[t++] = c;
+				}
+			}
+			for (int j = 0; j < t; j++) {
+				int c = touched[j];
+				if (counts[c] > 1) {
+					resultBegins[resultClasses++] = size;
+					offsets[c] = size;
+					size += counts[c];
+				}
+			}
+			for (int i = other.begins[d]; i < other.begins[d + 1]; i++) {
+				int c = probe[other.rows[i]];
+				if (c >= 0 && counts[c] > 1) {
+					result[offsets[c]++] = other.rows[i];
+				}
+			}
+			for (int j = 0; j < t; j++) {
+				counts[touched[j]] = 0;
+			}
+		}
+
+		for (int i = 0; i < rows.length; i++) {
+			probe[rows[i]] = -1;
+		}
+		resultBegins[resultClasses] = size;
+		return new StrippedPartition(Arrays.copyOf(result, size), Arrays
+				.copyOf(resultBegins, resultClasses + 1));
+	}
+
+	/**
+	 * Counts the rows that would have to be removed for the attributes of this
+	 * partition to determine a column, i.e. the numerator of the
+	 * <code>g3</code> error of Kivinen and Mannila. Each class keeps its rows
+	 * with the most frequent value of the column and loses all others, which
+	 * is computed from the class sizes alone.
+	 *
+	 * @param codes
+	 *            the encoded values of the column
+	 * @param counts
+	 *            a table with one entry per value of the column that is
+	 *            filled with 0, it is restored before this method returns
+	 * @return the number of violating rows, 0 if the FD holds
+	 */
+	public int countViolations(int[] codes, int[] counts) {
+		int violations = 0;
+		for (int c = 0; c < getClassCount(); c++) {
+			int max = 0;
+			for (int i = begins[c]; i < begins[c + 1]; i++) {
+				max = Math.max(max, ++counts[codes[rows[i]]]);
+			}
+			for (int i = begins[c]; i < begins[c + 1]; i++) {
+				counts[codes[rows[i]]] = 0;
+			}
+			violations += begins[c + 1] - begins[c] - max;
+		}
+		return violations;
+	}
+
+	/**
+	 * Tests whether all rows of each class agree on a column, i.e. whether the
+	 * attributes of this partition functionally determine the column.
+	 *
+	 * @param codes
+	 *            the encoded values of the column
+	 * @return true if the FD holds
+	 */
+	public boolean refines(int[] codes) {
+		for (int c = 0; c < getClassCount(); c++) {
+			int value = codes[rows[begins[c]]];
+			for (int i = begins[c] + 1; i < begins[c + 1]; i++) {
+				if (codes[rows[i]] != value) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,387 @@
+package discovery;
+
+import fd.AttributeIndex;
+import fd.BitsetKey;
+import fd.FDep;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Discovers all minimal non-trivial functional dependencies that hold on the
+ * instance of a relation with the TANE algorithm of Huhtala et al.
+ * <p>
+ * The attribute lattice is traversed level by level. Every set
+ * <code>X</code> of a level carries its stripped partition and its right hand
+ * side candidates <code>C+(X)</code>. An FD <code>X - A -> A</code> holds if
+ * both partitions have the same error, and the candidates prune every FD that
+ * cannot be minimal. Keys are removed from the lattice after their FDs have
+ * been emitted, and the partitions of the next level are products of two
+ * partitions of the current one, so the table is only read once.
+ * <p>
+ * FDs with an empty left side are not reported: for a constant column
+ * <code>A</code> the FDs <code>B -> A</code> are reported instead.
+ * <p>
+ * With a maximum error set, approximate FDs are reported as well. The error of
+ * <code>X -> A</code> is the <code>g3</code> measure, i.e. the fraction of rows
+ * that would have to be removed for the FD to hold. The difference
+ * <code>e(X) - e(XA)</code> of the partition errors is a lower bound of it, so
+ * the rows are only counted for FDs that pass this bound. Approximate FDs are
+ * reported with a single right side attribute and their error, see
+ * {@link FDep#getError()}. Keys stay in the lattice in this mode.
+ */
+public class Tane implements FdDiscovery {
+
+	/** The table the FDs are discovered on */
+	private final EncodedTable table;
+	/** The maximum size of left sides, 0 for no limit */
+	private int maxLhsSize = 0;
+	/** The maximum g3 error of approximate FDs, 0 for exact FDs only */
+	private double maxError = 0;
+	/** The maximum number of violating rows, derived from maxError */
+	private int maxViolations;
+	/** The value table used for counting violations */
+	private int[] counts;
+	/** The probe table used for partition products */
+	private int[] probe;
+	/** The minimal FDs found so far, by left side */
+	private Map<BitsetKey, long[]> result;
+	/** The minimal approximate FDs found so far */
+	private List<FDep> approximate;
+
+	/**
+	 * A set of attributes of the lattice.
+	 */
+	private static class Candidate {
+
+		/** The attributes */
+		final long[] attributes;
+		/** The stripped partition */
+		final StrippedPartition partition;
+		/** The right hand side candidates C+ */
+		long[] rhsCandidates;
+
+		Candidate(long[] attributes, StrippedPartition partition) {
+			this.attributes = attributes;
+			this.partition = partition;
+		}
+	}
+
+	/**
+	 * Constructs a discovery for the given table.
+	 *
+	 * @param table
+	 *            the encoded table
+	 */
+	public Tane(EncodedTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Limits the size of the left sides, which bounds the number of levels
+	 * that are traversed. FDs with larger left sides are not reported.
+	 *
+	 * @param maxLhsSize
+	 *            the maximum size, 0 for no limit
+	 */
+	public void setMaxLhsSize(int maxLhsSize) {
+		this.maxLhsSize = maxLhsSize;
+	}
+
+	/**
+	 * Sets the maximum <code>g3</code> error up to which FDs are reported as
+	 * approximate FDs.
+	 *
+	 * @param maxError
+	 *            the maximum fraction of violating rows, 0 for exact FDs only
+	 */
+	public void setMaxError(double maxError) {
+		this.maxError = maxError;
+	}
+
+	/**
+	 * Discovers the FDs.
+	 *
+	 * @return the minimal FDs with equal left sides composed
+	 */
+	public SortedSet<FDep> discover() {
+		int n = table.getColumnCount();
+		int words = (n + 63) / 64;
+		long[] all = new long[words];
+		for (int a = 0; a < n; a++) {
+			AttributeIndex.set(all, a);
+		}
+		probe = new int[table.getRowCount()];
+		Arrays.fill(probe, -1);
+		maxViolations = (int) (maxError * table.getRowCount());
+		int maxCardinality = 0;
+		for (int a = 0; a < n; a++) {
+			maxCardinality = Math.max(maxCardinality, table.getCardinality(a));
+		}
+		counts = new int[maxCardinality];
+		result = new LinkedHashMap<BitsetKey, long[]>();
+		approximate = new ArrayList<FDep>();
+
+		Map<BitsetKey, Candidate> previous = null;
+		Map<BitsetKey, Candidate> level = new LinkedHashMap<BitsetKey, Candidate>();
+		for (int a = 0; a < n; a++) {
+			long[] x = new long[words];
+			AttributeIndex.set(x, a);
+			level.put(new BitsetKey(x), new Candidate(x, table.partition(a)));
+		}
+
+		int size = 1;
+		while (!level.isEmpty()) {
+			computeDependencies(level, previous, all, size);
+			prune(level, previous, size);
+			if (maxLhsSize > 0 && size > maxLhsSize) {
+				break;
+			}
+			Map<BitsetKey, Candidate> next = generateNextLevel(level, n);
+			previous = level;
+			level = next;
+			size++;
+		}
+		probe = null;
+		counts = null;
+		return toFDeps();
+	}
+
+	/**
+	 * Computes the candidates of each set of the level and emits the FDs
+	 * <code>X - A -> A</code> that hold.
+	 *
+	 * @param level
+	 *            the current level
+	 * @param previous
+	 *            the previous level, null for the first one
+	 * @param all
+	 *            all attributes
+	 * @param size
+	 *            the size of the sets of the level
+	 */
+	private void computeDependencies(Map<BitsetKey, Candidate> level,
+			Map<BitsetKey, Candidate> previous, long[] all, int size) {
+		for (Candidate x : level.values()) {
+			if (size == 1) {
+				x.rhsCandidates = Arrays.copyOf(all, all.length);
+				// the empty left side is not considered
+				continue;
+			}
+			long[] rhs = Arrays.copyOf(all, all.length);
+			for (int b = AttributeIndex.nextSetBit(x.attributes, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(x.attributes, b + 1)) {
+				rhs = AttributeIndex.and(rhs, previous.get(new BitsetKey(
+						without(x.attributes, b))).rhsCandidates);
+			}
+			x.rhsCandidates = rhs;
+
+			long[] tests = AttributeIndex.and(x.attributes, rhs);
+			for (int a = AttributeIndex.nextSetBit(tests, 0); a >= 0; a = AttributeIndex
+					.nextSetBit(tests, a + 1)) {
+				long[] lhs = without(x.attributes, a);
+				StrippedPartition partition = previous.get(new BitsetKey(lhs)).partition;
+				if (partition.getError() == x.partition.getError()) {
+					emit(lhs, a);
+					// no attribute outside X can have X as minimal left side
+					x.rhsCandidates = rhs = AttributeIndex.and(rhs, x.attributes);
+					AttributeIndex.clear(rhs, a);
+				} else if (partition.getError() - x.partition.getError() <= maxViolations) {
+					int violations = partition.countViolations(
+							table.getColumn(a), counts);
+					if (violations <= maxViolations) {
+						emitApproximate(lhs, a, violations);
+						AttributeIndex.clear(rhs, a);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes sets without candidates and keys from the level. The FDs whose
+	 * left side is a key are emitted before, if they are minimal. Keys are
+	 * kept when approximate FDs are searched, as an approximate FD
+	 * <code>Y -> A</code> may only be tested in a superset of a key
+	 * <code>X</code> with <code>A</code> in <code>X</code>.
+	 *
+	 * @param level
+	 *            the current level
+	 * @param previous
+	 *            the previous level, null for the first one
+	 * @param size
+	 *            the size of the sets of the level
+	 */
+	private void prune(Map<BitsetKey, Candidate> level,
+			Map<BitsetKey, Candidate> previous, int size) {
+		for (Iterator<Candidate> it = level.values().iterator(); it.hasNext();) {
+			Candidate x = it.next();
+			if (AttributeIndex.isEmpty(x.rhsCandidates)) {
+				it.remove();
+			} else if (x.partition.isUnique() && maxViolations == 0) {
+				if (maxLhsSize == 0 || size <= maxLhsSize) {
+					long[] rhs = AttributeIndex.andNot(x.rhsCandidates,
+							x.attributes);
+					for (int a = AttributeIndex.nextSetBit(rhs, 0); a >= 0; a = AttributeIndex
+							.nextSetBit(rhs, a + 1)) {
+						if (isMinimalKeyFD(x, a, previous, size)) {
+							emit(x.attributes, a);
+						}
+					}
+				}
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Tests whether no proper subset of a key determines an attribute. It is
+	 * sufficient to check the subsets that lack one attribute, as their
+	 * partitions are still part of the previous level.
+	 *
+	 * @param x
+	 *            the key
+	 * @param a
+	 *            the attribute
+	 * @param previous
+	 *            the previous level
+	 * @param size
+	 *            the size of the key
+	 * @return true if <code>x -> a</code> is minimal
+	 */
+	private boolean isMinimalKeyFD(Candidate x, int a,
+			Map<BitsetKey, Candidate> previous, int size) {
+		if (size == 1) {
+			return true;
+		}
+		int[] codes = table.getColumn(a);
+		for (int b = AttributeIndex.nextSetBit(x.attributes, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(x.attributes, b + 1)) {
+			if (previous.get(new BitsetKey(without(x.attributes, b))).partition
+					.refines(codes)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generates the next level from all pairs of sets of the current level
+	 * that differ in one attribute. A set is only generated if all its
+	 * subsets are part of the current level.
+	 *
+	 * @param level
+	 *            the current level, already pruned
+	 * @param n
+	 *            the number of attributes
+	 * @return the next level
+	 */
+	private Map<BitsetKey, Candidate> generateNextLevel(
+			Map<BitsetKey, Candidate> level, int n) {
+		Map<BitsetKey, Candidate> next = new LinkedHashMap<BitsetKey, Candidate>();
+		for (Candidate x : level.values()) {
+			int first = AttributeIndex.nextSetBit(x.attributes, 0);
+			int last = first;
+			for (int b = first; b >= 0; b = AttributeIndex.nextSetBit(
+					x.attributes, b + 1)) {
+				last = b;
+			}
+			candidates: for (int a = last + 1; a < n; a++) {
+				long[] y = Arrays.copyOf(x.attributes, x.attributes.length);
+				AttributeIndex.set(y, a);
+				for (int b = first; b >= 0; b = AttributeIndex.nextSetBit(
+						x.attributes, b + 1)) {
+					if (!level.containsKey(new BitsetKey(without(y, b)))) {
+						continue candidates;
+					}
+				}
+				Candidate other = level.get(new BitsetKey(without(y, first)));
+				next.put(new BitsetKey(y), new Candidate(y, x.partition
+						.intersect(other.partition, probe)));
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * @param x
+	 *            a set of attributes
+	 * @param a
+	 *            an attribute of the set
+	 * @return a new set without the attribute
+	 */
+	private static long[] without(long[] x, int a) {
+		long[] y = Arrays.copyOf(x, x.length);
+		AttributeIndex.clear(y, a);
+		return y;
+	}
+
+	/**
+	 * Records a minimal FD.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param a
+	 *            the right side attribute
+	 */
+	private void emit(long[] lhs, int a) {
+		BitsetKey key = new BitsetKey(Arrays.copyOf(lhs, lhs.length));
+		long[] rhs = result.get(key);
+		if (rhs == null) {
+			rhs = new long[lhs.length];
+			result.put(key, rhs);
+		}
+		AttributeIndex.set(rhs, a);
+	}
+
+	/**
+	 * Records a minimal approximate FD.
+	 *
+	 * @param lhs
+	 *            the left side
+	 * @param a
+	 *            the right side attribute
+	 * @param violations
+	 *            the number of rows that violate the FD
+	 */
+	private void emitApproximate(long[] lhs, int a, int violations) {
+		FDep fd = new FDep();
+		for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(lhs, b + 1)) {
+			fd.addLeftSide(table.getColumnName(b));
+		}
+		fd.addRightSide(table.getColumnName(a));
+		fd.setError((double) violations / table.getRowCount());
+		approximate.add(fd);
+	}
+
+	/**
+	 * @return the FDs found, with column names
+	 */
+	private SortedSet<FDep> toFDeps() {
+		SortedSet<FDep> fds = new TreeSet<FDep>();
+		for (Map.Entry<BitsetKey, long[]> e : result.entrySet()) {
+			FDep fd = new FDep();
+			long[] lhs = e.getKey().getBits();
+			for (int b = AttributeIndex.nextSetBit(lhs, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(lhs, b + 1)) {
+				fd.addLeftSide(table.getColumnName(b));
+			}
+			long[] rhs = e.getValue();
+			for (int b = AttributeIndex.nextSetBit(rhs, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(rhs, b + 1)) {
+				fd.addRightSide(table.getColumnName(b));
+			}
+			fds.add(fd);
+		}
+		fds.addAll(approximate);
+		result = null;
+		approximate = null;
+		return fds;
+	}
+}
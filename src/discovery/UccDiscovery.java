@@ -0,0 +1,180 @@
+package discovery;
+
+import fd.AttributeIndex;
+import fd.BitsetKey;
+import fd.FDep;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Discovers all minimal unique column combinations, i.e. the candidate keys
+ * that hold on the instance of a relation. This is much cheaper than the
+ * discovery of all FDs, as only the uniqueness of a combination is tested.
+ * <p>
+ * The lattice is traversed bottom up, apriori style: a combination is unique
+ * if its stripped partition is empty, i.e. its distinct count equals the row
+ * count. A unique combination is not extended, and a combination is only
+ * generated if all its subsets are not unique, since otherwise it cannot be
+ * minimal. Before that, the combination of all columns is tested top down: if
+ * the table contains duplicate rows, no combination is unique. The partitions
+ * of the single columns are intersected for this test until no class is left,
+ * so that the rows are never copied.
+ */
+public class UccDiscovery {
+
+	/** The table the keys are discovered on */
+	private final EncodedTable table;
+	/** The maximum size of keys, 0 for no limit */
+	private int maxSize = 0;
+
+	/**
+	 * Constructs a discovery for the given table.
+	 *
+	 * @param table
+	 *            the encoded table
+	 */
+	public UccDiscovery(EncodedTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Limits the size of the keys, which bounds the number of levels that are
+	 * traversed.
+	 *
+	 * @param maxSize
+	 *            the maximum size, 0 for no limit
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Discovers the minimal unique column combinations.
+	 *
+	 * @return the key FDs, which determine all other columns
+	 */
+	public SortedSet<FDep> discover() {
+		int n = table.getColumnCount();
+		List<long[]> keys = new ArrayList<long[]>();
+		if (n == 0) {
+			return toFDeps(keys);
+		}
+
+		int words = AttributeIndex.words(n);
+		int[] probe = new int[table.getRowCount()];
+		Arrays.fill(probe, -1);
+		Map<BitsetKey, StrippedPartition> level = new LinkedHashMap<BitsetKey, StrippedPartition>();
+		for (int a = 0; a < n; a++) {
+			long[] x = new long[words];
+			AttributeIndex.set(x, a);
+			if (table.getCardinality(a) == table.getRowCount()) {
+				keys.add(x);
+			} else {
+				level.put(new BitsetKey(x), table.partition(a));
+			}
+		}
+		// a unique column rules out duplicate rows
+		if (keys.isEmpty() && hasDuplicates(level.values(), probe)) {
+			return toFDeps(keys);
+		}
+
+		int size = 1;
+		while (!level.isEmpty() && (maxSize == 0 || size < maxSize)) {
+			Map<BitsetKey, StrippedPartition> next = new LinkedHashMap<BitsetKey, StrippedPartition>();
+			for (Map.Entry<BitsetKey, StrippedPartition> e : level.entrySet()) {
+				long[] x = e.getKey().getBits();
+				int first = AttributeIndex.nextSetBit(x, 0);
+				int last = first;
+				for (int b = first; b >= 0; b = AttributeIndex.nextSetBit(x,
+						b + 1)) {
+					last = b;
+				}
+				candidates: for (int a = last + 1; a < n; a++) {
+					long[] y = Arrays.copyOf(x, words);
+					AttributeIndex.set(y, a);
+					// all subsets must be non-unique, i.e. part of the level
+					for (int b = first; b >= 0; b = AttributeIndex.nextSetBit(
+							x, b + 1)) {
+						if (!level.containsKey(new BitsetKey(without(y, b)))) {
+							continue candidates;
+						}
+					}
+					StrippedPartition partition = e.getValue().intersect(
+							level.get(new BitsetKey(without(y, first))), probe);
+					if (partition.isUnique()) {
+						keys.add(y);
+					} else {
+						next.put(new BitsetKey(y), partition);
+					}
+				}
+			}
+			level = next;
+			size++;
+		}
+		return toFDeps(keys);
+	}
+
+	/**
+	 * Tests whether two rows agree on all columns, by intersecting the
+	 * partitions of the single columns. The test stops as soon as the
+	 * intersection has no class left.
+	 *
+	 * @param partitions
+	 *            the partitions of all columns
+	 * @param probe
+	 *            the probe table of
+	 *            {@link StrippedPartition#intersect(StrippedPartition, int[])}
+	 * @return true if no combination of columns can be unique
+	 */
+	private static boolean hasDuplicates(
+			Collection<StrippedPartition> partitions, int[] probe) {
+		StrippedPartition rows = null;
+		for (StrippedPartition partition : partitions) {
+			rows = rows == null ? partition : rows.intersect(partition, probe);
+			if (rows.isUnique()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param x
+	 *            a set of attributes
+	 * @param a
+	 *            an attribute of the set
+	 * @return a new set without the attribute
+	 */
+	private static long[] without(long[] x, int a) {
+		long[] y = Arrays.copyOf(x, x.length);
+		AttributeIndex.clear(y, a);
+		return y;
+	}
+
+	/**
+	 * @param keys
+	 *            the keys found
+	 * @return the key FDs, with column names
+	 */
+	private SortedSet<FDep> toFDeps(List<long[]> keys) {
+		SortedSet<FDep> fds = new TreeSet<FDep>();
+		for (long[] key : keys) {
+			FDep fd = new FDep(true);
+			for (int a = 0; a < table.getColumnCount(); a++) {
+				if (AttributeIndex.get(key, a)) {
+					fd.addLeftSide(table.getColumnName(a));
+				} else {
+					fd.addRightSide(table.getColumnName(a));
+				}
+			}
+			fds.add(fd);
+		}
+		return fds;
+	}
+}
@@ -0,0 +1,24 @@
+package discovery;
+
+/**
+ * The ways of validating functional dependencies against the instance of a
+ * relation.
+ */
+public enum ValidationStrategy {
+
+	/**
+	 * Streams the relation to the client once, see {@link FdValidator}.
+	 * Values are compared by their text, not by the equality of their type.
+	 */
+	SCAN,
+	/**
+	 * Groups the relation on the server, so that no rows are transferred, see
+	 * {@link GroupingValidator}.
+	 */
+	GROUP_BY,
+	/**
+	 * Chooses by the estimated number of rows of the relation: small
+	 * relations are scanned, large ones are grouped on the server.
+	 */
+	AUTO
+}
@@ -0,0 +1,440 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Dictionary that maps the attribute names of a relation to consecutive bit
+ * positions. Sets of attributes are encoded as <code>long[]</code> bitsets,
+ * so that subset tests, unions and comparisons of attribute sets cost a few
+ * word-wide operations instead of one string comparison per attribute.
+ * <p>
+ * Positions are never reassigned: attribute names that are not known yet
+ * are appended on first use. Therefore bitsets encoded earlier may be shorter
+ * than bitsets encoded later; all static helpers of this class treat missing
+ * words as zero.
+ */
+public class AttributeIndex {
+
+	/** The number of bits per bitset word */
+	private static final int WORD_SIZE = 64;
+
+	/** Maps attribute names to their bit positions */
+	private Map<String, Integer> positions;
+	/** The attribute names in the order of their bit positions */
+	private List<String> names;
+	/** True while the bit positions follow the natural order of the names */
+	private boolean ordered = true;
+
+	/**
+	 * Constructs an empty attribute index.
+	 */
+	public AttributeIndex() {
+		positions = new HashMap<String, Integer>();
+		names = new ArrayList<String>();
+	}
+
+	/**
+	 * Constructs an attribute index for the given attributes. Bit positions
+	 * are assigned in iteration order.
+	 *
+	 * @param attributes
+	 *            the attributes that shall be indexed
+	 */
+	public AttributeIndex(Collection<String> attributes) {
+		this();
+		for (String a : attributes) {
+			add(a);
+		}
+	}
+
+	/**
+	 * @return the number of indexed attributes
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return the number of words a bitset over all indexed attributes needs
+	 */
+	public int words() {
+		return words(names.size());
+	}
+
+	/**
+	 * Registers an attribute, if it is not yet indexed.
+	 *
+	 * @param attribute
+	 *            the attribute name
+	 * @return the bit position of the attribute
+	 */
+	public int add(String attribute) {
+		Integer pos = positions.get(attribute);
+		if (pos == null) {
+			pos = names.size();
+			if (pos > 0 && names.get(pos - 1).compareTo(attribute) > 0) {
+				ordered = false;
+			}
+			positions.put(attribute, pos);
+			names.add(attribute);
+		}
+		return pos;
+	}
+
+	/**
+	 * Tests whether the bit positions follow the natural order of the
+	 * attribute names, as for an index built from a sorted set. Only then
+	 * does {@link #compare(long[], long[])} order bitsets like the sorted
+	 * sets of their names.
+	 *
+	 * @return true if no attribute has been indexed after a greater one
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute name
+	 * @return the bit position of the attribute or -1 if it is not indexed
+	 */
+	public int indexOf(String attribute) {
+		Integer pos = positions.get(attribute);
+		return pos == null ? -1 : pos;
+	}
+
+	/**
+	 * @param position
+	 *            a bit position
+	 * @return the name of the attribute at the given position
+	 */
+	public String nameOf(int position) {
+		return names.get(position);
+	}
+
+	/**
+	 * Encodes a set of attributes as a bitset. Attributes that are not indexed
+	 * yet are registered.
+	 *
+	 * @param attributes
+	 *            the attributes that shall be encoded
+	 * @return a bitset with one bit set for each attribute
+	 */
+	public long[] encode(Collection<String> attributes) {
+		for (String a : attributes) {
+			add(a);
+		}
+		long[] bits = new long[words()];
+		for (String a : attributes) {
+			set(bits, positions.get(a));
+		}
+		return bits;
+	}
+
+	/**
+	 * @return a bitset containing all indexed attributes
+	 */
+	public long[] all() {
+		long[] bits = new long[words()];
+		for (int i = 0; i < names.size(); i++) {
+			set(bits, i);
+		}
+		return bits;
+	}
+
+	/**
+	 * Decodes a bitset into a sorted set of attribute names.
+	 *
+	 * @param bits
+	 *            a bitset encoded by this index
+	 * @return the attribute names
+	 */
+	public SortedSet<String> decode(long[] bits) {
+		SortedSet<String> attributes = new TreeSet<String>();
+		for (int i = nextSetBit(bits, 0); i >= 0; i = nextSetBit(bits, i + 1)) {
+			attributes.add(names.get(i));
+		}
+		return attributes;
+	}
+
+	/**
+	 * @param bits
+	 *            the number of bits
+	 * @return the number of words needed for the given number of bits
+	 */
+	public static int words(int bits) {
+		return (bits + WORD_SIZE - 1) / WORD_SIZE;
+	}
+
+	/**
+	 * Sets a bit. The bitset must be large enough to hold the position.
+	 *
+	 * @param bits
+	 *            a bitset
+	 * @param position
+	 *            the bit position
+	 */
+	public static void set(long[] bits, int position) {
+		bits[position / WORD_SIZE] |= 1L << (position % WORD_SIZE);
+	}
+
+	/**
+	 * Clears a bit, if the bitset is large enough to hold it.
+	 *
+	 * @param bits
+	 *            a bitset
+	 * @param position
+	 *            the bit position
+	 */
+	public static void clear(long[] bits, int position) {
+		int w = position / WORD_SIZE;
+		if (w < bits.length) {
+			bits[w] &= ~(1L << (position % WORD_SIZE));
+		}
+	}
+
+	/**
+	 * @param bits
+	 *            a bitset
+	 * @param position
+	 *            the bit position
+	 * @return true if the bit is set
+	 */
+	public static boolean get(long[] bits, int position) {
+		int w = position / WORD_SIZE;
+		return w < bits.length
+				&& (bits[w] & (1L << (position % WORD_SIZE))) != 0;
+	}
+
+	/**
+	 * @param sub
+	 *            a bitset
+	 * @param sup
+	 *            another bitset
+	 * @return true if every bit of <code>sub</code> is set in <code>sup</code>
+	 */
+	public static boolean isSubset(long[] sub, long[] sup) {
+		for (int i = 0; i < sub.length; i++) {
+			long s = i < sup.length ? sup[i] : 0L;
+			if ((sub[i] & ~s) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return true if both bitsets share at least one bit
+	 */
+	public static boolean intersects(long[] a, long[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			if ((a[i] & b[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds all bits of <code>source</code> to <code>target</code>. The target
+	 * must be at least as long as the highest set word of the source.
+	 *
+	 * @param target
+	 *            the bitset that is modified
+	 * @param source
+	 *            the bits to add
+	 * @return true if the target has changed
+	 */
+	public static boolean orInto(long[] target, long[] source) {
+		boolean changed = false;
+		for (int i = 0; i < source.length; i++) {
+			long merged = target[i] | source[i];
+			if (merged != target[i]) {
+				target[i] = merged;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return a new bitset containing the bits of both
+	 */
+	public static long[] or(long[] a, long[] b) {
+		long[] result = Arrays.copyOf(a, Math.max(a.length, b.length));
+		orInto(result, b);
+		return result;
+	}
+
+	/**
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return a new bitset containing the bits set in both
+	 */
+	public static long[] and(long[] a, long[] b) {
+		long[] result = new long[Math.min(a.length, b.length)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = a[i] & b[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return a new bitset containing the bits of <code>a</code> that are not
+	 *         set in <code>b</code>
+	 */
+	public static long[] andNot(long[] a, long[] b) {
+		long[] result = Arrays.copyOf(a, a.length);
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			result[i] &= ~b[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param bits
+	 *            a bitset
+	 * @return the number of set bits
+	 */
+	public static int cardinality(long[] bits) {
+		int n = 0;
+		for (long w : bits) {
+			n += Long.bitCount(w);
+		}
+		return n;
+	}
+
+	/**
+	 * @param bits
+	 *            a bitset
+	 * @return true if no bit is set
+	 */
+	public static boolean isEmpty(long[] bits) {
+		for (long w : bits) {
+			if (w != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param bits
+	 *            a bitset
+	 * @param from
+	 *            the position to start from
+	 * @return the position of the next set bit at or after <code>from</code>
+	 *         or -1 if there is none
+	 */
+	public static int nextSetBit(long[] bits, int from) {
+		int w = from / WORD_SIZE;
+		if (w >= bits.length) {
+			return -1;
+		}
+		long word = bits[w] & (-1L << (from % WORD_SIZE));
+		while (true) {
+			if (word != 0) {
+				return w * WORD_SIZE + Long.numberOfTrailingZeros(word);
+			}
+			if (++w == bits.length) {
+				return -1;
+			}
+			word = bits[w];
+		}
+	}
+
+	/**
+	 * Compares two bitsets for equality, ignoring trailing zero words.
+	 *
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return true if both bitsets contain the same bits
+	 */
+	public static boolean equals(long[] a, long[] b) {
+		int n = Math.max(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			long x = i < a.length ? a[i] : 0L;
+			long y = i < b.length ? b[i] : 0L;
+			if (x != y) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two bitsets like the ascending sequences of their positions,
+	 * i.e. lexicographically with a prefix before its extensions. At the
+	 * lowest position in only one of the bitsets, the sequence that contains
+	 * it is smaller, unless the other sequence ends there.
+	 *
+	 * @param a
+	 *            a bitset
+	 * @param b
+	 *            another bitset
+	 * @return a negative integer, zero, or a positive integer as the first
+	 *         bitset is less than, equal to, or greater than the second
+	 */
+	public static int compare(long[] a, long[] b) {
+		int n = Math.max(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			long x = i < a.length ? a[i] : 0L;
+			long y = i < b.length ? b[i] : 0L;
+			if (x != y) {
+				int pos = i * WORD_SIZE + Long.numberOfTrailingZeros(x ^ y);
+				if (get(a, pos)) {
+					return nextSetBit(b, pos + 1) >= 0 ? -1 : 1;
+				}
+				return nextSetBit(a, pos + 1) >= 0 ? 1 : -1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Computes a hash code that is consistent with
+	 * {@link #equals(long[], long[])}.
+	 *
+	 * @param bits
+	 *            a bitset
+	 * @return the hash code
+	 */
+	public static int hashCode(long[] bits) {
+		int n = bits.length;
+		while (n > 0 && bits[n - 1] == 0) {
+			n--;
+		}
+		// multiply by the golden ratio, so that every bit affects the upper
+		// half, which is folded onto the lower half
+		long h = 1234;
+		for (int i = n; --i >= 0;) {
+			h = (h ^ bits[i]) * 0x9E3779B97F4A7C15L;
+		}
+		return (int) ((h >>> 32) ^ h);
+	}
+}
@@ -0,0 +1,228 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Decomposes a relation into BCNF with the polynomial algorithm of Tsou and
+ * Fischer. The FDs are never projected onto the new relations. Instead the
+ * algorithm relies on a sufficient condition that is tested with closures of
+ * the original FD set: a set of attributes <code>Y</code> is in BCNF if it
+ * contains no attributes <code>A</code> and <code>B</code> such that
+ * <code>A</code> is in the closure of <code>Y - AB</code>.
+ * <p>
+ * Starting with all columns <code>Z</code>, attributes <code>B</code> are
+ * removed from a copy <code>Y</code> of <code>Z</code> as long as such a pair
+ * exists. The remaining <code>Y</code> is in BCNF and satisfies
+ * <code>Y - A -> A</code> for the last pair, so <code>Y</code> is split off
+ * losslessly and <code>A</code> is removed from <code>Z</code>. The result is
+ * a lossless-join decomposition, although FDs may not be preserved and the
+ * decomposition may be finer than necessary.
+ */
+public class BcnfDecomposer {
+
+	/** The relation that is decomposed */
+	private final Relation relation;
+	/** The attribute index of the relation */
+	private final AttributeIndex index;
+	/** The closure engine for the implemented FDs of the relation */
+	private final ClosureEngine engine;
+
+	/**
+	 * Constructs a decomposer for the given relation.
+	 *
+	 * @param relation
+	 *            the relation
+	 */
+	public BcnfDecomposer(Relation relation) {
+		this.relation = relation;
+		this.index = relation.getAttributeIndex();
+		this.engine = relation.getClosureEngine(false);
+	}
+
+	/**
+	 * Decomposes the relation into BCNF.
+	 *
+	 * @return a set of SynRelations in BCNF
+	 */
+	public SortedSet<SynRelation> decompose() {
+		final String nl = System.getProperty("line.separator");
+		String name = relation.getRelationName();
+		List<long[]> parts = new ArrayList<long[]>();
+		long[] z = relation.getColumnBits();
+
+		System.out.println("Step 1 (Find BCNF violations by closure)");
+		if (isBCNF(z)) {
+			System.out.println(relation + " is already in BCNF.");
+			parts.add(z);
+		} else {
+			int[] pair = findPair(z);
+			while (pair != null) {
+				// shrink y while it violates BCNF, keeping Y - A -> A
+				long[] y = Arrays.copyOf(z, z.length);
+				int a;
+				do {
+					a = pair[0];
+					System.out.println(index.nameOf(pair[1]) + " removed from "
+							+ index.decode(y) + " because " + index.nameOf(a)
+							+ " does not depend on it");
+					AttributeIndex.clear(y, pair[1]);
+					pair = findPair(y);
+				} while (pair != null);
+
+				System.out.println("Split off " + index.decode(y));
+				parts.add(y);
+				AttributeIndex.clear(z, a);
+				pair = findPair(z);
+			}
+			parts.add(z);
+		}
+
+		System.out.println(nl
+				+ "Step 2 (Remove relations that are included in others)");
+		for (Iterator<long[]> it = parts.iterator(); it.hasNext();) {
+			long[] part = it.next();
+			for (long[] other : parts) {
+				if (other != part && AttributeIndex.isSubset(part, other)) {
+					System.out.println(index.decode(part) + " removed because "
+							+ index.decode(other) + " contains it.");
+					it.remove();
+					break;
+				}
+			}
+		}
+
+		System.out.println(nl + "Step 3 (Create relations and assign FDs)");
+		SortedSet<SynRelation> newRelations = new TreeSet<SynRelation>();
+		int i = 1;
+		for (long[] part : parts) {
+			SynRelation rel = createRelation(name + "_" + i++, part);
+			System.out.println("Relation created " + rel + " with columns "
+					+ rel.getColumns() + " and FDs " + rel.getFdeps());
+			newRelations.add(rel);
+		}
+
+		return newRelations;
+	}
+
+	/**
+	 * Tests whether the columns of the relation itself are in BCNF, i.e.
+	 * every non-trivial FD has a superkey as left side.
+	 *
+	 * @param columns
+	 *            the columns as bitset
+	 * @return true if the relation is in BCNF
+	 */
+	private boolean isBCNF(long[] columns) {
+		for (int i = 0; i < engine.size(); i++) {
+			long[] lhs = engine.getLeftSide(i);
+			long[] rhs = AttributeIndex.andNot(engine.getRightSide(i), lhs);
+			if (AttributeIndex.intersects(rhs, columns)
+					&& !AttributeIndex.isSubset(columns, engine.closure(lhs))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Searches two attributes <code>A</code> and <code>B</code> of
+	 * <code>y</code>, such that <code>A</code> is in the closure of
+	 * <code>y - AB</code>.
+	 *
+	 * @param y
+	 *            the attributes as bitset
+	 * @return the positions of <code>A</code> and <code>B</code> or null
+	 */
+	private int[] findPair(long[] y) {
+		long[] t = Arrays.copyOf(y, y.length);
+		for (int a = AttributeIndex.nextSetBit(y, 0); a >= 0; a = AttributeIndex
+				.nextSetBit(y, a + 1)) {
+			AttributeIndex.clear(t, a);
+			// closures are monotone, so no B helps if y - A misses A
+			if (AttributeIndex.get(engine.closure(t), a)) {
+				for (int b = AttributeIndex.nextSetBit(y, 0); b >= 0; b = AttributeIndex
+						.nextSetBit(y, b + 1)) {
+					if (b != a) {
+						AttributeIndex.clear(t, b);
+						boolean found = AttributeIndex.get(engine.closure(t), a);
+						AttributeIndex.set(t, b);
+						if (found) {
+							return new int[] { a, b };
+						}
+					}
+				}
+			}
+			AttributeIndex.set(t, a);
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a relation for a part of the decomposition. Its FDs are the key
+	 * FD and the FDs of the original relation whose left side lies within the
+	 * part, restricted to the attributes of the part.
+	 *
+	 * @param name
+	 *            the name of the new relation
+	 * @param part
+	 *            the columns as bitset
+	 * @return the relation
+	 */
+	private SynRelation createRelation(String name, long[] part) {
+		SynRelation rel = new SynRelation(name);
+		rel.setOriginName(relation.getRelationName());
+		for (String a : index.decode(part)) {
+			rel.addColumn(a);
+		}
+
+		// minimize the part to a key
+		long[] key = Arrays.copyOf(part, part.length);
+		for (int a = AttributeIndex.nextSetBit(part, 0); a >= 0; a = AttributeIndex
+				.nextSetBit(part, a + 1)) {
+			AttributeIndex.clear(key, a);
+			if (!AttributeIndex.isSubset(part, engine.closure(key))) {
+				AttributeIndex.set(key, a);
+			}
+		}
+		SortedSet<String> keyAtts = index.decode(key);
+
+		// merge the right sides of equal left sides
+		Map<SortedSet<String>, SortedSet<String>> fds = new LinkedHashMap<SortedSet<String>, SortedSet<String>>();
+		SortedSet<String> rest = index.decode(AttributeIndex.andNot(part, key));
+		fds.put(keyAtts, rest.isEmpty() ? keyAtts : rest);
+		for (FDep fd : relation.getFdeps(false)) {
+			long[] lhs = fd.getLeftBits(index);
+			long[] rhs = AttributeIndex.and(AttributeIndex.andNot(fd
+					.getRightBits(index), lhs), part);
+			if (AttributeIndex.isSubset(lhs, part)
+					&& !AttributeIndex.isEmpty(rhs)) {
+				SortedSet<String> left = index.decode(lhs);
+				SortedSet<String> right = fds.get(left);
+				if (right == null) {
+					fds.put(left, index.decode(rhs));
+				} else if (right != keyAtts) {
+					right.addAll(index.decode(rhs));
+				}
+			}
+		}
+
+		for (Map.Entry<SortedSet<String>, SortedSet<String>> e : fds.entrySet()) {
+			FDep fd = new FDep();
+			fd.addLeftSide(e.getKey());
+			fd.addRightSide(e.getValue());
+			if (e.getKey() == keyAtts) {
+				fd.setIsKey(true);
+				rel.setOriginFD(fd);
+			}
+			rel.addFDep(fd);
+		}
+		return rel;
+	}
+}
@@ -0,0 +1,42 @@
+package fd;
+
+/**
+ * Wraps an attribute bitset, so that it can be used as key of hash based
+ * collections. Equality ignores trailing zero words, as bitsets encoded at
+ * different times by the same <code>AttributeIndex</code> may differ in
+ * length. The wrapped bitset must not be modified afterwards.
+ */
+public final class BitsetKey {
+
+	/** The wrapped bitset */
+	private final long[] bits;
+	/** The cached hash code */
+	private final int hash;
+
+	/**
+	 * @param bits
+	 *            the bitset, it is not copied
+	 */
+	public BitsetKey(long[] bits) {
+		this.bits = bits;
+		this.hash = AttributeIndex.hashCode(bits);
+	}
+
+	/**
+	 * @return the wrapped bitset
+	 */
+	public long[] getBits() {
+		return bits;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof BitsetKey
+				&& AttributeIndex.equals(bits, ((BitsetKey) o).bits);
+	}
+}
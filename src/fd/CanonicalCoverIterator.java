@@ -0,0 +1,324 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Enumerates the distinct canonical covers of a set of FDs on demand.
+ * <p>
+ * Which canonical cover the usual algorithm produces depends on the order in
+ * which left side attributes and redundant FDs are removed. Instead of trying
+ * every permutation of the FDs, this iterator searches the reductions
+ * directly: each state is a set of FDs with single attributes on the right
+ * side, and its successors are all states that result from removing one
+ * extraneous left side attribute or one redundant FD. States without
+ * successors are the canonical covers. Different orders of independent
+ * reductions lead to the same state, so every state is identified by a
+ * canonical fingerprint and expanded only once.
+ * <p>
+ * The search is depth first, so the first cover is found after a linear
+ * number of reductions. It stops after a given number of covers or when the
+ * time budget is used up.
+ */
+public class CanonicalCoverIterator implements Iterator<SortedSet<FDep>> {
+
+	/** The attribute index the FDs are encoded with */
+	private final AttributeIndex index;
+	/** The maximum number of covers that are returned */
+	private final int limit;
+	/** The time in milliseconds after which the search stops */
+	private final long deadline;
+	/** The states that still have to be expanded */
+	private final LinkedList<State> stack = new LinkedList<State>();
+	/** The fingerprints of all states that have been reached */
+	private final Set<BitsetKey> visited = new HashSet<BitsetKey>();
+	/** The next cover that is returned, null if it has not been searched yet */
+	private SortedSet<FDep> pending;
+	/** The number of covers returned so far */
+	private int count;
+	/** True if the search has been stopped by the limit or the time budget */
+	private boolean truncated;
+
+	/**
+	 * Constructs an iterator over the canonical covers of the given FDs.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param fds
+	 *            the functional dependencies
+	 * @param limit
+	 *            the maximum number of covers, or 0 for no limit
+	 * @param timeBudget
+	 *            the search time in milliseconds, or 0 for no limit
+	 */
+	public CanonicalCoverIterator(AttributeIndex index, Collection<FDep> fds,
+			int limit, long timeBudget) {
+		this.index = index;
+		this.limit = limit > 0 ? limit : Integer.MAX_VALUE;
+		this.deadline = timeBudget > 0 ? System.currentTimeMillis()
+				+ timeBudget : Long.MAX_VALUE;
+
+		// decompose the right sides and drop trivial FDs and duplicates
+		List<long[]> lhs = new ArrayList<long[]>();
+		List<Integer> rhs = new ArrayList<Integer>();
+		Set<BitsetKey> seen = new HashSet<BitsetKey>();
+		for (FDep fd : fds) {
+			long[] l = fd.getLeftBits(index);
+			long[] r = fd.getRightBits(index);
+			for (int b = AttributeIndex.nextSetBit(r, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(r, b + 1)) {
+				if (!AttributeIndex.get(l, b)
+						&& seen.add(new State(new long[][] { l },
+								new int[] { b }).fingerprint())) {
+					lhs.add(l);
+					rhs.add(b);
+				}
+			}
+		}
+		int[] right = new int[rhs.size()];
+		for (int i = 0; i < right.length; i++) {
+			right[i] = rhs.get(i);
+		}
+		push(new State(lhs.toArray(new long[0][]), right));
+	}
+
+	/**
+	 * Pushes a state unless it has been reached before.
+	 *
+	 * @param state
+	 *            the state
+	 */
+	private void push(State state) {
+		if (visited.add(state.fingerprint())) {
+			stack.push(state);
+		}
+	}
+
+	/**
+	 * Expands states until the next canonical cover is found.
+	 *
+	 * @return the next cover or null if there is none
+	 */
+	private SortedSet<FDep> advance() {
+		while (!stack.isEmpty()) {
+			if (count >= limit || System.currentTimeMillis() > deadline) {
+				truncated = true;
+				stack.clear();
+				return null;
+			}
+			State state = stack.pop();
+			List<State> successors = state.successors();
+			if (successors.isEmpty()) {
+				count++;
+				return state.toCover();
+			}
+			// push in reverse order, so the first reduction is expanded first
+			for (int i = successors.size() - 1; i >= 0; i--) {
+				push(successors.get(i));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if there is another canonical cover
+	 */
+	public boolean hasNext() {
+		if (pending == null) {
+			pending = advance();
+		}
+		return pending != null;
+	}
+
+	/**
+	 * @return the next canonical cover, FDs with equal left sides composed
+	 */
+	public SortedSet<FDep> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SortedSet<FDep> cover = pending;
+		pending = null;
+		return cover;
+	}
+
+	/**
+	 * Not supported.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return true if the search has been stopped by the limit or the time
+	 *         budget before all covers were found
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * A set of FDs with single attributes on the right side.
+	 */
+	private class State {
+
+		/** The left sides */
+		private final long[][] lhs;
+		/** The right side attributes */
+		private final int[] rhs;
+
+		State(long[][] lhs, int[] rhs) {
+			this.lhs = lhs;
+			this.rhs = rhs;
+		}
+
+		/**
+		 * Computes a fingerprint that does not depend on the order of the
+		 * FDs: the number of FDs followed by the sorted FDs, each encoded as
+		 * right side and left side words.
+		 *
+		 * @return the fingerprint
+		 */
+		BitsetKey fingerprint() {
+			final int words = index.words();
+			Integer[] order = new Integer[rhs.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					if (rhs[a] != rhs[b]) {
+						return rhs[a] < rhs[b] ? -1 : 1;
+					}
+					for (int w = 0; w < words; w++) {
+						long x = w < lhs[a].length ? lhs[a][w] : 0L;
+						long y = w < lhs[b].length ? lhs[b][w] : 0L;
+						if (x != y) {
+							return x < y ? -1 : 1;
+						}
+					}
+					return 0;
+				}
+			});
+			long[] bits = new long[1 + order.length * (1 + words)];
+			bits[0] = order.length;
+			int p = 1;
+			for (int i : order) {
+				bits[p++] = rhs[i];
+				for (int w = 0; w < words; w++) {
+					bits[p++] = w < lhs[i].length ? lhs[i][w] : 0L;
+				}
+			}
+			return new BitsetKey(bits);
+		}
+
+		/**
+		 * Determines all states that result from one reduction.
+		 *
+		 * @return the successor states
+		 */
+		List<State> successors() {
+			List<State> successors = new ArrayList<State>();
+			long[][] right = new long[rhs.length][];
+			for (int i = 0; i < rhs.length; i++) {
+				right[i] = new long[index.words()];
+				AttributeIndex.set(right[i], rhs[i]);
+			}
+			ClosureEngine engine = new ClosureEngine(index, lhs, right,
+					Relation.getClosureStrategy());
+
+			// extraneous left side attributes
+			for (int i = 0; i < lhs.length; i++) {
+				long[] l = lhs[i];
+				for (int a = AttributeIndex.nextSetBit(l, 0); a >= 0; a = AttributeIndex
+						.nextSetBit(l, a + 1)) {
+					long[] reduced = Arrays.copyOf(l, l.length);
+					AttributeIndex.clear(reduced, a);
+					if (AttributeIndex.get(engine.closure(reduced), rhs[i])) {
+						long[][] next = lhs.clone();
+						next[i] = reduced;
+						successors.add(withoutDuplicates(next, rhs));
+					}
+				}
+			}
+
+			// redundant FDs
+			for (int i = 0; i < lhs.length; i++) {
+				if (AttributeIndex.get(engine.closureWithout(lhs[i], i), rhs[i])) {
+					successors.add(without(i));
+				}
+			}
+			return successors;
+		}
+
+		/**
+		 * @param fd
+		 *            the position of an FD
+		 * @return a state with all FDs except the given one
+		 */
+		private State without(int fd) {
+			long[][] l = new long[lhs.length - 1][];
+			int[] r = new int[rhs.length - 1];
+			for (int i = 0, j = 0; i < lhs.length; i++) {
+				if (i != fd) {
+					l[j] = lhs[i];
+					r[j++] = rhs[i];
+				}
+			}
+			return new State(l, r);
+		}
+
+		/**
+		 * Creates a state and removes FDs that have become equal to another
+		 * FD by a left side reduction.
+		 *
+		 * @param l
+		 *            the left sides
+		 * @param r
+		 *            the right sides
+		 * @return the state
+		 */
+		private State withoutDuplicates(long[][] l, int[] r) {
+			for (int i = 0; i < l.length; i++) {
+				for (int j = i + 1; j < l.length; j++) {
+					if (r[i] == r[j] && AttributeIndex.equals(l[i], l[j])) {
+						return new State(l, r).without(j);
+					}
+				}
+			}
+			return new State(l, r);
+		}
+
+		/**
+		 * @return the FDs of the state with equal left sides composed
+		 */
+		SortedSet<FDep> toCover() {
+			SortedSet<FDep> cover = new TreeSet<FDep>();
+			boolean[] done = new boolean[lhs.length];
+			for (int i = 0; i < lhs.length; i++) {
+				if (!done[i]) {
+					FDep fd = new FDep();
+					fd.addLeftSide(index.decode(lhs[i]));
+					for (int j = i; j < lhs.length; j++) {
+						if (AttributeIndex.equals(lhs[i], lhs[j])) {
+							fd.addRightSide(index.nameOf(rhs[j]));
+							done[j] = true;
+						}
+					}
+					cover.add(fd);
+				}
+			}
+			return cover;
+		}
+	}
+}
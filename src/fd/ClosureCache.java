@@ -0,0 +1,214 @@
+package fd;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded memo cache for the attribute closures and candidate keys of one
+ * relation. Entries are keyed by the attribute set, encoded as bitset, the
+ * preview flag and the version of the FD set they were computed for. When the
+ * cache is full the least recently used closure is evicted.
+ * <p>
+ * The relation invalidates the entries of a preview flag whenever the
+ * corresponding FD set changes, so that stale entries neither hit nor occupy
+ * space. Hits and misses are counted to judge the effectiveness of the cache.
+ */
+public class ClosureCache {
+
+	/** The default maximum number of cached closures */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The cached closures in access order */
+	private final Map<Key, long[]> closures;
+	/** The cached candidate keys for the implemented and the preview FD set */
+	private final List<?>[] keys = new List<?>[2];
+	/** The FD set versions the cached candidate keys belong to */
+	private final int[] keyVersions = new int[2];
+	/** The number of lookups answered from the cache */
+	private long hits;
+	/** The number of lookups that had to be computed */
+	private long misses;
+
+	/**
+	 * Constructs a cache with the default capacity.
+	 */
+	public ClosureCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a cache.
+	 *
+	 * @param capacity
+	 *            the maximum number of cached closures
+	 */
+	public ClosureCache(final int capacity) {
+		closures = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Looks up a closure.
+	 *
+	 * @param preview
+	 *            the preview flag of the FD set
+	 * @param version
+	 *            the version of the FD set
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @return the cached closure or null
+	 */
+	long[] getClosure(boolean preview, int version, long[] attributes) {
+		return count(closures.get(new Key(preview, version, attributes)));
+	}
+
+	/**
+	 * Stores a closure.
+	 *
+	 * @param preview
+	 *            the preview flag of the FD set
+	 * @param version
+	 *            the version of the FD set
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @param closure
+	 *            the closure of the attributes
+	 */
+	void putClosure(boolean preview, int version, long[] attributes,
+			long[] closure) {
+		closures.put(new Key(preview, version, Arrays.copyOf(attributes,
+				attributes.length)), closure);
+	}
+
+	/**
+	 * Looks up the candidate keys.
+	 *
+	 * @param preview
+	 *            the preview flag of the FD set
+	 * @param version
+	 *            the version of the FD set
+	 * @return the cached keys as bitsets or null
+	 */
+	@SuppressWarnings("unchecked")
+	List<long[]> getKeys(boolean preview, int version) {
+		int i = preview ? 1 : 0;
+		return count(keyVersions[i] == version ? (List<long[]>) keys[i] : null);
+	}
+
+	/**
+	 * Stores the candidate keys.
+	 *
+	 * @param preview
+	 *            the preview flag of the FD set
+	 * @param version
+	 *            the version of the FD set
+	 * @param candidateKeys
+	 *            the keys as bitsets
+	 */
+	void putKeys(boolean preview, int version, List<long[]> candidateKeys) {
+		int i = preview ? 1 : 0;
+		keys[i] = candidateKeys;
+		keyVersions[i] = version;
+	}
+
+	/**
+	 * Removes all entries of the given FD set.
+	 *
+	 * @param preview
+	 *            the preview flag of the FD set
+	 */
+	void invalidate(boolean preview) {
+		keys[preview ? 1 : 0] = null;
+		for (Iterator<Key> it = closures.keySet().iterator(); it.hasNext();) {
+			if (it.next().preview == preview) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Updates the counters for a lookup.
+	 *
+	 * @param value
+	 *            the cached value or null
+	 * @return the value
+	 */
+	private <T> T count(T value) {
+		if (value == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to be computed
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of cached closures
+	 */
+	public int size() {
+		return closures.size();
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + hits + ", misses=" + misses + ", closures=" + size();
+	}
+
+	/**
+	 * Key of a cached closure.
+	 */
+	private static final class Key {
+
+		private final boolean preview;
+		private final int version;
+		private final long[] attributes;
+		private final int hash;
+
+		Key(boolean preview, int version, long[] attributes) {
+			this.preview = preview;
+			this.version = version;
+			this.attributes = attributes;
+			this.hash = (AttributeIndex.hashCode(attributes) * 31 + version)
+					* 2 + (preview ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return preview == k.preview && version == k.version
+					&& AttributeIndex.equals(attributes, k.attributes);
+		}
+	}
+}
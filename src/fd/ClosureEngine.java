@@ -0,0 +1,393 @@
+package fd;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes attribute closures for a fixed set of functional dependencies.
+ * <p>
+ * The default strategy is the linear closure algorithm of Beeri and Bernstein
+ * (LINCLOSURE): for every attribute the engine keeps the list of FDs whose
+ * left side contains it, and for every FD a counter of left side attributes
+ * that are not yet part of the closure. An FD fires as soon as its counter
+ * drops to zero, so each closure runs in time linear in the total size of the
+ * FD set. The index is built once and reused for any number of closures, thus
+ * a <code>Relation</code> keeps one engine per version of its FD set.
+ * <p>
+ * Engines that own their FD arrays may also shrink the FD set in place, see
+ * {@link #reduceLeftSide} and {@link #remove}, so that a minimal cover can be
+ * computed without rebuilding the index after each reduction.
+ * <p>
+ * The former fixpoint iteration, which rescans all FDs until nothing changes,
+ * is still available as {@link Strategy#FIXPOINT}, and
+ * {@link Strategy#CROSS_CHECK} runs both and logs any difference.
+ */
+public class ClosureEngine {
+
+	/**
+	 * The algorithm used to calculate closures.
+	 */
+	public static enum Strategy {
+
+		/**
+		 * Linear closure with attribute index and missing-LHS counters.
+		 */
+		LINCLOSURE,
+		/**
+		 * Repeated scans over all FDs until the closure is stable.
+		 */
+		FIXPOINT,
+		/**
+		 * Runs both algorithms and reports differing results.
+		 */
+		CROSS_CHECK
+	}
+
+	/** The global <code>logger</code> object. */
+	private static Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+	/** The algorithm used by this engine */
+	private final Strategy strategy;
+	/** The number of words of the bitsets the engine was built for */
+	private final int words;
+	/** The left sides of the FDs */
+	private final long[][] lhs;
+	/** The right sides of the FDs */
+	private final long[][] rhs;
+	/** The number of attributes of each left side, -1 for removed FDs */
+	private final int[] lhsSize;
+	/** For each attribute the FDs whose left side contains it */
+	private final int[][] fdsByAttribute;
+	/** Scratch counters of missing left side attributes, one per FD */
+	private final int[] missing;
+	/** Scratch queue of attributes whose FDs have not been visited yet */
+	private final int[] queue;
+
+	/**
+	 * Builds a closure engine for the given FDs.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param fds
+	 *            the functional dependencies
+	 * @param strategy
+	 *            the algorithm used to calculate closures
+	 */
+	public ClosureEngine(AttributeIndex index, Collection<FDep> fds,
+			Strategy strategy) {
+		this(index, encode(index, fds, true), encode(index, fds, false),
+				strategy);
+	}
+
+	/**
+	 * Builds a closure engine from already encoded FDs. Both arrays must have
+	 * the same length and all bitsets must be encoded with the given index.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param left
+	 *            the left sides
+	 * @param right
+	 *            the right sides
+	 * @param strategy
+	 *            the algorithm used to calculate closures
+	 */
+	ClosureEngine(AttributeIndex index, long[][] left, long[][] right,
+			Strategy strategy) {
+		int n = left.length;
+		this.strategy = strategy;
+		this.words = index.words();
+		this.lhs = left;
+		this.rhs = right;
+		this.lhsSize = new int[n];
+		this.missing = new int[n];
+
+		// count the occurrences of each attribute on left sides
+		int attributes = index.size();
+		int[] occurrences = new int[attributes];
+		for (int i = 0; i < n; i++) {
+			for (int a = AttributeIndex.nextSetBit(lhs[i], 0); a >= 0; a = AttributeIndex
+					.nextSetBit(lhs[i], a + 1)) {
+				occurrences[a]++;
+				lhsSize[i]++;
+			}
+		}
+		fdsByAttribute = new int[attributes][];
+		for (int a = 0; a < attributes; a++) {
+			fdsByAttribute[a] = new int[occurrences[a]];
+			occurrences[a] = 0;
+		}
+		for (int i = 0; i < n; i++) {
+			for (int a = AttributeIndex.nextSetBit(lhs[i], 0); a >= 0; a = AttributeIndex
+					.nextSetBit(lhs[i], a + 1)) {
+				fdsByAttribute[a][occurrences[a]++] = i;
+			}
+		}
+		queue = new int[attributes];
+	}
+
+	/**
+	 * Encodes one side of all FDs. Both sides of all FDs are encoded before
+	 * the engine is sized, as encoding may register unknown attributes.
+	 *
+	 * @param index
+	 *            the attribute index
+	 * @param fds
+	 *            the functional dependencies
+	 * @param left
+	 *            true for the left sides, false for the right sides
+	 * @return the encoded sides in iteration order
+	 */
+	private static long[][] encode(AttributeIndex index, Collection<FDep> fds,
+			boolean left) {
+		long[][] sides = new long[fds.size()][];
+		int i = 0;
+		for (FDep fd : fds) {
+			sides[i++] = left ? fd.getLeftBits(index) : fd.getRightBits(index);
+		}
+		return sides;
+	}
+
+	/**
+	 * @return the algorithm used by this engine
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return the number of FDs the engine was built for
+	 */
+	public int size() {
+		return lhs.length;
+	}
+
+	/**
+	 * @param fd
+	 *            the position of an FD
+	 * @return the encoded left side of the FD
+	 */
+	long[] getLeftSide(int fd) {
+		return lhs[fd];
+	}
+
+	/**
+	 * @param fd
+	 *            the position of an FD
+	 * @return the encoded right side of the FD
+	 */
+	long[] getRightSide(int fd) {
+		return rhs[fd];
+	}
+
+	/**
+	 * @param fd
+	 *            the position of an FD
+	 * @return true if the FD has been removed from the engine
+	 */
+	boolean isRemoved(int fd) {
+		return lhsSize[fd] < 0;
+	}
+
+	/**
+	 * Removes an attribute from the left side of an FD. The left side bitset
+	 * passed to the constructor is modified.
+	 *
+	 * @param fd
+	 *            the position of the FD
+	 * @param attribute
+	 *            the position of the attribute in the attribute index
+	 */
+	void reduceLeftSide(int fd, int attribute) {
+		if (!AttributeIndex.get(lhs[fd], attribute)) {
+			return;
+		}
+		AttributeIndex.clear(lhs[fd], attribute);
+		if (lhsSize[fd] > 0) {
+			lhsSize[fd]--;
+		}
+		int[] fds = fdsByAttribute[attribute];
+		int[] reduced = new int[fds.length - 1];
+		for (int i = 0, j = 0; i < fds.length; i++) {
+			if (fds[i] != fd) {
+				reduced[j++] = fds[i];
+			}
+		}
+		fdsByAttribute[attribute] = reduced;
+	}
+
+	/**
+	 * Removes an FD, so that it never fires again.
+	 *
+	 * @param fd
+	 *            the position of the FD
+	 */
+	void remove(int fd) {
+		lhsSize[fd] = -1;
+	}
+
+	/**
+	 * Calculates the attribute closure of the given attributes.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @return a new bitset with all attributes that are functionally
+	 *         determined by the given attributes
+	 */
+	public long[] closure(long[] attributes) {
+		return closure(attributes, -1);
+	}
+
+	/**
+	 * Determines whether the FDs imply <code>left -> right</code>.
+	 *
+	 * @param left
+	 *            the left side as bitset
+	 * @param right
+	 *            the right side as bitset
+	 * @return true if <code>right</code> is part of the closure of
+	 *         <code>left</code>
+	 */
+	public boolean implies(long[] left, long[] right) {
+		return AttributeIndex.isSubset(right, closure(left));
+	}
+
+	/**
+	 * Calculates the attribute closure as if one FD was not part of the FD
+	 * set, e.g. to test whether the FD is redundant.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @param fd
+	 *            the position of the FD that is ignored
+	 * @return a new bitset with the closure under all other FDs
+	 */
+	public long[] closureWithout(long[] attributes, int fd) {
+		return closure(attributes, fd);
+	}
+
+	/**
+	 * Calculates a closure with the algorithm of this engine.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @param skip
+	 *            the position of an FD that is ignored or -1
+	 * @return the closure as bitset
+	 */
+	private long[] closure(long[] attributes, int skip) {
+		switch (strategy) {
+		case FIXPOINT:
+			return fixpoint(attributes, skip);
+		case CROSS_CHECK:
+			long[] expected = fixpoint(attributes, skip);
+			long[] actual = linclosure(attributes, skip);
+			if (!AttributeIndex.equals(expected, actual)) {
+				logger.logp(Level.SEVERE, ClosureEngine.class.getName(),
+						"closure", "LINCLOSURE differs from fixpoint: "
+								+ Arrays.toString(actual) + " != "
+								+ Arrays.toString(expected));
+			}
+			return expected;
+		default:
+			return linclosure(attributes, skip);
+		}
+	}
+
+	/**
+	 * Linear closure in the style of Beeri and Bernstein.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @param skip
+	 *            the position of an FD that never fires or -1
+	 * @return the closure as bitset
+	 */
+	private long[] linclosure(long[] attributes, int skip) {
+		long[] closure = Arrays.copyOf(attributes, Math.max(attributes.length,
+				words));
+		System.arraycopy(lhsSize, 0, missing, 0, lhsSize.length);
+		if (skip >= 0) {
+			missing[skip] = -1;
+		}
+
+		int head = 0;
+		int tail = 0;
+		for (int a = AttributeIndex.nextSetBit(closure, 0); a >= 0
+				&& a < queue.length; a = AttributeIndex.nextSetBit(closure,
+				a + 1)) {
+			queue[tail++] = a;
+		}
+
+		// FDs with an empty left side fire unconditionally
+		for (int i = 0; i < lhs.length; i++) {
+			if (missing[i] == 0) {
+				tail = fire(i, closure, tail);
+			}
+		}
+
+		while (head < tail) {
+			int[] fds = fdsByAttribute[queue[head++]];
+			for (int i : fds) {
+				if (--missing[i] == 0) {
+					tail = fire(i, closure, tail);
+				}
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * Adds the right side of an FD to the closure and enqueues all attributes
+	 * that were not part of it yet.
+	 *
+	 * @param fd
+	 *            the position of the FD
+	 * @param closure
+	 *            the closure that is extended
+	 * @param tail
+	 *            the current end of the queue
+	 * @return the new end of the queue
+	 */
+	private int fire(int fd, long[] closure, int tail) {
+		long[] r = rhs[fd];
+		for (int b = AttributeIndex.nextSetBit(r, 0); b >= 0; b = AttributeIndex
+				.nextSetBit(r, b + 1)) {
+			if (!AttributeIndex.get(closure, b)) {
+				AttributeIndex.set(closure, b);
+				if (b < queue.length) {
+					queue[tail++] = b;
+				}
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Fixpoint iteration that rescans all FDs until the closure is stable.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @param skip
+	 *            the position of an FD that is ignored or -1
+	 * @return the closure as bitset
+	 */
+	private long[] fixpoint(long[] attributes, int skip) {
+		long[] closure = Arrays.copyOf(attributes, Math.max(attributes.length,
+				words));
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < lhs.length; i++) {
+				if (i != skip && lhsSize[i] >= 0
+						&& AttributeIndex.isSubset(lhs[i], closure)
+						&& AttributeIndex.orInto(closure, rhs[i])) {
+					changed = true;
+				}
+			}
+		}
+		return closure;
+	}
+}
@@ -0,0 +1,141 @@
+package fd;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Computes a canonical cover of a set of FDs on an indexed, mutable working
+ * set.
+ * <p>
+ * The FDs are decomposed into FDs with single attributes on the right side
+ * and loaded into one <code>ClosureEngine</code>. Left sides are reduced and
+ * redundant FDs are removed directly in the engine, so every closure is
+ * computed against the cover as it is being reduced and the attribute index
+ * is never rebuilt. Finally FDs with equal left sides are merged through a
+ * hash map keyed by the left side bitset.
+ */
+public class CoverMinimizer {
+
+	/** The attribute index the FDs are encoded with */
+	private final AttributeIndex index;
+	/** The left sides of the working set */
+	private final long[][] lhs;
+	/** The right side attributes of the working set */
+	private final int[] rhs;
+	/** The engine that holds the working set */
+	private final ClosureEngine engine;
+
+	/**
+	 * Constructs a minimizer for the given FDs. The FDs are not modified.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param fds
+	 *            the functional dependencies
+	 */
+	public CoverMinimizer(AttributeIndex index, Collection<FDep> fds) {
+		this.index = index;
+		int words = index.words();
+
+		// compose equal left sides first, so that no duplicates are loaded
+		Map<BitsetKey, long[]> composed = new LinkedHashMap<BitsetKey, long[]>();
+		int size = 0;
+		for (FDep fd : fds) {
+			long[] l = Arrays.copyOf(fd.getLeftBits(index), words);
+			long[] r = AttributeIndex.andNot(fd.getRightBits(index), l);
+			BitsetKey key = new BitsetKey(l);
+			long[] right = composed.get(key);
+			if (right == null) {
+				right = new long[words];
+				composed.put(key, right);
+			}
+			size -= AttributeIndex.cardinality(right);
+			AttributeIndex.orInto(right, r);
+			size += AttributeIndex.cardinality(right);
+		}
+
+		lhs = new long[size][];
+		rhs = new int[size];
+		long[][] right = new long[size][];
+		int i = 0;
+		for (Map.Entry<BitsetKey, long[]> fd : composed.entrySet()) {
+			long[] r = fd.getValue();
+			for (int b = AttributeIndex.nextSetBit(r, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(r, b + 1)) {
+				lhs[i] = Arrays.copyOf(fd.getKey().getBits(), words);
+				rhs[i] = b;
+				right[i] = new long[words];
+				AttributeIndex.set(right[i], b);
+				i++;
+			}
+		}
+		engine = new ClosureEngine(index, lhs, right, Relation
+				.getClosureStrategy());
+	}
+
+	/**
+	 * Reduces the working set to a canonical cover. The minimizer must not be
+	 * used again afterwards.
+	 *
+	 * @return the canonical cover with equal left sides composed
+	 */
+	public SortedSet<FDep> minimize() {
+		reduceLeftSides();
+		removeRedundant();
+		return compose();
+	}
+
+	/**
+	 * Removes extraneous attributes from all left sides.
+	 */
+	private void reduceLeftSides() {
+		for (int i = 0; i < lhs.length; i++) {
+			// the engine owns lhs[i], so the candidates are tested on a copy
+			long[] l = Arrays.copyOf(lhs[i], lhs[i].length);
+			for (int a = AttributeIndex.nextSetBit(lhs[i], 0); a >= 0; a = AttributeIndex
+					.nextSetBit(lhs[i], a + 1)) {
+				AttributeIndex.clear(l, a);
+				if (AttributeIndex.get(engine.closure(l), rhs[i])) {
+					engine.reduceLeftSide(i, a);
+				} else {
+					AttributeIndex.set(l, a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes FDs that are implied by the remaining ones.
+	 */
+	private void removeRedundant() {
+		for (int i = 0; i < lhs.length; i++) {
+			if (AttributeIndex.get(engine.closureWithout(lhs[i], i), rhs[i])) {
+				engine.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * @return the remaining FDs with equal left sides composed
+	 */
+	private SortedSet<FDep> compose() {
+		Map<BitsetKey, FDep> byLeftSide = new LinkedHashMap<BitsetKey, FDep>();
+		for (int i = 0; i < lhs.length; i++) {
+			if (!engine.isRemoved(i)) {
+				BitsetKey key = new BitsetKey(lhs[i]);
+				FDep fd = byLeftSide.get(key);
+				if (fd == null) {
+					fd = new FDep();
+					fd.addLeftSide(index.decode(lhs[i]));
+					byLeftSide.put(key, fd);
+				}
+				fd.addRightSide(index.nameOf(rhs[i]));
+			}
+		}
+		return new TreeSet<FDep>(byLeftSide.values());
+	}
+}
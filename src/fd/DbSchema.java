@@ -17,6 +17,8 @@ public class DbSchema extends AbstractModel {
     private String schemaName;
     /** The relations of the schema */
     private SortedSet<Relation> relations;
+    /** The cataloged FDs of all relations, by id */
+    private final FDepRegistry fdepRegistry = new FDepRegistry();
 
     /**
      * Constructs a new DbSchema with a given name and an empty set of relations
@@ -83,6 +85,13 @@ public class DbSchema extends AbstractModel {
 
     }
 
+    /**
+     * @return the cataloged functional dependencies of all relations, by id
+     */
+    public FDepRegistry getFDepRegistry() {
+        return fdepRegistry;
+    }
+
     /**
      * Adds a relation to the DbSchema
      *
@@ -0,0 +1,307 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Projects a set of functional dependencies onto a subset of the attributes,
+ * i.e. computes a cover of all FDs in the closure F+ whose attributes lie
+ * within the subset.
+ * <p>
+ * Small subsets are projected by closure enumeration: the subsets
+ * <code>X</code> of the target are visited by ascending size and an FD
+ * <code>X -> B</code> is only added if <code>B</code> is in the closure of
+ * <code>X</code> but cannot be derived from the FDs found so far. Supersets of
+ * superkeys of the target are skipped. Larger subsets are projected by
+ * reduction by resolution: each attribute outside the target is eliminated by
+ * combining every FD <code>X -> A</code> with every FD <code>AZ -> B</code> to
+ * <code>XZ -> B</code>, keeping only FDs with minimal left sides.
+ * <p>
+ * Closures and projections are memoized, so one projector should be shared by
+ * all relations of one decomposition.
+ */
+public class FDProjector {
+
+	/** The maximum target size that is projected by closure enumeration */
+	public static final int ENUMERATION_LIMIT = 12;
+
+	/** The attribute index the FDs are encoded with */
+	private final AttributeIndex index;
+	/** The closure engine for the FDs that are projected */
+	private final ClosureEngine engine;
+	/** Memoized closures of the enumeration */
+	private final Map<BitsetKey, long[]> closures = new HashMap<BitsetKey, long[]>();
+	/** Memoized projections, each FD as pair of left and right side */
+	private final Map<BitsetKey, List<long[][]>> projections = new HashMap<BitsetKey, List<long[][]>>();
+
+	/**
+	 * Constructs a projector for the given FDs.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param fds
+	 *            the FDs that shall be projected
+	 */
+	public FDProjector(AttributeIndex index, Collection<FDep> fds) {
+		this(index, new ClosureEngine(index, fds, Relation
+				.getClosureStrategy()));
+	}
+
+	/**
+	 * Constructs a projector for the FDs of a closure engine.
+	 *
+	 * @param index
+	 *            the attribute index used to encode the FDs
+	 * @param engine
+	 *            the closure engine
+	 */
+	public FDProjector(AttributeIndex index, ClosureEngine engine) {
+		this.index = index;
+		this.engine = engine;
+	}
+
+	/**
+	 * Projects the FDs onto the given attributes. FDs with equal left sides
+	 * are composed. Each call returns new FDep objects.
+	 *
+	 * @param attributes
+	 *            the attributes
+	 * @return a cover of the projected FDs
+	 */
+	public SortedSet<FDep> project(Collection<String> attributes) {
+		SortedSet<FDep> result = new TreeSet<FDep>();
+		for (long[][] fd : project(index.encode(attributes))) {
+			FDep f = new FDep();
+			f.addLeftSide(index.decode(fd[0]));
+			f.addRightSide(index.decode(fd[1]));
+			result.add(f);
+		}
+		return result;
+	}
+
+	/**
+	 * Projects the FDs onto the given attributes.
+	 *
+	 * @param target
+	 *            the attributes as bitset
+	 * @return a cover of the projected FDs as pairs of left and right side
+	 */
+	List<long[][]> project(long[] target) {
+		BitsetKey key = new BitsetKey(target);
+		List<long[][]> cover = projections.get(key);
+		if (cover == null) {
+			if (AttributeIndex.cardinality(target) <= ENUMERATION_LIMIT) {
+				cover = enumerate(target);
+			} else {
+				cover = resolve(target);
+			}
+			projections.put(key, cover);
+		}
+		return cover;
+	}
+
+	/**
+	 * Projects by enumerating the subsets of the target by ascending size.
+	 *
+	 * @param target
+	 *            the attributes as bitset
+	 * @return the projected FDs
+	 */
+	private List<long[][]> enumerate(long[] target) {
+		Map<BitsetKey, long[]> cover = new LinkedHashMap<BitsetKey, long[]>();
+		List<long[]> superkeys = new ArrayList<long[]>();
+		SubsetIterator subsets = new SubsetIterator(target,
+				SubsetIterator.Order.SMALLEST_FIRST, 0, AttributeIndex
+						.cardinality(target) - 1);
+		next: while (subsets.hasNext()) {
+			long[] x = subsets.next();
+			for (long[] k : superkeys) {
+				if (AttributeIndex.isSubset(k, x)) {
+					continue next;
+				}
+			}
+			x = Arrays.copyOf(x, x.length);
+			long[] closure = AttributeIndex.and(closure(x), target);
+			long[] gained = AttributeIndex.andNot(closure, x);
+			if (AttributeIndex.isEmpty(gained)) {
+				continue;
+			}
+			long[] rhs = AttributeIndex.andNot(gained, derive(cover, x));
+			if (!AttributeIndex.isEmpty(rhs)) {
+				cover.put(new BitsetKey(x), rhs);
+			}
+			if (AttributeIndex.isSubset(target, closure)) {
+				superkeys.add(x);
+			}
+		}
+		return toList(cover);
+	}
+
+	/**
+	 * Returns the memoized closure of a set of attributes.
+	 *
+	 * @param x
+	 *            the attributes as bitset, it must not be modified afterwards
+	 * @return the closure
+	 */
+	private long[] closure(long[] x) {
+		BitsetKey key = new BitsetKey(x);
+		long[] closure = closures.get(key);
+		if (closure == null) {
+			closure = engine.closure(x);
+			closures.put(key, closure);
+		}
+		return closure;
+	}
+
+	/**
+	 * Computes the closure of a set of attributes under already projected
+	 * FDs.
+	 *
+	 * @param cover
+	 *            the projected FDs
+	 * @param x
+	 *            the attributes as bitset
+	 * @return the closure
+	 */
+	private static long[] derive(Map<BitsetKey, long[]> cover, long[] x) {
+		long[] closure = Arrays.copyOf(x, x.length);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Map.Entry<BitsetKey, long[]> fd : cover.entrySet()) {
+				if (AttributeIndex.isSubset(fd.getKey().getBits(), closure)
+						&& AttributeIndex.orInto(closure, fd.getValue())) {
+					changed = true;
+				}
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * Projects by eliminating the attributes outside the target through
+	 * resolution.
+	 *
+	 * @param target
+	 *            the attributes as bitset
+	 * @return the projected FDs
+	 */
+	private List<long[][]> resolve(long[] target) {
+		int words = index.words();
+		// FDs with single right sides, as pairs of left side and attribute
+		List<long[]> lhs = new ArrayList<long[]>();
+		List<Integer> rhs = new ArrayList<Integer>();
+		long[] outside = new long[words];
+		for (int i = 0; i < engine.size(); i++) {
+			long[] l = Arrays.copyOf(engine.getLeftSide(i), words);
+			long[] r = engine.getRightSide(i);
+			AttributeIndex.orInto(outside, l);
+			for (int b = AttributeIndex.nextSetBit(r, 0); b >= 0; b = AttributeIndex
+					.nextSetBit(r, b + 1)) {
+				AttributeIndex.set(outside, b);
+				addMinimal(lhs, rhs, l, b);
+			}
+		}
+		outside = AttributeIndex.andNot(outside, target);
+
+		for (int a = AttributeIndex.nextSetBit(outside, 0); a >= 0; a = AttributeIndex
+				.nextSetBit(outside, a + 1)) {
+			List<long[]> into = new ArrayList<long[]>();
+			List<long[]> from = new ArrayList<long[]>();
+			List<Integer> fromRhs = new ArrayList<Integer>();
+			List<long[]> keptLhs = new ArrayList<long[]>();
+			List<Integer> keptRhs = new ArrayList<Integer>();
+			for (int i = 0; i < lhs.size(); i++) {
+				if (rhs.get(i) == a) {
+					into.add(lhs.get(i));
+				} else if (AttributeIndex.get(lhs.get(i), a)) {
+					from.add(lhs.get(i));
+					fromRhs.add(rhs.get(i));
+				} else {
+					keptLhs.add(lhs.get(i));
+					keptRhs.add(rhs.get(i));
+				}
+			}
+			for (long[] x : into) {
+				for (int j = 0; j < from.size(); j++) {
+					long[] z = AttributeIndex.or(x, from.get(j));
+					AttributeIndex.clear(z, a);
+					addMinimal(keptLhs, keptRhs, z, fromRhs.get(j));
+				}
+			}
+			lhs = keptLhs;
+			rhs = keptRhs;
+		}
+
+		Map<BitsetKey, long[]> cover = new LinkedHashMap<BitsetKey, long[]>();
+		for (int i = 0; i < lhs.size(); i++) {
+			BitsetKey key = new BitsetKey(lhs.get(i));
+			long[] r = cover.get(key);
+			if (r == null) {
+				r = new long[words];
+				cover.put(key, r);
+			}
+			AttributeIndex.set(r, rhs.get(i));
+		}
+		return toList(cover);
+	}
+
+	/**
+	 * Adds a non-trivial FD <code>x -> b</code> unless an FD with the same
+	 * right side and a smaller left side exists. FDs that become redundant
+	 * are removed.
+	 *
+	 * @param lhs
+	 *            the left sides
+	 * @param rhs
+	 *            the right sides
+	 * @param x
+	 *            the left side of the new FD
+	 * @param b
+	 *            the right side of the new FD
+	 */
+	private static void addMinimal(List<long[]> lhs, List<Integer> rhs,
+			long[] x, int b) {
+		if (AttributeIndex.get(x, b)) {
+			return;
+		}
+		for (int i = 0; i < lhs.size(); i++) {
+			if (rhs.get(i) == b && AttributeIndex.isSubset(lhs.get(i), x)) {
+				return;
+			}
+		}
+		Iterator<long[]> l = lhs.iterator();
+		Iterator<Integer> r = rhs.iterator();
+		while (l.hasNext()) {
+			long[] y = l.next();
+			if (r.next() == b && AttributeIndex.isSubset(x, y)) {
+				l.remove();
+				r.remove();
+			}
+		}
+		lhs.add(x);
+		rhs.add(b);
+	}
+
+	/**
+	 * @param cover
+	 *            FDs by left side
+	 * @return the FDs as pairs of left and right side
+	 */
+	private static List<long[][]> toList(Map<BitsetKey, long[]> cover) {
+		List<long[][]> fds = new ArrayList<long[][]>();
+		for (Map.Entry<BitsetKey, long[]> fd : cover.entrySet()) {
+			fds.add(new long[][] { fd.getKey().getBits(), fd.getValue() });
+		}
+		return fds;
+	}
+}
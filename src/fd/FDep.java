@@ -22,6 +22,17 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	private boolean isKey;
 	/** The id with which the FDep is saved in the catalog */
 	private int id;
+	/**
+	 * The fraction of rows of the instance that violate the FDep, 0 unless it
+	 * is an approximate FD
+	 */
+	private double error;
+	/** The attribute index the cached bitsets have been encoded with */
+	private AttributeIndex bitsIndex;
+	/** The left side encoded as bitset, see {@link #getLeftBits} */
+	private long[] leftBits;
+	/** The right side encoded as bitset, see {@link #getRightBits} */
+	private long[] rightBits;
 
 	/**
 	 * Constructs a new functional dependency with empty HashSets for the left
@@ -74,6 +85,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 		}
 		this.isKey = fd.getIsKey();
 		this.id = fd.getId();
+		this.error = fd.getError();
 	}
 
 	/**
@@ -89,6 +101,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void setLeftSide(SortedSet<String> leftSide) {
 		this.leftSide = leftSide;
+		invalidateBits();
 	}
 
 	/**
@@ -104,6 +117,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void setRightSide(SortedSet<String> rightSide) {
 		this.rightSide = rightSide;
+		invalidateBits();
 	}
 
 	/**
@@ -136,6 +150,32 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 		this.id = id;
 	}
 
+	/**
+	 * Returns the <code>g3</code> error of the FDep on the instance of its
+	 * relation, i.e. the minimum fraction of rows that would have to be
+	 * removed for the FDep to hold.
+	 * 
+	 * @return the error, 0 for an FDep that holds exactly
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * @param error
+	 *            the error to set
+	 */
+	public void setError(double error) {
+		this.error = error;
+	}
+
+	/**
+	 * @return true if the FDep is violated by some rows of the instance
+	 */
+	public boolean isApproximate() {
+		return error > 0;
+	}
+
 	/**
 	 * Adds an attribute to the Left Side of a FDep
 	 * 
@@ -144,6 +184,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void addLeftSide(String a) {
 		this.leftSide.add(a);
+		invalidateBits();
 	}
 
 	/**
@@ -154,6 +195,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void addRightSide(String a) {
 		this.rightSide.add(a);
+		invalidateBits();
 	}
 
 	/**
@@ -164,6 +206,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void addLeftSide(Collection<String> c) {
 		this.leftSide.addAll(c);
+		invalidateBits();
 	}
 
 	/**
@@ -174,6 +217,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void addRightSide(Collection<String> c) {
 		this.rightSide.addAll(c);
+		invalidateBits();
 	}
 
 	/**
@@ -184,6 +228,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void removeLeftSide(String a) {
 		this.leftSide.remove(a);
+		invalidateBits();
 	}
 
 	/**
@@ -194,6 +239,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void removeRightSide(String a) {
 		this.rightSide.remove(a);
+		invalidateBits();
 	}
 
 	/**
@@ -204,6 +250,7 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void removeLeftSide(Collection<String> c) {
 		this.leftSide.removeAll(c);
+		invalidateBits();
 	}
 
 	/**
@@ -214,10 +261,71 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 */
 	public void removeRightSide(Collection<String> c) {
 		this.rightSide.removeAll(c);
+		invalidateBits();
 	}
 
 	/**
-	 * Compares this object with the specified object for order.
+	 * Returns the left side as bitset over the given attribute index. The
+	 * encoding is cached until the FDep is modified or encoded with another
+	 * index. The sorted sets returned by {@link #getLeftSide()} and
+	 * {@link #getRightSide()} remain the editable view of the FDep; they must
+	 * only be modified through the methods of this class, so that the cached
+	 * bitsets stay consistent.
+	 * 
+	 * @param index
+	 *            the attribute index of the relation
+	 * @return the left side as bitset
+	 */
+	public long[] getLeftBits(AttributeIndex index) {
+		encodeBits(index);
+		return leftBits;
+	}
+
+	/**
+	 * Returns the right side as bitset over the given attribute index.
+	 * 
+	 * @param index
+	 *            the attribute index of the relation
+	 * @return the right side as bitset
+	 * @see #getLeftBits(AttributeIndex)
+	 */
+	public long[] getRightBits(AttributeIndex index) {
+		encodeBits(index);
+		return rightBits;
+	}
+
+	/**
+	 * Encodes both sides with the given index, unless they are already cached
+	 * for it.
+	 * 
+	 * @param index
+	 *            the attribute index of the relation
+	 */
+	private void encodeBits(AttributeIndex index) {
+		if (bitsIndex != index || leftBits == null) {
+			leftBits = index.encode(leftSide);
+			rightBits = index.encode(rightSide);
+			bitsIndex = index;
+		}
+	}
+
+	/**
+	 * Discards the cached bitsets after a modification of either side.
+	 */
+	private void invalidateBits() {
+		bitsIndex = null;
+		leftBits = null;
+		rightBits = null;
+	}
+
+	/**
+	 * Compares this object with the specified object for order. FDs are
+	 * ordered by their sorted left sides and then by their sorted right sides.
+	 * If both FDs have cached bitsets of the same attribute index whose
+	 * positions follow the order of the names, as for the FDs of one
+	 * relation, the bitsets are compared instead of the names. Otherwise,
+	 * e.g. for FDs of different relations, the names are compared one by
+	 * one, which yields the same order.
 	 * 
 	 * @param o
 	 *            the Object to be compared.
@@ -226,6 +334,13 @@ public class FDep extends AbstractModel implements Comparable<FDep>, Cloneable {
 	 *         less than, equal to, or greater than the specified object.
 	 */
 	public int compareTo(FDep o) {
+		if (bitsIndex != null && bitsIndex == o.bitsIndex
+				&& bitsIndex.isOrdered()) {
+			int cmp = AttributeIndex.compare(leftBits, o.leftBits);
+			return cmp != 0 ? cmp : AttributeIndex.compare(rightBits,
+					o.rightBits);
+		}
+
 		Iterator<String> iter1l = leftSide.iterator();
 		Iterator<String> iter2l = o.leftSide.iterator();
 
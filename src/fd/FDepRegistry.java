@@ -0,0 +1,143 @@
+package fd;
+
+/**
+ * Indexes functional dependencies by their catalog id, see
+ * {@link FDep#getId()}. The ids are kept in an open addressing hash table of
+ * primitive ints with linear probing, so that looking up an FD neither boxes
+ * the id nor queries the catalog.
+ */
+public class FDepRegistry {
+
+	/** The initial number of slots, a power of two */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The ids of the occupied slots */
+	private int[] ids = new int[INITIAL_CAPACITY];
+	/** The FDs, null for free slots */
+	private FDep[] fdeps = new FDep[INITIAL_CAPACITY];
+	/** The number of FDs */
+	private int size;
+
+	/**
+	 * Registers an FD by its id, replacing any FD with the same id.
+	 *
+	 * @param fd
+	 *            the FD
+	 * @return the replaced FD, null if there was none
+	 */
+	public FDep put(FDep fd) {
+		int slot = slot(fd.getId());
+		FDep old = fdeps[slot];
+		ids[slot] = fd.getId();
+		fdeps[slot] = fd;
+		if (old == null && ++size > fdeps.length / 2) {
+			resize(fdeps.length * 2);
+		}
+		return old;
+	}
+
+	/**
+	 * @param id
+	 *            a catalog id
+	 * @return the FD with the id, null if there is none
+	 */
+	public FDep get(int id) {
+		return fdeps[slot(id)];
+	}
+
+	/**
+	 * @param id
+	 *            a catalog id
+	 * @return true if an FD with the id is registered
+	 */
+	public boolean contains(int id) {
+		return fdeps[slot(id)] != null;
+	}
+
+	/**
+	 * Removes the FD with the given id.
+	 *
+	 * @param id
+	 *            a catalog id
+	 * @return the removed FD, null if there was none
+	 */
+	public FDep remove(int id) {
+		int slot = slot(id);
+		FDep old = fdeps[slot];
+		if (old == null) {
+			return null;
+		}
+		fdeps[slot] = null;
+		size--;
+
+		/*
+		 * Moves the following FDs of the probe sequence back, so that no FD
+		 * is separated from its home slot by a free slot.
+		 */
+		int mask = fdeps.length - 1;
+		int free = slot;
+		for (int i = (free + 1) & mask; fdeps[i] != null; i = (i + 1) & mask) {
+			int home = hash(ids[i]) & mask;
+			// the FD may be moved if its home slot is not within (free, i]
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				ids[free] = ids[i];
+				fdeps[free] = fdeps[i];
+				fdeps[i] = null;
+				free = i;
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * @return the number of registered FDs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all FDs.
+	 */
+	public void clear() {
+		ids = new int[INITIAL_CAPACITY];
+		fdeps = new FDep[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @return the slot of the FD with the id, or the free slot where it would
+	 *         be inserted
+	 */
+	private int slot(int id) {
+		int mask = fdeps.length - 1;
+		int i = hash(id) & mask;
+		while (fdeps[i] != null && ids[i] != id) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void resize(int capacity) {
+		int[] oldIds = ids;
+		FDep[] oldFdeps = fdeps;
+		ids = new int[capacity];
+		fdeps = new FDep[capacity];
+		for (int i = 0; i < oldFdeps.length; i++) {
+			if (oldFdeps[i] != null) {
+				int slot = slot(oldIds[i]);
+				ids[slot] = oldIds[i];
+				fdeps[slot] = oldFdeps[i];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of consecutive ids, which the serial column of the
+	 * catalog hands out.
+	 */
+	private static int hash(int id) {
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,204 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the candidate keys of a relation with the algorithm of Lucchesi
+ * and Osborn. Starting from one key, every further key is derived from a known
+ * key <code>K</code> and an FD <code>X -> Y</code> by minimizing the superkey
+ * <code>X u (K - Y)</code>, unless it already contains a known key. The cost is
+ * polynomial in the number of FDs, attributes and keys, instead of exponential
+ * in the number of columns.
+ * <p>
+ * Before the search the attributes are classified: attributes that occur on
+ * no right side (left side only or in no FD at all) belong to every key,
+ * attributes that occur on a right side but on no left side belong to no key.
+ * Only the remaining attributes have to be tested during minimization.
+ * <p>
+ * The keys are computed lazily, one per call of {@link #next()}, so callers
+ * that only need the first keys do not pay for the rest.
+ */
+public class KeyEnumerator implements Iterator<long[]> {
+
+	/** The closure engine of the relation */
+	private final ClosureEngine engine;
+	/** The columns of the relation */
+	private final long[] columns;
+	/** Attributes that belong to every key */
+	private final long[] core;
+	/** Attributes that are tested during minimization */
+	private final long[] candidates;
+	/**
+	 * The left and right sides the keys are derived from, including the
+	 * artificial FD from the columns to attributes outside the relation
+	 */
+	private final List<long[]> left = new ArrayList<long[]>();
+	private final List<long[]> right = new ArrayList<long[]>();
+	/** All keys found so far, including keys with outside attributes */
+	private final List<long[]> keys = new ArrayList<long[]>();
+	/** The key and FD that are combined next */
+	private int key;
+	private int fd;
+	/** The next key that is returned, null if it has not been searched yet */
+	private long[] pending;
+	/** The number of keys in <code>keys</code> already searched for output */
+	private int emitted;
+
+	/**
+	 * Constructs an enumerator for the keys of a relation.
+	 *
+	 * @param index
+	 *            the attribute index of the relation
+	 * @param columns
+	 *            the columns of the relation as bitset
+	 * @param engine
+	 *            the closure engine for the FDs of the relation
+	 */
+	public KeyEnumerator(AttributeIndex index, long[] columns,
+			ClosureEngine engine) {
+		this.engine = engine;
+		this.columns = columns;
+
+		// attributes that are referenced by the FDs but are no columns of the
+		// relation, e.g. after columns have been moved to another relation
+		int words = index.words();
+		long[] outside = new long[words];
+		long[] onLeft = new long[words];
+		long[] onRight = new long[words];
+		for (int i = 0; i < engine.size(); i++) {
+			long[] l = engine.getLeftSide(i);
+			long[] r = AttributeIndex.andNot(engine.getRightSide(i), l);
+			left.add(l);
+			right.add(r);
+			AttributeIndex.orInto(onLeft, l);
+			AttributeIndex.orInto(onRight, r);
+			AttributeIndex.orInto(outside, l);
+			AttributeIndex.orInto(outside, r);
+		}
+		outside = AttributeIndex.andNot(outside, columns);
+		long[] universe = AttributeIndex.or(columns, outside);
+		if (!AttributeIndex.isEmpty(outside)) {
+			// the columns determine all outside attributes, so that keys of
+			// the extended universe are exactly the keys of the columns plus
+			// keys that contain outside attributes
+			left.add(columns);
+			right.add(outside);
+			AttributeIndex.orInto(onLeft, columns);
+			AttributeIndex.orInto(onRight, outside);
+		}
+
+		core = AttributeIndex.andNot(universe, onRight);
+		long[] rightOnly = AttributeIndex.andNot(onRight, onLeft);
+		candidates = AttributeIndex.andNot(AttributeIndex.andNot(universe,
+				core), rightOnly);
+
+		keys.add(minimize(AttributeIndex.or(core, candidates)));
+	}
+
+	/**
+	 * Determines whether the attributes determine all columns.
+	 *
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @return true if the attributes form a superkey
+	 */
+	private boolean isSuperkey(long[] attributes) {
+		return AttributeIndex.isSubset(columns, engine.closure(attributes));
+	}
+
+	/**
+	 * Removes attributes from a superkey as long as it stays a superkey.
+	 *
+	 * @param superkey
+	 *            the superkey as bitset, it is modified
+	 * @return the resulting key
+	 */
+	private long[] minimize(long[] superkey) {
+		for (int a = AttributeIndex.nextSetBit(candidates, 0); a >= 0; a = AttributeIndex
+				.nextSetBit(candidates, a + 1)) {
+			if (AttributeIndex.get(superkey, a)) {
+				AttributeIndex.clear(superkey, a);
+				if (!isSuperkey(superkey)) {
+					AttributeIndex.set(superkey, a);
+				}
+			}
+		}
+		return superkey;
+	}
+
+	/**
+	 * @param attributes
+	 *            a superkey as bitset
+	 * @return true if the superkey contains one of the keys found so far
+	 */
+	private boolean containsKey(long[] attributes) {
+		for (long[] k : keys) {
+			if (AttributeIndex.isSubset(k, attributes)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Derives keys until a key within the columns is found or all
+	 * combinations of keys and FDs have been tried.
+	 *
+	 * @return the next key or null if there is none
+	 */
+	private long[] advance() {
+		while (true) {
+			while (emitted < keys.size()) {
+				long[] k = keys.get(emitted++);
+				if (AttributeIndex.isSubset(k, columns)) {
+					return k;
+				}
+			}
+			if (key == keys.size()) {
+				return null;
+			}
+			long[] k = keys.get(key);
+			long[] s = AttributeIndex.or(left.get(fd), AttributeIndex.andNot(
+					k, right.get(fd)));
+			if (++fd == left.size()) {
+				fd = 0;
+				key++;
+			}
+			if (!containsKey(s)) {
+				keys.add(minimize(s));
+			}
+		}
+	}
+
+	/**
+	 * @return true if there is another candidate key
+	 */
+	public boolean hasNext() {
+		if (pending == null) {
+			pending = advance();
+		}
+		return pending != null;
+	}
+
+	/**
+	 * @return the next candidate key as bitset
+	 */
+	public long[] next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		long[] k = pending;
+		pending = null;
+		return k;
+	}
+
+	/**
+	 * Not supported.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,198 @@
+package fd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable result of the normal form analysis of a relation for one version
+ * of its FD set. The candidate keys are determined once and all normal form
+ * checks are derived from them, so that <code>getNormalform</code> and the
+ * normalization algorithms do not enumerate the keys again.
+ * <p>
+ * Besides the normal form the analysis keeps the dependencies that violate
+ * the next higher normal form:
+ * <ul>
+ * <li>partial dependencies: a proper subset of a key determines non-prime
+ * attributes (2NF)</li>
+ * <li>transitive dependencies: a non-trivial FD with a non-prime right side
+ * whose left side is no superkey (3NF)</li>
+ * <li>BCNF violations: non-trivial FDs whose left side is no superkey</li>
+ * </ul>
+ */
+public class NormalFormAnalysis {
+
+	/** The candidate keys */
+	private final Set<Set<String>> keys;
+	/** The attributes that are part of a candidate key */
+	private final SortedSet<String> primeAttributes;
+	/** The attributes that are not part of any candidate key */
+	private final SortedSet<String> nonPrimeAttributes;
+	/** Proper subsets of keys and the non-prime attributes they determine */
+	private final List<FDep> partialDependencies;
+	/** FDs that violate 3NF */
+	private final List<FDep> transitiveDependencies;
+	/** Non-trivial FDs whose left side is no superkey */
+	private final List<FDep> bcnfViolations;
+	/** The resulting normal form */
+	private final String normalform;
+
+	/**
+	 * Analyzes the given relation.
+	 *
+	 * @param relation
+	 *            the relation
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 */
+	NormalFormAnalysis(Relation relation, boolean preview) {
+		AttributeIndex index = relation.getAttributeIndex();
+		SortedSet<String> columns = relation.getColumns();
+		long[] all = relation.getColumnBits();
+
+		keys = Collections.unmodifiableSet(relation.determineKeys(preview));
+		SortedSet<String> prime = new TreeSet<String>();
+		for (Set<String> key : keys) {
+			prime.addAll(key);
+		}
+		prime.retainAll(columns);
+		SortedSet<String> nonPrime = new TreeSet<String>(columns);
+		nonPrime.removeAll(prime);
+		primeAttributes = Collections.unmodifiableSortedSet(prime);
+		nonPrimeAttributes = Collections.unmodifiableSortedSet(nonPrime);
+		long[] nonPrimeBits = index.encode(nonPrime);
+
+		// 2NF: no non-prime attribute depends on a proper subset of a key
+		List<FDep> partial = new ArrayList<FDep>();
+		for (Set<String> key : keys) {
+			long[] keyBits = index.encode(key);
+			for (String a : key) {
+				long[] y = Arrays.copyOf(keyBits, keyBits.length);
+				AttributeIndex.clear(y, index.indexOf(a));
+				long[] z = AttributeIndex.and(relation.closure(preview, y), nonPrimeBits);
+				if (!AttributeIndex.isEmpty(z)) {
+					FDep fd = new FDep();
+					fd.addLeftSide(index.decode(y));
+					fd.addRightSide(index.decode(z));
+					partial.add(fd);
+				}
+			}
+		}
+		partialDependencies = Collections.unmodifiableList(partial);
+
+		// 3NF: each non-trivial FD X -> B has a superkey X or a prime B
+		List<FDep> transitive = new ArrayList<FDep>();
+		for (FDep fd : relation.getFdeps(preview)) {
+			long[] lhs = fd.getLeftBits(index);
+			long[] rhs = AttributeIndex.and(AttributeIndex.andNot(fd
+					.getRightBits(index), lhs), nonPrimeBits);
+			if (!AttributeIndex.isEmpty(rhs)
+					&& !AttributeIndex.isSubset(all, relation.closure(preview, lhs))) {
+				FDep witness = new FDep();
+				witness.addLeftSide(fd.getLeftSide());
+				witness.addRightSide(index.decode(rhs));
+				transitive.add(witness);
+			}
+		}
+		transitiveDependencies = Collections.unmodifiableList(transitive);
+
+		// BCNF: each non-trivial FD on the columns has a superkey as left side
+		List<FDep> violations = new ArrayList<FDep>();
+		for (FDep fd : relation.getFdeps(preview)) {
+			long[] lhs = fd.getLeftBits(index);
+			long[] rhs = AttributeIndex.andNot(fd.getRightBits(index), lhs);
+			if (AttributeIndex.intersects(rhs, all)
+					&& !AttributeIndex.isSubset(all, relation.closure(preview,
+							lhs))) {
+				violations.add(fd);
+			}
+		}
+		bcnfViolations = Collections.unmodifiableList(violations);
+
+		if (!partialDependencies.isEmpty()) {
+			normalform = "1 NF";
+		} else if (!transitiveDependencies.isEmpty()) {
+			normalform = "2 NF";
+		} else if (!bcnfViolations.isEmpty()) {
+			normalform = "3 NF";
+		} else {
+			normalform = "BCNF";
+		}
+	}
+
+	/**
+	 * @return the candidate keys
+	 */
+	public Set<Set<String>> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * @return the attributes that are part of a candidate key
+	 */
+	public SortedSet<String> getPrimeAttributes() {
+		return primeAttributes;
+	}
+
+	/**
+	 * @return the attributes that are not part of any candidate key
+	 */
+	public SortedSet<String> getNonPrimeAttributes() {
+		return nonPrimeAttributes;
+	}
+
+	/**
+	 * @return proper subsets of keys and the non-prime attributes they
+	 *         determine
+	 */
+	public List<FDep> getPartialDependencies() {
+		return partialDependencies;
+	}
+
+	/**
+	 * @return the FDs, restricted to their non-prime right side attributes,
+	 *         whose left side is no superkey
+	 */
+	public List<FDep> getTransitiveDependencies() {
+		return transitiveDependencies;
+	}
+
+	/**
+	 * @return the non-trivial FDs whose left side is no superkey
+	 */
+	public List<FDep> getBcnfViolations() {
+		return bcnfViolations;
+	}
+
+	/**
+	 * @return true if the relation is in 2NF
+	 */
+	public boolean is2NF() {
+		return partialDependencies.isEmpty();
+	}
+
+	/**
+	 * @return true if the relation is in 3NF
+	 */
+	public boolean is3NF() {
+		return is2NF() && transitiveDependencies.isEmpty();
+	}
+
+	/**
+	 * @return true if the relation is in BCNF
+	 */
+	public boolean isBCNF() {
+		return is3NF() && bcnfViolations.isEmpty();
+	}
+
+	/**
+	 * @return the normal form, e.g. "3 NF"
+	 */
+	public String getNormalform() {
+		return normalform;
+	}
+}
@@ -1,9 +1,16 @@
 package fd;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -36,6 +43,27 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * implemented in the db
 	 */
 	private Set<FDep> removedFdeps;
+	/** The removed functional dependencies by id */
+	private FDepRegistry removedById = new FDepRegistry();
+	/** Maps the attributes of the relation to bit positions */
+	private AttributeIndex attributeIndex;
+	/**
+	 * The versions of the implemented and the preview FD set, incremented
+	 * whenever the columns or the respective FDs change
+	 */
+	private int[] fdVersions = new int[2];
+	/** Memoized closures and candidate keys */
+	private ClosureCache closureCache = new ClosureCache();
+	/** The closure engines for the implemented and the preview FD set */
+	private ClosureEngine[] engines = new ClosureEngine[2];
+	/** The FD set versions the closure engines have been built for */
+	private int[] engineVersions = new int[2];
+	/** The normal form analyses for the implemented and the preview FD set */
+	private NormalFormAnalysis[] analyses = new NormalFormAnalysis[2];
+	/** The FD set versions the analyses have been made for */
+	private int[] analysisVersions = new int[2];
+	/** The algorithm used by the closure engines of all relations */
+	private static ClosureEngine.Strategy closureStrategy = ClosureEngine.Strategy.LINCLOSURE;
 
 	/**
 	 * Constructs a new relation with a given relationName and empty sets for
@@ -113,6 +141,130 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		return columns;
 	}
 
+	/**
+	 * Returns the dictionary that maps the attributes of this relation to bit
+	 * positions. The index is rebuilt whenever the columns change.
+	 * 
+	 * @return the attribute index
+	 */
+	public AttributeIndex getAttributeIndex() {
+		if (attributeIndex == null) {
+			attributeIndex = (columns == null) ? new AttributeIndex()
+					: new AttributeIndex(columns);
+		}
+		return attributeIndex;
+	}
+
+	/**
+	 * @return the columns encoded as bitset
+	 */
+	long[] getColumnBits() {
+		return getAttributeIndex().encode(columns);
+	}
+
+	/**
+	 * Marks the FD set as changed, so that closure engines are rebuilt on
+	 * their next use. Called by all mutators of this class and after FDs have
+	 * been modified in place.
+	 */
+	void fdepsChanged() {
+		fdVersions[0]++;
+		fdVersions[1]++;
+		closureCache.invalidate(false);
+		closureCache.invalidate(true);
+	}
+
+	/**
+	 * Marks the temporary FDs as changed. Only the preview is affected.
+	 */
+	private void previewFdepsChanged() {
+		fdVersions[1]++;
+		closureCache.invalidate(true);
+	}
+
+	/**
+	 * @return the memo cache for closures and candidate keys
+	 */
+	public ClosureCache getClosureCache() {
+		return closureCache;
+	}
+
+	/**
+	 * Calculates the attribute closure of a bitset, using the memo cache.
+	 * 
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 * @param attributes
+	 *            the attributes as bitset
+	 * @return the closure as bitset, it must not be modified
+	 */
+	long[] closure(boolean preview, long[] attributes) {
+		int version = fdVersions[preview ? 1 : 0];
+		long[] closure = closureCache.getClosure(preview, version, attributes);
+		if (closure == null) {
+			closure = getClosureEngine(preview).closure(attributes);
+			closureCache.putClosure(preview, version, attributes, closure);
+		}
+		return closure;
+	}
+
+	/**
+	 * Returns the closure engine for the current version of the FD set. The
+	 * engine is built on first use after a change.
+	 * 
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 * @return the closure engine
+	 */
+	ClosureEngine getClosureEngine(boolean preview) {
+		int i = preview ? 1 : 0;
+		ClosureEngine engine = engines[i];
+		if (engine == null || engineVersions[i] != fdVersions[i]
+				|| engine.getStrategy() != closureStrategy) {
+			engine = new ClosureEngine(getAttributeIndex(), getFdeps(preview),
+					closureStrategy);
+			engines[i] = engine;
+			engineVersions[i] = fdVersions[i];
+		}
+		return engine;
+	}
+
+	/**
+	 * Returns the normal form analysis for the current version of the FD set.
+	 * The analysis is made on first use after a change.
+	 * 
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 * @return the normal form analysis
+	 */
+	public NormalFormAnalysis getAnalysis(boolean preview) {
+		int i = preview ? 1 : 0;
+		if (analyses[i] == null || analysisVersions[i] != fdVersions[i]) {
+			analyses[i] = new NormalFormAnalysis(this, preview);
+			analysisVersions[i] = fdVersions[i];
+		}
+		return analyses[i];
+	}
+
+	/**
+	 * @return the algorithm used to calculate attribute closures
+	 */
+	public static ClosureEngine.Strategy getClosureStrategy() {
+		return closureStrategy;
+	}
+
+	/**
+	 * Selects the algorithm used to calculate attribute closures in all
+	 * relations, e.g. to cross-check the linear closure against the fixpoint
+	 * iteration.
+	 * 
+	 * @param strategy
+	 *            the closure algorithm
+	 */
+	public static void setClosureStrategy(ClosureEngine.Strategy strategy) {
+		closureStrategy = strategy;
+	}
+
 	/**
 	 * @param columns
 	 *            the columns to set
@@ -120,6 +272,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	public void setColumns(SortedSet<String> columns) {
 		SortedSet<String> oldColumns = this.columns;
 		this.columns = columns;
+		attributeIndex = null;
+		fdepsChanged();
 
 		firePropertyChange(DefaultController.ELEMENT_RELATION_COLUMNS_PROPERTY,
 				oldColumns, columns);
@@ -140,17 +294,12 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 			return fdeps;
 		} else {
 			SortedSet<FDep> allFDeps = new TreeSet<FDep>();
-			allFDeps.addAll(fdeps);
-			allFDeps.addAll(getAdditionalFdeps());
-			HashSet<Integer> removedIds = new HashSet<Integer>();
-			for (FDep rfd : removedFdeps) {
-				removedIds.add(rfd.getId());
-			}
 			for (FDep fd : fdeps) {
-				if (removedIds.contains(fd.getId())) {
-					allFDeps.remove(fd);
+				if (!removedById.contains(fd.getId())) {
+					allFDeps.add(fd);
 				}
 			}
+			allFDeps.addAll(getAdditionalFdeps());
 			allFDeps.removeAll(removedFdeps);
 			return allFDeps;
 		}
@@ -163,6 +312,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	public void setFdeps(SortedSet<FDep> fdeps) {
 		SortedSet<FDep> oldFdeps = this.fdeps;
 		this.fdeps = fdeps;
+		fdepsChanged();
 
 		firePropertyChange(DefaultController.ELEMENT_RELATION_FDEPS_PROPERTY,
 				oldFdeps, fdeps);
@@ -181,6 +331,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 */
 	public void setAdditionalFdeps(Set<FDep> additionalFdeps) {
 		this.additionalFdeps = additionalFdeps;
+		previewFdepsChanged();
 	}
 
 	/**
@@ -196,23 +347,18 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 */
 	public void setRemovedFdeps(Set<FDep> removedFdeps) {
 		this.removedFdeps = removedFdeps;
+		removedById.clear();
+		for (FDep fd : removedFdeps) {
+			removedById.put(fd);
+		}
+		previewFdepsChanged();
 	}
 
 	/**
 	 * @return the normalform
 	 */
 	public String getNormalform(boolean preview) {
-		String nf = "1 NF";
-		if (is2NF(preview)) {
-			nf = "2 NF";
-			if (is3NF(preview)) {
-				nf = "3 NF";
-				if (isBCNF(preview)) {
-					nf = "BCNF";
-				}
-			}
-		}
-		return nf;
+		return getAnalysis(preview).getNormalform();
 	}
 
 	/**
@@ -224,6 +370,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	public void addColumn(String column) {
 		SortedSet<String> oldColumns = this.columns;
 		columns.add(column);
+		attributeIndex = null;
+		fdepsChanged();
 
 		firePropertyChange(DefaultController.ELEMENT_RELATION_COLUMNS_PROPERTY,
 				oldColumns, columns);
@@ -238,6 +386,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	public void removeColumn(String column) {
 		SortedSet<String> oldColumns = this.columns;
 		columns.remove(column);
+		attributeIndex = null;
+		fdepsChanged();
 
 		firePropertyChange(DefaultController.ELEMENT_RELATION_COLUMNS_PROPERTY,
 				oldColumns, columns);
@@ -252,6 +402,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	public void addFDep(FDep fd) {
 		Set<FDep> oldFdeps = this.fdeps;
 		fdeps.add(fd);
+		fdepsChanged();
 
 		firePropertyChange(DefaultController.ELEMENT_RELATION_FDEPS_PROPERTY,
 				oldFdeps, fdeps);
@@ -266,6 +417,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 */
 	public void addAdditionalFdep(FDep fd) {
 		additionalFdeps.add(fd);
+		previewFdepsChanged();
 
 		firePropertyChange(
 				DefaultController.ELEMENT_RELATION_ADDITIONAL_FDEPS_PROPERTY,
@@ -275,6 +427,85 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 				getNormalform(true));
 	}
 
+	/**
+	 * adds several functional dependencies to the set of additionalFDeps at
+	 * once. The preview is updated once for all of them, and the listeners
+	 * are notified with the list of the added FDs.
+	 * 
+	 * @param fds
+	 *            the dependencies that shall be added
+	 */
+	public void addAdditionalFdeps(Collection<FDep> fds) {
+		if (fds.isEmpty()) {
+			return;
+		}
+		additionalFdeps.addAll(fds);
+		previewFdepsChanged();
+
+		firePropertyChange(
+				DefaultController.ELEMENT_RELATION_ADDITIONAL_FDEPS_PROPERTY,
+				null, new ArrayList<FDep>(fds));
+		firePropertyChange(
+				DefaultController.ELEMENT_RELATION_NF_PREVIEW_PROPERTY, null,
+				getNormalform(true));
+	}
+
+	/**
+	 * Removes the given FDs that are implied by the FDs of the preview and
+	 * the other given FDs. The FDs are checked in the given order, each
+	 * against the FDs that have not been removed before it, so that of two
+	 * equivalent FDs the first one is kept. All FDs are loaded into one
+	 * closure engine, instead of adding them to the relation one by one.
+	 * 
+	 * @param fds
+	 *            new FDs over the columns of the relation
+	 * @param partial
+	 *            true to also remove the implied attributes from the right
+	 *            sides of the remaining FDs, which are modified, false to
+	 *            keep them whole
+	 * @return the FDs that are not implied, in the given order
+	 */
+	public List<FDep> removeImplied(Collection<FDep> fds, boolean partial) {
+		AttributeIndex index = getAttributeIndex();
+		Set<FDep> preview = getFdeps(true);
+		List<FDep> all = new ArrayList<FDep>(preview);
+		all.addAll(fds);
+
+		// encode all sides before the engine is sized
+		for (FDep fd : all) {
+			fd.getLeftBits(index);
+		}
+		int words = index.words();
+		long[][] left = new long[all.size()][];
+		long[][] right = new long[all.size()][];
+		for (int i = 0; i < all.size(); i++) {
+			left[i] = Arrays.copyOf(all.get(i).getLeftBits(index), words);
+			right[i] = Arrays.copyOf(all.get(i).getRightBits(index), words);
+		}
+		// the engine reads the right sides that are reduced below
+		ClosureEngine engine = new ClosureEngine(index, left, right,
+				closureStrategy);
+
+		List<FDep> remaining = new ArrayList<FDep>();
+		for (int i = preview.size(); i < all.size(); i++) {
+			long[] closure = engine.closureWithout(left[i], i);
+			if (AttributeIndex.isSubset(right[i], closure)) {
+				engine.remove(i);
+				continue;
+			}
+			if (partial) {
+				long[] implied = AttributeIndex.and(right[i], closure);
+				for (int a = AttributeIndex.nextSetBit(implied, 0); a >= 0; a = AttributeIndex
+						.nextSetBit(implied, a + 1)) {
+					AttributeIndex.clear(right[i], a);
+					all.get(i).removeRightSide(index.nameOf(a));
+				}
+			}
+			remaining.add(all.get(i));
+		}
+		return remaining;
+	}
+
 	/**
 	 * adds a functional dependency to the set of removedFDeps
 	 * 
@@ -283,6 +514,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 */
 	public void addRemovedFdep(FDep fd) {
 		removedFdeps.add(fd);
+		removedById.put(fd);
+		previewFdepsChanged();
 
 		firePropertyChange(
 				DefaultController.ELEMENT_RELATION_NF_PREVIEW_PROPERTY, null,
@@ -290,42 +523,64 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	}
 
 	/**
-	 * calculates candidate keys
+	 * calculates candidate keys. The keys are returned in the order of the
+	 * binary counter over the columns, i.e. keys without the first column come
+	 * before keys with it.
 	 * 
 	 * @return all candidate keys
 	 */
 	public Set<Set<String>> determineKeys(boolean preview) {
+		int version = fdVersions[preview ? 1 : 0];
+		List<long[]> found = closureCache.getKeys(preview, version);
+		if (found == null) {
+			found = sortedKeys(preview);
+			closureCache.putKeys(preview, version, found);
+		}
+		AttributeIndex index = getAttributeIndex();
 		Set<Set<String>> k = new LinkedHashSet<Set<String>>();
-		boolean isKey = false;
-		Set<Set<String>> p = powerset(columns.toArray(new String[0]));
-
-		for (Set<String> s : p) {
-
-			// Wird Relation funktional bestimmt?
-			isKey = true;
-			Set<String> Huelle = this.xPlus(preview, s);
-			if (!(Huelle.containsAll((columns)))) {
-				isKey = false;
-			}
+		for (long[] key : found) {
+			k.add(index.decode(key));
+		}
+		return k;
+	}
 
-			// Test auf Minimalitaet
-			if (isKey) {
-				LinkedHashSet<String> t = new LinkedHashSet<String>();
-				for (String A : s) {
-					t.clear();
-					t.addAll(s);
-					t.remove(A);
-					Set<String> newHuelle = this.xPlus(preview, t);
-					if ((newHuelle.containsAll(columns))) {
-						isKey = false;
+	/**
+	 * Enumerates all candidate keys and sorts them in binary counter order.
+	 * 
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 * @return the keys as bitsets
+	 */
+	private List<long[]> sortedKeys(boolean preview) {
+		List<long[]> found = new ArrayList<long[]>();
+		for (KeyEnumerator e = enumerateKeys(preview); e.hasNext();) {
+			found.add(e.next());
+		}
+		Collections.sort(found, new Comparator<long[]>() {
+			public int compare(long[] a, long[] b) {
+				int n = Math.max(a.length, b.length) * Long.SIZE;
+				for (int i = 0; i < n; i++) {
+					boolean x = AttributeIndex.get(a, i);
+					if (x != AttributeIndex.get(b, i)) {
+						return x ? 1 : -1;
 					}
 				}
+				return 0;
 			}
-			if (isKey) {
-				k.add(s);
-			}
-		}
-		return k;
+		});
+		return found;
+	}
+
+	/**
+	 * Creates an enumerator that computes the candidate keys one by one.
+	 * 
+	 * @param preview
+	 *            true if temporary FDs shall be taken into account
+	 * @return the candidate keys as bitsets of the attribute index
+	 */
+	public KeyEnumerator enumerateKeys(boolean preview) {
+		ClosureEngine engine = getClosureEngine(preview);
+		return new KeyEnumerator(getAttributeIndex(), getColumnBits(), engine);
 	}
 
 	/**
@@ -340,7 +595,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return the attribute closure
 	 */
 	public Set<String> xPlus(boolean preview, Set<String> attributes) {
-		return xPlus(attributes, getFdeps(preview));
+		AttributeIndex index = getAttributeIndex();
+		return index.decode(closure(preview, index.encode(attributes)));
 	}
 
 	/**
@@ -354,21 +610,23 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return the attribute closure
 	 */
 	public Set<String> xPlus(Set<String> attributes, Set<FDep> fds) {
-		Set<String> Erg = new LinkedHashSet<String>();
-		Erg.addAll(attributes);
-		Set<String> Erg_old = new LinkedHashSet<String>();
-		boolean Erg_changed = true;
-		while (Erg_changed) {
-			Erg_old.addAll(Erg);
-			for (FDep f : fds) {
-				if (Erg.containsAll(f.getLeftSide())) {
-					Erg.addAll(f.getRightSide());
-				}
+		AttributeIndex index = getAttributeIndex();
+		return index.decode(xPlus(index.encode(attributes), fds));
+	}
 
-			}
-			Erg_changed = !Erg.equals(Erg_old);
-		}
-		return Erg;
+	/**
+	 * calculates the attribute closure on bitsets that are encoded with the
+	 * attribute index of this relation.
+	 * 
+	 * @param attributes
+	 *            the attributes whose attribute closure shall be determined.
+	 * @param fds
+	 *            the FDs that shall be used to calculate the attribute closure
+	 * @return the attribute closure as bitset
+	 */
+	long[] xPlus(long[] attributes, Set<FDep> fds) {
+		return new ClosureEngine(getAttributeIndex(), fds, closureStrategy)
+				.closure(attributes);
 	}
 
 	/**
@@ -379,12 +637,9 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return true if candidate is a key
 	 */
 	public boolean isKey(Set<String> candidate) {
-		Set<String> attClosure = xPlus(false, candidate);
-		if (attClosure.containsAll((columns))) {
-			return true;
-		} else {
-			return false;
-		}
+		long[] attClosure = closure(false, getAttributeIndex().encode(
+				candidate));
+		return AttributeIndex.isSubset(getColumnBits(), attClosure);
 	}
 
 	/**
@@ -416,7 +671,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		// find partial dependencies for every relation in newRelations
 		System.out.println("Initialize relation " + r + " with columns "
 				+ r.getColumns() + nl);
-		for (Set<String> x : r.determineKeys(false)) {
+		for (Set<String> x : r.getAnalysis(false).getKeys()) {
 			for (String weg : x) {
 				y.clear();
 				y.addAll(x);
@@ -424,7 +679,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 				xPlusVonY.clear();
 				xPlusVonY.addAll(r.xPlus(false, y));
 				Set<String> attsForY = new HashSet<String>();
-				for (String z : r.determineNSAs(false)) {
+				for (String z : r.getAnalysis(false)
+						.getNonPrimeAttributes()) {
 					if (xPlusVonY.contains(z)) {
 						attsForY.add(z);
 						System.out.println("Non-key-attribute " + z
@@ -467,19 +723,10 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		// summarize relations and distribute FDeps
 		mergeRelations(newRelations);
 
-		fdeps = decomposeRHS(fdeps);
-
-		SortedSet<FDep> fdepscopy = new TreeSet<FDep>();
-		for (FDep f : fdeps) {
-			fdepscopy.add(new FDep(f));
-		}
-
-		fdeps = fdepscopy;
-
-		distributeFDs(newRelations, fdepscopy);
+		distributeFDs(newRelations, new FDProjector(new AttributeIndex(
+				originColumns), originFDs));
 
 		for (Relation rel : newRelations) {
-			composeLHS(rel.getFdeps());
 			for (FDep f : rel.getFdeps()) {
 				if (rel.isKey(f.getLeftSide())) {
 					f.setIsKey(true);
@@ -491,6 +738,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		// remove changes of the original relation object
 		fdeps = originFDs;
 		columns = originColumns;
+		attributeIndex = null;
+		fdepsChanged();
 
 		return newRelations;
 	}
@@ -503,23 +752,18 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 */
 	private static void composeLHS(Set<FDep> fds) {
 
-		SortedSet<FDep> FDsToRemove = new TreeSet<FDep>();
-
-		Iterator<FDep> it1 = fds.iterator();
-		while (it1.hasNext()) {
-			FDep fd1 = it1.next();
-			Iterator<FDep> it2 = fds.iterator();
-			while (it2.hasNext()) {
-				FDep fd2 = it2.next();
-				if (fd1.getLeftSide().equals(fd2.getLeftSide())
-						&& !fd1.equals(fd2)) {
-					fd1.addRightSide(fd2.getRightSide());
-					FDsToRemove.add(fd2);
-				}
+		Map<Set<String>, FDep> byLeftSide = new LinkedHashMap<Set<String>, FDep>();
+		for (FDep fd : fds) {
+			FDep composed = byLeftSide.get(fd.getLeftSide());
+			if (composed == null) {
+				byLeftSide.put(fd.getLeftSide(), new FDep(fd));
+			} else {
+				composed.addRightSide(fd.getRightSide());
 			}
 		}
 
-		fds.removeAll(FDsToRemove);
+		fds.clear();
+		fds.addAll(byLeftSide.values());
 	}
 
 	/**
@@ -578,41 +822,20 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	}
 
 	/**
-	 * distributes a set of FDeps to a set of relations
+	 * distributes a set of FDeps to a set of relations. Each relation gets a
+	 * cover of the FDs that are implied for its columns, not only the FDs
+	 * whose attributes it contains.
 	 * 
 	 * @param rels
 	 *            the relations which shall get the distributed FDeps
-	 * @param divideFDs
-	 *            the FDeps that shall be distributed
+	 * @param projector
+	 *            the projector for the FDeps that shall be distributed
 	 */
-	private static void distributeFDs(Set<SynRelation> rels, Set<FDep> divideFDs) {
-
-		SortedSet<FDep> fds = new TreeSet<FDep>();
-		// copy all fds
-		for (FDep fa : divideFDs) {
-			fds.add(new FDep(fa));
-		}
-		// clear old FDs
+	private static void distributeFDs(Set<SynRelation> rels,
+			FDProjector projector) {
 		for (SynRelation r : rels) {
-			r.getFdeps().clear();
+			r.setFdeps(projector.project(r.getColumns()));
 		}
-		// Distribute new FDs
-		Set<String> allAtts = new HashSet<String>();
-		for (FDep f : fds) {
-			for (String lhs : f.getLeftSide()) {
-				allAtts.add(lhs);
-			}
-			for (String rhs : f.getRightSide()) {
-				allAtts.add(rhs);
-			}
-			for (SynRelation r : rels) {
-				if (r.getColumns().containsAll(allAtts)) {
-					r.addFDep(f);
-				}
-			}
-			allAtts.clear();
-		}
-		divideFDs = fds;
 	}
 
 	/**
@@ -622,67 +845,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return the Canonical Cover
 	 */
 	private SortedSet<FDep> getCanonicalCover() {
-
-		// Step 1 reduction of the left side
-		SortedSet<FDep> fds = new TreeSet<FDep>();
-		for (FDep fd : getFdeps()) {
-			fds.add(new FDep(fd));
-		}
-		FDep newFD = null;
-		Set<String> closure = null;
-
-		for (FDep fd : fds) {
-			newFD = new FDep(fd);
-			for (String a : fd.getLeftSide()) {
-				newFD.removeLeftSide(a);
-				closure = xPlus(false, newFD.getLeftSide());
-				if (closure.containsAll(newFD.getRightSide())) {
-					fd.removeLeftSide(a);
-				}
-				newFD.addLeftSide(a);
-			}
-		}
-
-		// Step 2 reduction of the right side
-		for (FDep fd : fds) {
-			for (String b : fd.getRightSide()) {
-
-				fd.removeRightSide(b);
-				closure = xPlus(fd.getLeftSide(), fds);
-				if (!closure.contains(b)) {
-					fd.addRightSide(b);
-				} else {
-				}
-			}
-		}
-
-		// Step 3 remove dependencies with empty right side
-		Set<FDep> FDtoDel = new HashSet<FDep>();
-		for (FDep fd : fds) {
-			if (fd.getRightSide().isEmpty()) {
-				FDtoDel.add(fd);
-			}
-		}
-		fds.removeAll(FDtoDel);
-
-		// Step 4 summarize dependencies with same left side
-		Iterator<FDep> it1 = fds.iterator();
-		FDtoDel.clear();
-		while (it1.hasNext()) {
-			FDep fd1 = it1.next();
-			Iterator<FDep> it2 = fds.iterator();
-			while (it2.hasNext()) {
-				FDep fd2 = it2.next();
-				if (fd2.getLeftSide().equals(fd1.getLeftSide())
-						&& !fd1.equals(fd2) && !FDtoDel.contains(fd1)) {
-					fd1.addRightSide(fd2.getRightSide());
-					FDtoDel.add(fd2);
-				}
-			}
-		}		
-		fds.removeAll(FDtoDel);
-
-		return fds;
+		return new CoverMinimizer(getAttributeIndex(), getFdeps()).minimize();
 	}
 
 	/**
@@ -691,19 +854,8 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return a set of all NSAs
 	 */
 	public Set<String> determineNSAs(boolean preview) {
-		Set<String> nsas = new LinkedHashSet<String>();
-		for (String att : columns) {
-			nsas.add(new String(att));
-		}
-		for (Set<String> key : determineKeys(preview)) {
-			nsas.removeAll(key);
-		}
-
-		// force garbage collection
-		Runtime r = Runtime.getRuntime();
-		r.gc();
-
-		return nsas;
+		return new LinkedHashSet<String>(getAnalysis(preview)
+				.getNonPrimeAttributes());
 	}
 
 	/**
@@ -712,30 +864,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return true if relation is in 2NF
 	 */
 	private boolean is2NF(boolean preview) {
-		boolean in2NF = true;
-		Set<String> y = new LinkedHashSet<String>();
-		Set<String> xPlusVonY = new LinkedHashSet<String>();
-		Set<String> allNSAs = determineNSAs(preview);
-
-		for (Set<String> x : determineKeys(preview)) {
-			for (String weg : x) {
-				y.clear();
-				y.addAll(x);
-				y.remove(weg);
-				xPlusVonY.addAll(this.xPlus(preview, y));
-				for (String z : allNSAs) {
-					if (xPlusVonY.contains(z)) {
-						in2NF = false;
-					}
-				}
-			}
-		}
-
-		// force garbage collection
-		Runtime r = Runtime.getRuntime();
-		r.gc();
-
-		return in2NF;
+		return getAnalysis(preview).is2NF();
 	}
 
 	/**
@@ -744,36 +873,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return true if relation is in 3NF
 	 */
 	private boolean is3NF(boolean preview) {
-		boolean in3NF = true;
-		SortedSet<FDep> decomposedFDs = decomposeRHS(getFdeps(preview));
-		for (FDep fd : decomposedFDs) {
-
-			boolean conditionAccomplished = false;
-
-			// check if fd is trivial
-			if (fd.getLeftSide().containsAll(fd.getRightSide())) {
-				conditionAccomplished = true;
-			}
-
-			// check if B is part of a key candidate
-			Set<String> allNSAs = determineNSAs(preview);
-			if (!allNSAs.containsAll(fd.getRightSide())) {
-				conditionAccomplished = true;
-			}
-
-			// check if leftSide determines all attributes
-			if (xPlus(preview, fd.getLeftSide()).containsAll(columns)) {
-				conditionAccomplished = true;
-			}
-
-			// relation is not in 3NF if one fd does not accomplish any
-			// condition
-			if (conditionAccomplished == false) {
-				in3NF = false;
-			}
-		}
-
-		return in3NF;
+		return getAnalysis(preview).is3NF();
 	}
 
 	/**
@@ -782,24 +882,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	 * @return true if relation is in BCNF
 	 */
 	private boolean isBCNF(boolean preview) {
-		boolean inBCNF = true;
-		Set<Set<String>> dets = new LinkedHashSet<Set<String>>();
-		Set<Set<String>> ckeys = determineKeys(preview);
-		for (String att : columns) {
-			dets.clear();
-			dets.addAll(this.getDeterminante(preview, att));
-			for (Set<String> det : dets) {
-				if (!ckeys.contains(det)) {
-					inBCNF = false;
-				}
-			}
-		}
-
-		// force garbage collection
-		Runtime r = Runtime.getRuntime();
-		r.gc();
-
-		return inBCNF;
+		return getAnalysis(preview).isBCNF();
 	}
 
 	/**
@@ -815,7 +898,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		Set<FDep> fc = getCanonicalCover();
 		System.out.println(fc);
 		Iterator<FDep> it = fc.iterator();
-		Set<Set<String>> OldCKeys = this.determineKeys(false);
+		Set<Set<String>> OldCKeys = getAnalysis(false).getKeys();
 
 		Set<Set<String>> AllNewRelCKeys = new HashSet<Set<String>>();
 		// Step 2: create Relation for every FD and assign corresponding FD
@@ -858,6 +941,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 			}
 			
 			composeLHS(rel.getFdeps());
+			rel.fdepsChanged();
 			// set isKey attribute on FDep
 			for (FDep eqFDep : rel.getFdeps()) {
 				if (eqFDep.compareTo(rel.getOriginFD()) == 0) {
@@ -867,7 +951,7 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 			newRelations.add(rel);
 			
 			// Step 3:
-			Set<Set<String>> NewRelCKeys = rel.determineKeys(false);
+			Set<Set<String>> NewRelCKeys = rel.getAnalysis(false).getKeys();
 			AllNewRelCKeys.addAll(NewRelCKeys);
 			i++;
 
@@ -938,169 +1022,20 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 	}
 
 	/**
+	 * Creates an iterator over the distinct canonical covers of the
+	 * implemented FDs. The covers are searched lazily, so the first ones are
+	 * available long before all permutations of the FDs could be tried.
 	 * 
-	 * @param att
-	 *            the attribute whose determinant shall be calculated
-	 * @return a set of all determinants of att
-	 */
-	private Set<Set<String>> getDeterminante(boolean preview, String att) {
-		Set<Set<String>> determinanten = new LinkedHashSet<Set<String>>();
-		for (FDep f : getFdeps(preview)) {
-			if (f.getRightSide().contains(att)) {
-				determinanten.add(f.getLeftSide());
-			}
-		}
-		return determinanten;
-	}
-
-	/**
-	 * Returns the power set from the given set by using a binary counter
-	 * Example: S = {a,b,c} P(S) = {[], [c], [b], [b, c], [a], [a, c], [a, b],
-	 * [a, b, c]} The idea of the method has been taken from
-	 * http://jvalentino.blogspot.com/2007
-	 * /02/shortcut-to-calculating-power-set-using.html
-	 * 
-	 * @param set
-	 *            an array whose powerset will be calculated
-	 * @return a LinkedHashSet representing the powerset
-	 */
-	public static LinkedHashSet<Set<String>> powerset(String[] set) {
-
-		LinkedHashSet<Set<String>> power = new LinkedHashSet<Set<String>>();
-		int elements = set.length;
-
-		// power set has 2^n elements
-		int elementsInPower = (int) Math.pow(2, elements);
-
-		// for each element in the powerset, create a number n and convert it to
-		// binary representation and insert '0's in the beginning until the
-		// binary's length = number of elements in the given set
-		for (int n = 0; n < elementsInPower; n++) {
-
-			// convert to binary representation and fill with '0's
-			StringBuffer binary = new StringBuffer(Integer.toBinaryString(n));
-			for (int i = binary.length(); i < elements; i++) {
-				binary.insert(0, "0");
-			}
-
-			LinkedHashSet<String> subSet = new LinkedHashSet<String>();
-
-			// create a new subset with this rule:
-			// a '1' in the binary representation on position i means that
-			// element i of the given set will be added
-			for (int i = 0; i < binary.length(); i++) {
-
-				if (binary.charAt(i) == '1') {
-					subSet.add(set[i]);
-				}
-
-			}
-
-			// the new subset is added to the powerset
-			power.add(subSet);
-
-		}
-
-		return power;
-	}
-
-	/**
-	 * Creates a LinkedHashSet containing all permutations of fdeps
-	 * 
-	 * @return a LinkedHashSet containing all permutations of fdeps
+	 * @param limit
+	 *            the maximum number of covers, or 0 for no limit
+	 * @param timeBudget
+	 *            the search time in milliseconds, or 0 for no limit
+	 * @return the canonical covers
 	 */
-	private LinkedHashSet<LinkedList<FDep>> getAllFDepPermutations() {
-		int[] indices;
-		FDep[] elements = (FDep[]) fdeps.toArray(new FDep[0]);
-		PermutationGenerator pg = new PermutationGenerator(elements.length);
-		LinkedList<FDep> permutation;
-		LinkedHashSet<LinkedList<FDep>> allPermutations = new LinkedHashSet<LinkedList<FDep>>();
-
-		// create a permutation for every element in pg
-		while (pg.hasMore()) {
-			permutation = new LinkedList<FDep>();
-			indices = pg.getNext();
-			for (int i = 0; i < indices.length; i++) {
-				permutation.add(new FDep(elements[indices[i]]));
-			}
-			allPermutations.add(permutation);
-		}
-
-		return allPermutations;
-	}
-
-	/**
-	 * Calculates all CanonicalCovers by using every permutation of fdeps
-	 * 
-	 * @return a set that contains all CanonicalCovers
-	 */
-	private LinkedHashSet<LinkedHashSet<FDep>> getAllCanonicalCovers() {
-
-		LinkedHashSet<LinkedHashSet<FDep>> allCanonicalCovers = new LinkedHashSet<LinkedHashSet<FDep>>();
-
-		LinkedHashSet<LinkedList<FDep>> allPermutations = getAllFDepPermutations();
-
-		for (LinkedList<FDep> permutation : allPermutations) {
-
-			// Step 1 reduction of the left side
-			LinkedHashSet<FDep> fds = new LinkedHashSet<FDep>(permutation);
-			FDep newFD = null;
-			Set<String> closure = null;
-
-			for (FDep fd : fds) {
-				newFD = new FDep(fd);
-				for (String a : fd.getLeftSide()) {
-					newFD.removeLeftSide(a);
-					closure = xPlus(false, newFD.getLeftSide());
-					if (closure.containsAll(newFD.getRightSide())) {
-						fd.removeLeftSide(a);
-					}
-					newFD.addLeftSide(a);
-				}
-			}
-
-			// Step 2 reduction of the right side
-			for (FDep fd : fds) {
-				for (String b : fd.getRightSide()) {
-
-					fd.removeRightSide(b);
-					closure = xPlus(fd.getLeftSide(), fds);
-					if (!closure.contains(b)) {
-						fd.addRightSide(b);
-					}
-				}
-			}
-
-			// Step 3 remove dependencies with empty right side
-			Set<FDep> FDtoDel = new HashSet<FDep>();
-			for (FDep fd : fds) {
-				if (fd.getRightSide().isEmpty()) {
-					FDtoDel.add(fd);
-				}
-			}
-			fds.removeAll(FDtoDel);
-
-			// Step 4 remove dependencies that are contained within another
-			Iterator<FDep> it1 = fds.iterator();
-			FDtoDel.clear();
-
-			while (it1.hasNext()) {
-				FDep fd1 = it1.next();
-				Iterator<FDep> it2 = fds.iterator();
-				while (it2.hasNext()) {
-					FDep fd2 = it2.next();
-					if (fd1.getLeftSide().equals(fd2.getLeftSide())
-							&& !fd1.equals(fd2) && !FDtoDel.contains(fd1)) {
-						fd1.addRightSide(fd2.getRightSide());
-						FDtoDel.add(fd2);
-					}
-				}
-			}
-			fds.removeAll(FDtoDel);
-			allCanonicalCovers.add(fds);
-
-		}
-		return allCanonicalCovers;
+	public CanonicalCoverIterator enumerateCanonicalCovers(int limit,
+			long timeBudget) {
+		return new CanonicalCoverIterator(getAttributeIndex(), fdeps, limit,
+				timeBudget);
 	}
 
 	/**
@@ -1133,6 +1068,9 @@ public class Relation extends AbstractModel implements Comparable<Relation>,
 		case NF3:
 			syn = synthesize();
 			break;
+		case BCNF:
+			syn = new BcnfDecomposer(this).decompose();
+			break;
 		}
 		return syn;
 	}
@@ -4,19 +4,35 @@ import control.DefaultController;
 import control.DefaultController.NF;
 import dbtools.CatalogManager;
 import dbtools.ConnectionManager;
+import dbtools.Constraint;
+import dbtools.ConstraintCache;
 import dbtools.Credentials;
 import dbtools.IStatement;
 import dbtools.StatementGenerator;
+import dbtools.TriggerMode;
+import discovery.EncodedTable;
+import discovery.FdDiscovery;
+import discovery.FdValidator;
+import discovery.GroupingValidator;
+import discovery.HyFD;
+import discovery.InclusionDependency;
+import discovery.IndDiscovery;
+import discovery.Tane;
+import discovery.UccDiscovery;
+import discovery.ValidationStrategy;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
@@ -42,6 +58,21 @@ public class SchemaManager {
     private Relation relation;
     /** The global <code>logger</code> object. */
     private static Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    /**
+     * The number of columns from which on FDs are discovered with
+     * {@link HyFD} instead of {@link Tane}, whose lattice grows too fast.
+     */
+    public static final int WIDE_RELATION_COLUMNS = 20;
+    /**
+     * The estimated number of rows from which FDs are validated on the
+     * server with the {@link ValidationStrategy#AUTO} strategy.
+     */
+    public static final long SERVER_VALIDATION_ROWS = 100000;
+    /**
+     * The number of rows on which FDs are pre-checked before they are
+     * validated on the server.
+     */
+    public static final int VALIDATION_SAMPLE_SIZE = 10000;
     /**
      * The relations that are synthesized from field <code>relation</code>,
      * in order to achieve 2 or 3 NF.
@@ -51,6 +82,15 @@ public class SchemaManager {
     private DefaultController controller;
     /** The manager dealing with all catalog related queries. */
     private CatalogManager catMan;
+    /**
+     * The maximum <code>g3</code> error up to which FDs that infringe the
+     * instance are accepted as approximate FDs, 0 for exact FDs only.
+     */
+    private double maxError;
+    /** The way FDs are validated against the instance. */
+    private ValidationStrategy validationStrategy = ValidationStrategy.AUTO;
+    /** The way new FDs are implemented as triggers. */
+    private TriggerMode triggerMode = TriggerMode.ROW;
 
     /**
      * Class constructor specifying the MVC controller.
@@ -129,6 +169,12 @@ public class SchemaManager {
              */
             copyContents(con);
 
+            /*
+             * The constraints are read again within the transaction, as
+             * the new relations have been created.
+             */
+            catMan.invalidateConstraints();
+
             /*
              * Changes potential foreign keys, that reference the normalized
              * relation, so that they are referencing one of the new relations
@@ -189,12 +235,13 @@ public class SchemaManager {
             dropTable(con);
 
             /*
-             * Adds FDs for each new relation to the fd_catalog.
+             * Adds FDs for each new relation to the fd_catalog, whose
+             * unique constraints have changed since.
              */
+            catMan.invalidateConstraints();
             for (SynRelation table : normalizedRelations) {
-                for (FDep fd : table.getFdeps()) {
-                    catMan.addFD(table.getRelationName(), fd, con);
-                }
+                catMan.addFDs(table.getRelationName(), table.getFdeps(), con);
+                catMan.updateConsolidatedTrigger(table.getRelationName(), con);
             }
         }
 
@@ -244,8 +291,9 @@ public class SchemaManager {
                 "('pg_catalog', 'information_schema') " +
                 "AND event_object_table = ?";
 
-        String catalogQuery = "SELECT name " +
-                "FROM fd_catalog_trigger";
+        String catalogQuery = "SELECT t.name, t.mode, t.id, fd.relation " +
+                "FROM fd_catalog_trigger t INNER JOIN fd_catalog fd " +
+                "ON t.id = fd.id";
 
         PreparedStatement pstmt;
         ResultSet rs = null;
@@ -284,8 +332,14 @@ public class SchemaManager {
 
             rs = pstmt.executeQuery();
             allTriggers = new HashSet<String>();
+            IStatement gen = new StatementGenerator();
             while (rs.next()) {
                 allTriggers.add(rs.getString(1));
+                // an FD checked with transition tables has a second trigger
+                if (TriggerMode.TRANSITION.name().equals(rs.getString(2))) {
+                    allTriggers.add(gen.generateUpdateTriggerName(
+                            rs.getInt(3), rs.getString(4)));
+                }
             }
 
             rs.close();
@@ -527,99 +581,21 @@ public class SchemaManager {
      */
     private void alterIncomingFK(Connection con) {
 
-        String getFkName = "SELECT DISTINCT tc.constraint_name " +
-                "FROM information_schema.table_constraints tc " +
-                "LEFT JOIN information_schema.referential_constraints rc " +
-                "ON tc.constraint_catalog = rc.constraint_catalog " +
-                "AND tc.constraint_schema = rc.constraint_schema " +
-                "AND tc.constraint_name = rc.constraint_name " +
-                "LEFT JOIN information_schema.constraint_column_usage ccu " +
-                "ON rc.unique_constraint_catalog = ccu.constraint_catalog " +
-                "AND rc.unique_constraint_schema = ccu.constraint_schema " +
-                "AND rc.unique_constraint_name = ccu.constraint_name " +
-                "WHERE ccu.table_name = ? " +
-                "AND constraint_type = 'FOREIGN KEY'";
-
-        ResultSet rs = null;
         try {
-            /*
-             * Gets all foreign keys referencing the normalized relation. Stores
-             * their names in a set of Strings.
-             */
-            PreparedStatement pstmt = con.prepareStatement(getFkName);
-            pstmt.setString(1, relation.getRelationName());
-
-            rs = pstmt.executeQuery();
-
-            Set<String> constraints = new HashSet<String>();
-
-            while (rs.next()) {
-                constraints.add(rs.getString(1));
-            }
-
-            rs.close();
-            pstmt.close();
-
             /*
              * For each foreign key constraint referencing the normalized
              * relation, generate a new one, that references a new relations
              * instead.
              */
             IStatement gen = new StatementGenerator();
-            for (String cons : constraints) {
-                String getFK = "SELECT DISTINCT " +
-                        "tc.table_name, " +
-                        "kcu.column_name, " +
-                        "kcu2.column_name AS references_field, " +
-                        "rc.update_rule AS on_update, " +
-                        "rc.delete_rule AS on_delete " +
-                        "FROM information_schema.table_constraints tc " +
-                        "LEFT JOIN information_schema.key_column_usage kcu " +
-                        "ON tc.constraint_catalog = kcu.constraint_catalog " +
-                        "AND tc.constraint_schema = kcu.constraint_schema " +
-                        "AND tc.constraint_name = kcu.constraint_name " +
-                        "LEFT JOIN information_schema.referential_constraints rc " +
-                        "ON tc.constraint_catalog = rc.constraint_catalog " +
-                        "AND tc.constraint_schema = rc.constraint_schema " +
-                        "AND tc.constraint_name = rc.constraint_name " +
-                        "LEFT JOIN information_schema.constraint_column_usage ccu " +
-                        "ON rc.unique_constraint_catalog = ccu.constraint_catalog " +
-                        "AND rc.unique_constraint_schema = ccu.constraint_schema " +
-                        "AND rc.unique_constraint_name = ccu.constraint_name " +
-                        "INNER JOIN information_schema.key_column_usage kcu2 " +
-                        "ON kcu.position_in_unique_constraint = kcu2.ordinal_position " +
-                        "AND kcu2.constraint_name = rc.unique_constraint_name " +
-                        "WHERE constraint_type = 'FOREIGN KEY' " +
-                        "AND tc.constraint_name = ? " +
-                        "AND ccu.table_name = ?";
-
-                pstmt = con.prepareStatement(getFK);
-
-                pstmt.setString(1, cons);
-                pstmt.setString(2, relation.getRelationName());
-
-                rs = pstmt.executeQuery();
-
-                String referencingTable = null;
-                String columnName = null;
-                String referencedColumn = null;
-                String onUpdate = null;
-                String onDelete = null;
-
-                Map<String, String> refMap = new HashMap<String, String>();
-
-                while (rs.next()) {
-                    referencingTable = rs.getString(1);
-                    columnName = rs.getString(2);
-                    referencedColumn = rs.getString(3);
-                    onUpdate = rs.getString(4);
-                    onDelete = rs.getString(5);
-
-                    refMap.put(columnName, referencedColumn);
-                }
+            for (Constraint fk : catMan.getConstraints(con).
+                    getReferencingKeys(relation.getRelationName())) {
+                String cons = fk.getName();
+                String referencingTable = fk.getTable();
+                String onUpdate = fk.getOnUpdate();
+                String onDelete = fk.getOnDelete();
 
-                rs.close();
-                pstmt.close();
+                Map<String, String> refMap = fk.getReferences();
 
                 /**
                  * Determine which of the new relations shall be referenced
@@ -653,7 +629,6 @@ public class SchemaManager {
                 System.out.println("added FK [" + addConstraint + "]");
 
                 st.close();
-                pstmt.close();
             }
 
         } catch (SQLException ex) {
@@ -671,88 +646,19 @@ public class SchemaManager {
      */
     private void addOutgoingFK(Connection con) {
 
-        String getFkName = "SELECT DISTINCT tc.constraint_name " +
-                "FROM information_schema.table_constraints tc " +
-                "WHERE constraint_type = 'FOREIGN KEY' " +
-                "AND tc.table_name = ?";
-
-        PreparedStatement pstmt;
-        ResultSet rs = null;
         try {
-            /*
-             * Retrieves all foreign keys of the normalized relation and add
-             * their names to a set of Strings.
-             */
-            pstmt = con.prepareStatement(getFkName);
-
-            pstmt.setString(1, relation.getRelationName());
-
-            rs = pstmt.executeQuery();
-
-            Set<String> constraints = new HashSet<String>();
-            while (rs.next()) {
-                constraints.add(rs.getString(1));
-            }
-
-            rs.close();
-            pstmt.close();
-
             /*
              * For each foreign key constraint on the normalized relation,
              * get detailed information about it.
              */
             IStatement gen = new StatementGenerator();
-            for (String cons : constraints) {
-                String getFK = "SELECT DISTINCT " +
-                        "kcu2.table_name AS references_table, " +
-                        "kcu.column_name, " +
-                        "kcu2.column_name AS references_field, " +
-                        "rc.update_rule AS on_update, " +
-                        "rc.delete_rule AS on_delete " +
-                        "FROM information_schema.table_constraints tc " +
-                        "LEFT JOIN information_schema.key_column_usage kcu " +
-                        "ON tc.constraint_catalog = kcu.constraint_catalog " +
-                        "AND tc.constraint_schema = kcu.constraint_schema " +
-                        "AND tc.constraint_name = kcu.constraint_name " +
-                        "LEFT JOIN information_schema.referential_constraints rc " +
-                        "ON tc.constraint_catalog = rc.constraint_catalog " +
-                        "AND tc.constraint_schema = rc.constraint_schema " +
-                        "AND tc.constraint_name = rc.constraint_name " +
-                        "LEFT JOIN information_schema.constraint_column_usage ccu " +
-                        "ON rc.unique_constraint_catalog = ccu.constraint_catalog " +
-                        "AND rc.unique_constraint_schema = ccu.constraint_schema " +
-                        "AND rc.unique_constraint_name = ccu.constraint_name  " +
-                        "INNER JOIN information_schema.key_column_usage kcu2 " +
-                        "ON kcu.position_in_unique_constraint = kcu2.ordinal_position " +
-                        "AND kcu2.constraint_name = rc.unique_constraint_name " +
-                        "WHERE constraint_type = 'FOREIGN KEY' " +
-                        "AND tc.table_name = ? " +
-                        "AND tc.constraint_name = ?";
-
-                pstmt = con.prepareStatement(getFK);
-
-                pstmt.setString(1, relation.getRelationName());
-                pstmt.setString(2, cons);
-
-                rs = pstmt.executeQuery();
+            for (Constraint fk : catMan.getConstraints(con).getConstraints(
+                    relation.getRelationName(), Constraint.Type.FOREIGN_KEY)) {
+                String referencedTable = fk.getReferencedTable();
+                String onUpdate = fk.getOnUpdate();
+                String onDelete = fk.getOnDelete();
 
-                String referencedTable = null;
-                String columnName = null;
-                String referencedColumn = null;
-                String onUpdate = null;
-                String onDelete = null;
-
-                Map<String, String> refMap = new HashMap<String, String>();
-
-                while (rs.next()) {
-                    referencedTable = rs.getString(1);
-                    columnName = rs.getString(2);
-                    referencedColumn = rs.getString(3);
-                    onUpdate = rs.getString(4);
-                    onDelete = rs.getString(5);
-
-                    refMap.put(columnName, referencedColumn);
-                }
+                Map<String, String> refMap = fk.getReferences();
 
                 /*
                  * If there are new relations sharing attributes with the
@@ -782,9 +688,6 @@ public class SchemaManager {
                         st.close();
                     }
                 }
-
-                rs.close();
-                pstmt.close();
             }
         } catch (SQLException ex) {
             logger.logp(Level.SEVERE, SchemaManager.class.getName(), "addFK",
@@ -799,34 +702,16 @@ public class SchemaManager {
      * @param con a database connection
      */
     private void addChecks(Connection con) {
-        String clauseQuery = "SELECT cc.constraint_name, " +
-                "cc.check_clause " +
-                "FROM information_schema.check_constraints cc " +
-                "INNER JOIN information_schema.table_constraints tc " +
-                "ON cc.constraint_name = tc.constraint_name " +
-                "WHERE tc.constraint_type = 'CHECK' " +
-                "AND cc.constraint_name NOT LIKE '%not_null' " +
-                "AND cc.constraint_schema NOT IN ('information_schema', " +
-                "'pg_catalog') " +
-                "AND tc.table_name = ?";
-
-        PreparedStatement pstmt;
-        ResultSet rs = null;
         try {
-            pstmt = con.prepareStatement(clauseQuery);
-            pstmt.setString(1, relation.getRelationName());
-
-            rs = pstmt.executeQuery();
             Set<String> clauses = new HashSet<String>();
             Set<String> affectedColumns;
             /*
              * Retrieve any checks.
              */
-            while (rs.next()) {
-                clauses.add(rs.getString(2));
+            for (Constraint check : catMan.getConstraints(con).getConstraints(
+                    relation.getRelationName(), Constraint.Type.CHECK)) {
+                clauses.add(check.getClause());
             }
-            rs.close();
-            pstmt.close();
 
             for (String clause : clauses) {
                 affectedColumns = new HashSet<String>();
@@ -982,28 +867,319 @@ public class SchemaManager {
         normalizedRelations = new TreeSet<SynRelation>();
     }
 
+    /**
+     * The outcomes of checking a functional dependency before it is added,
+     * see {@link SchemaManager#checkFdep(FDep)}.
+     */
+    public enum FdepCheck {
+
+        /** The FD is implied by the FDs of the relation. */
+        IMPLIED,
+        /** The instance does not infringe the FD. */
+        VALID,
+        /** The instance infringes the FD within the maximum error. */
+        APPROXIMATE,
+        /** The instance infringes the FD. */
+        INFRINGED
+    }
+
     /**
      * Temporary adds a functional dependency to the loaded relation. Requires
-     * a commit to really take effect in the database.
+     * a commit to really take effect in the database. An FD that infringes
+     * the instance is added as approximate FD, if its error does not exceed
+     * the maximum error.
      *
      * @param fd a functional dependency
      */
     public void addFdep(FDep fd) {
-        if (!isInClosure(fd)) {
-            if (checkInstance(fd)) {
+        addFdep(fd, checkFdep(fd));
+    }
+
+    /**
+     * Checks whether a functional dependency may be added to the loaded
+     * relation, which scans its instance. Neither the relation nor the view
+     * is changed, so this may run in a background thread, followed by
+     * {@link #addFdep(FDep, FdepCheck)} on the event dispatch thread.
+     *
+     * @param fd a functional dependency
+     * @return the outcome of the check
+     */
+    public FdepCheck checkFdep(FDep fd) {
+        if (isInClosure(fd)) {
+            return FdepCheck.IMPLIED;
+        }
+        return checkInstance(fd);
+    }
+
+    /**
+     * Temporary adds a checked functional dependency to the loaded relation,
+     * or tells the user why it is not added. Requires a commit to really take
+     * effect in the database.
+     *
+     * @param fd a functional dependency
+     * @param check the outcome of {@link #checkFdep(FDep)} for the FD
+     */
+    public void addFdep(FDep fd, FdepCheck check) {
+        switch (check) {
+            case VALID:
                 relation.addAdditionalFdep(fd);
-            } else {
+                break;
+            case APPROXIMATE:
+                relation.addAdditionalFdep(fd);
+                JOptionPane.showMessageDialog(null,
+                        "The specified FD is added as approximate FD, as it "
+                        + "infringes " + Math.round(fd.getError() * 1000) / 10.0
+                        + "% of the instance.",
+                        "Approximate FD",
+                        JOptionPane.INFORMATION_MESSAGE);
+                break;
+            case INFRINGED:
                 JOptionPane.showMessageDialog(null,
                         "The specified FD infringes the instance of the relation.",
                         "FD Not Possible",
                         JOptionPane.INFORMATION_MESSAGE);
+                break;
+            default:
+                JOptionPane.showMessageDialog(null,
+                        "The specified FD is already implied.",
+                        "Closure Contains FD",
+                        JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Returns the maximum <code>g3</code> error of approximate FDs.
+     *
+     * @return the maximum fraction of violating rows, 0 for exact FDs only
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Sets the maximum <code>g3</code> error up to which FDs that infringe
+     * the instance are still added or discovered as approximate FDs.
+     *
+     * @param maxError the maximum fraction of violating rows, 0 for exact FDs
+     * only
+     */
+    public void setMaxError(double maxError) {
+        this.maxError = maxError;
+    }
+
+    /**
+     * Returns the way new FDs are implemented as triggers.
+     *
+     * @return the trigger mode
+     */
+    public TriggerMode getTriggerMode() {
+        return triggerMode;
+    }
+
+    /**
+     * Sets the way new FDs are implemented as triggers, e.g.
+     * {@link TriggerMode#ROW} for relations with frequent small writes, or
+     * {@link TriggerMode#CONSOLIDATED} for relations with many FDs.
+     *
+     * @param triggerMode the trigger mode
+     */
+    public void setTriggerMode(TriggerMode triggerMode) {
+        this.triggerMode = triggerMode;
+        if (catMan != null) {
+            catMan.setTriggerMode(triggerMode);
+        }
+    }
+
+    /**
+     * Returns the way FDs are validated against the instance.
+     *
+     * @return the validation strategy
+     */
+    public ValidationStrategy getValidationStrategy() {
+        return validationStrategy;
+    }
+
+    /**
+     * Sets the way FDs are validated against the instance, e.g.
+     * {@link ValidationStrategy#GROUP_BY} if the rows of a relation must not
+     * be transferred to the client.
+     *
+     * @param validationStrategy the validation strategy
+     */
+    public void setValidationStrategy(ValidationStrategy validationStrategy) {
+        this.validationStrategy = validationStrategy;
+    }
+
+    /**
+     * Discovers the functional dependencies that hold on the instance of the
+     * loaded relation and returns those that are not implied yet. The
+     * relation is not changed, so this may run in a background thread,
+     * followed by {@link #addFdeps(Collection)} on the event dispatch thread.
+     * <p>
+     * The relation is read once and the minimal FDs are found with
+     * {@link Tane}, or with {@link HyFD} for relations with at least
+     * {@link #WIDE_RELATION_COLUMNS} columns. Right-hand side attributes that
+     * are already implied by the implemented and additional FDs or by the
+     * other discovered FDs are left out, see
+     * {@link Relation#removeImplied(Collection, boolean)}.
+     * If a maximum error is set, approximate FDs are discovered with
+     * {@link Tane} as well. The sampling of {@link HyFD} discards every
+     * candidate that a single pair of rows violates, so only exact FDs are
+     * discovered on wide relations, whose lattice {@link Tane} cannot handle.
+     *
+     * @return the discovered FDs that are not implied, empty if the relation
+     * cannot be read
+     */
+    public List<FDep> discoverFdeps() {
+        EncodedTable table = loadInstance();
+        if (table == null) {
+            return new ArrayList<FDep>();
+        }
+
+        FdDiscovery discovery;
+        if (table.getColumnCount() >= WIDE_RELATION_COLUMNS) {
+            if (maxError > 0) {
+                logger.logp(Level.WARNING, SchemaManager.class.getName(),
+                        "discoverFdeps", "Only exact FDs are discovered in "
+                        + relation + ", as it has " + table.getColumnCount()
+                        + " columns.");
             }
+            discovery = new HyFD(table);
         } else {
-            JOptionPane.showMessageDialog(null,
-                    "The specified FD is already implied.",
-                    "Closure Contains FD",
-                    JOptionPane.INFORMATION_MESSAGE);
+            Tane tane = new Tane(table);
+            tane.setMaxError(maxError);
+            discovery = tane;
         }
+        SortedSet<FDep> discovered = discovery.discover();
+        logger.logp(Level.FINE, SchemaManager.class.getName(),
+                "discoverFdeps", discovered.size() + " minimal FDs found in "
+                + table.getRowCount() + " rows of " + relation);
+
+        return relation.removeImplied(discovered, true);
+    }
+
+    /**
+     * Discovers the candidate keys that hold on the instance of the loaded
+     * relation with {@link UccDiscovery} and returns those that are not
+     * implied yet as key FDs. Like {@link #discoverFdeps()}, this does not
+     * change the relation. Once added, the keys require a commit to really
+     * take effect in the database, where they are implemented as unique
+     * constraints.
+     *
+     * @return the discovered key FDs that are not implied, empty if the
+     * relation cannot be read
+     */
+    public List<FDep> discoverKeys() {
+        EncodedTable table = loadInstance();
+        if (table == null) {
+            return new ArrayList<FDep>();
+        }
+
+        SortedSet<FDep> keys = new UccDiscovery(table).discover();
+        logger.logp(Level.FINE, SchemaManager.class.getName(),
+                "discoverKeys", keys.size() + " minimal keys found in "
+                + table.getRowCount() + " rows of " + relation);
+
+        return relation.removeImplied(keys, false);
+    }
+
+    /**
+     * Temporary adds discovered functional dependencies to the loaded
+     * relation at once, so that the view and the normal form preview are
+     * updated only once. Requires a commit to really take effect in the
+     * database.
+     *
+     * @param fds the FDs returned by {@link #discoverFdeps()} or
+     * {@link #discoverKeys()}
+     */
+    public void addFdeps(Collection<FDep> fds) {
+        relation.addAdditionalFdeps(fds);
+    }
+
+    /**
+     * Suggests foreign keys between the relations of the loaded schema. The
+     * suggestions are the inclusion dependencies that hold on the instances
+     * and reference a candidate key, see
+     * {@link IndDiscovery#discoverForeignKeys(Connection, java.util.Collection)},
+     * except for the foreign keys that already exist.
+     *
+     * @return the suggested foreign keys
+     */
+    public SortedSet<InclusionDependency> suggestForeignKeys() {
+        SortedSet<InclusionDependency> fks = new TreeSet<InclusionDependency>();
+        Connection con = ConnectionManager.getConnection();
+        try {
+            Set<String> existing = new HashSet<String>();
+            ConstraintCache constraints = catMan.getConstraints(con);
+            for (Relation rel : schema.getRelations()) {
+                // the column pairs and referenced relation of each FK
+                for (Constraint fk : constraints.getConstraints(
+                        rel.getRelationName(), Constraint.Type.FOREIGN_KEY)) {
+                    SortedSet<String> pairs = new TreeSet<String>();
+                    for (Map.Entry<String, String> ref :
+                            fk.getReferences().entrySet()) {
+                        pairs.add(ref.getKey() + "=" + ref.getValue());
+                    }
+                    existing.add(rel.getRelationName() + pairs
+                            + fk.getReferencedTable());
+                }
+            }
+
+            for (InclusionDependency ind : IndDiscovery.discoverForeignKeys(
+                    con, schema.getRelations())) {
+                if (!existing.contains(columnPairs(ind))) {
+                    fks.add(ind);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "suggestForeignKeys",
+                    "Couldn't discover inclusion dependencies.", ex);
+        } catch (IOException ex) {
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "suggestForeignKeys",
+                    "Couldn't discover inclusion dependencies.", ex);
+        } finally {
+            ConnectionManager.closeConnection();
+        }
+        return fks;
+    }
+
+    /**
+     * Represents an IND independently of the order of its columns, so that
+     * it can be compared with foreign keys.
+     *
+     * @param ind an inclusion dependency
+     * @return the relations and the sorted pairs of corresponding columns
+     */
+    private static String columnPairs(InclusionDependency ind) {
+        SortedSet<String> pairs = new TreeSet<String>();
+        for (int i = 0; i < ind.getArity(); i++) {
+            pairs.add(ind.getDependentColumns().get(i) + "="
+                    + ind.getReferencedColumns().get(i));
+        }
+        return ind.getDependentTable() + pairs + ind.getReferencedTable();
+    }
+
+    /**
+     * Reads and encodes the instance of the loaded relation.
+     *
+     * @return the encoded instance, or null if it couldn't be read
+     */
+    private EncodedTable loadInstance() {
+        EncodedTable table = null;
+        Connection con = ConnectionManager.getConnection();
+        try {
+            table = EncodedTable.load(con, relation.getRelationName(),
+                    relation.getColumns());
+        } catch (SQLException ex) {
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "loadInstance",
+                    "Couldn't read the instance of the relation.", ex);
+        } finally {
+            ConnectionManager.closeConnection();
+        }
+        return table;
     }
 
     /**
@@ -1013,13 +1189,17 @@ public class SchemaManager {
      * @param id the ID of the FD that is to be removed
      */
     public void removeFDep(Integer id) {
-        FDep fd = catMan.getFD(id);
-        relation.addRemovedFdep(fd);
+        FDep fd = schema.getFDepRegistry().get(id);
+        // only FDs of the catalog can be removed
+        if (fd != null) {
+            relation.addRemovedFdep(fd);
+        }
     }
 
     /**
      * Commits changes, i.e. removes and adds so far temporary functional
-     * dependencies.
+     * dependencies. Afterwards, the trigger checking all FDs of the relation
+     * is regenerated.
      */
     public void commit() {
         String table = relation.getRelationName();
@@ -1033,14 +1213,15 @@ public class SchemaManager {
                     "Couldn't start transaction.", ex);
         }
 
-        for (FDep fd : relation.getAdditionalFdeps()) {
-            catMan.addFD(table, fd, con);
-        }
+        catMan.addFDs(table, relation.getAdditionalFdeps(), con);
 
         for (FDep fd : relation.getRemovedFdeps()) {
             catMan.removeFD(fd.getId(), table, con);
         }
 
+        // Recompile the trigger checking all FDs of the relation.
+        catMan.updateConsolidatedTrigger(table, con);
+
         // End transaction.
         try {
             con.commit();
@@ -1064,6 +1245,51 @@ public class SchemaManager {
 
     }
 
+    /**
+     * Implements committed functional dependencies of the loaded relation with
+     * another trigger mode, e.g. {@link TriggerMode#TRANSITION} for relations
+     * that are bulk loaded. The change takes effect immediately.
+     *
+     * @param ids the IDs of the FDs
+     * @param mode the new trigger mode
+     */
+    public void changeTriggerMode(Set<Integer> ids, TriggerMode mode) {
+        String table = relation.getRelationName();
+
+        Connection con = ConnectionManager.getConnection();
+        // Start transaction.
+        try {
+            con.setAutoCommit(false);
+        } catch (SQLException ex) {
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "changeTriggerMode", "Couldn't start transaction.", ex);
+        }
+
+        for (Integer id : ids) {
+            catMan.changeTriggerMode(id, table, mode, con);
+        }
+        catMan.updateConsolidatedTrigger(table, con);
+
+        // End transaction.
+        try {
+            con.commit();
+            con.setAutoCommit(true);
+        } catch (SQLException ex) {
+            try {
+                con.rollback();
+            } catch (SQLException ex1) {
+                logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                        "changeTriggerMode",
+                        "Couldn't rollback transaction.", ex1);
+            }
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "changeTriggerMode",
+                    "Couldn't commit transaction.", ex);
+        }
+
+        ConnectionManager.closeConnection();
+    }
+
     /**
      * Rolls back all temporary changes in the loaded relation, i.e.
      * added and removed functional dependencies are discarded.
@@ -1115,95 +1341,78 @@ public class SchemaManager {
 
     /**
      * Checks whether the instance of the loaded relation infringes a given
-     * functional dependency.
+     * functional dependency. Depending on the validation strategy, the
+     * relation is either scanned once by the client, with the memory bounded
+     * by {@link FdValidator}, or grouped on the server by
+     * {@link GroupingValidator}, instead of joining it with itself.
+     * <p>
+     * If a maximum error is set, the <code>g3</code> error of the FD is
+     * computed by the same strategy, during the client scan by
+     * {@link FdValidator#error(FDep)} or by the single query of
+     * {@link GroupingValidator#error(FDep)}, and stored in an approximate FD.
+     * The error also decides whether the FD holds, so the relation is read
+     * only once.
      *
      * @param fd a functional dependecy
-     * @return true if instance does not infringe the FD
+     * @return {@link FdepCheck#VALID} if the instance does not infringe the
+     * FD, {@link FdepCheck#APPROXIMATE} if the error does not exceed the
+     * maximum error, {@link FdepCheck#INFRINGED} otherwise
      */
-    private boolean checkInstance(FDep fd) {
-
-        /*
-         * Create a SQL statement that queries the number (COUNT(*)) of tupels
-         * that have the same left-hand side attributes (as specified by
-         * the FD), but do differ in their right-hand side attributes.
-         *
-         * Example:
-         * SELECT COUNT(*) FROM relation r1, relation r2
-         * WHERE r1.t1 = r2.t1
-         * AND r1.t2 != r2.t2
-         */
-        String s = "SELECT COUNT(*) FROM \"" + relation.getRelationName() +
-                "\" t1, \"" + relation.getRelationName() + "\" t2 WHERE";
-        StringBuffer sb = new StringBuffer(s);
-
-        boolean first = true;
-        for (String lhs : fd.getLeftSide()) {
-            if (first) {
-                s = " t1.\"" + lhs + "\" = t2.\"" + lhs + "\"";
-                first =
-                        false;
-            } else {
-                s = " AND t1.\"" + lhs + "\" = t2.\"" + lhs + "\"";
+    private FdepCheck checkInstance(FDep fd) {
+        FdepCheck result = FdepCheck.INFRINGED;
+        try {
+            Connection con = ConnectionManager.getConnection();
+            String name = relation.getRelationName();
+
+            ValidationStrategy strategy = validationStrategy;
+            if (strategy == ValidationStrategy.AUTO) {
+                // an unanalyzed relation might be large as well
+                long rows = GroupingValidator.estimateRows(con, name);
+                strategy = rows >= 0 && rows < SERVER_VALIDATION_ROWS
+                        ? ValidationStrategy.SCAN
+                        : ValidationStrategy.GROUP_BY;
             }
 
-            sb.append(s);
-        }
-
-        first = true;
-        Iterator<String> it = fd.getRightSide().iterator();
-        String rhs;
-
-        while (it.hasNext()) {
-            rhs = it.next();
-            if (first) {
-                s = " AND (t1.\"" + rhs + "\" != t2.\"" + rhs + "\"";
-                first =
-                        false;
+            double error;
+            if (strategy == ValidationStrategy.SCAN) {
+                // the scan counts the violations only if they are needed
+                FdValidator validator = new FdValidator(con, name);
+                if (maxError > 0) {
+                    error = validator.error(fd);
+                } else {
+                    error = validator.validate(fd) ? 0 : 1;
+                }
             } else {
-                s = " OR t1.\"" + rhs + "\" != t2.\"" + rhs + "\"";
-            }
-
-            sb.append(s);
-            if (!it.hasNext()) {
-                sb.append(')');
+                GroupingValidator validator = new GroupingValidator(con, name);
+                if (maxError > 0) {
+                    error = validator.error(fd);
+                } else {
+                    validator.setSampleSize(VALIDATION_SAMPLE_SIZE);
+                    error = validator.validate(fd) ? 0 : 1;
+                }
             }
 
-        }
-
-        Statement stmt;
-        ResultSet rs;
-
-        int result = -1;
-        try {
-            Connection con = ConnectionManager.getConnection();
-
-            stmt = con.createStatement();
-            rs = stmt.executeQuery(sb.toString());
-
-            while (rs.next()) {
-                result = rs.getInt(1);
+            if (error == 0) {
+                result = FdepCheck.VALID;
+            } else if (error <= maxError) {
+                fd.setError(error);
+                result = FdepCheck.APPROXIMATE;
             }
-
-            rs.close();
-            stmt.close();
         } catch (SQLException ex) {
             logger.logp(Level.SEVERE, SchemaManager.class.getName(),
                     "checkInstance",
                     "Couldn't check whether a new FD infringes the instance.",
                     ex);
+        } catch (IOException ex) {
+            logger.logp(Level.SEVERE, SchemaManager.class.getName(),
+                    "checkInstance",
+                    "Couldn't check whether a new FD infringes the instance.",
+                    ex);
         } finally {
             ConnectionManager.closeConnection();
         }
 
-        /*
-         * Result should be 0, otherwise there are tupels that infrige the FD.
-         */
-        if (result == 0) {
-            return true;
-        } else {
-            return false;
-        }
-
+        return result;
     }
 
     /**
@@ -1314,6 +1523,7 @@ public class SchemaManager {
          * dependencies for each relation object in the schema.
          */
         catMan = new CatalogManager();
+        catMan.setTriggerMode(triggerMode);
         catMan.getFD(schema);
 
         return schema;
@@ -1330,6 +1540,9 @@ public class SchemaManager {
     public void loadRelation(Relation table) {
 
         if (this.relation != null) {
+            logger.logp(Level.FINE, SchemaManager.class.getName(),
+                    "loadRelation", "Closure cache of " + relation + ": "
+                    + relation.getClosureCache());
             controller.removeModel(relation);
         }
 
@@ -1392,8 +1605,12 @@ public class SchemaManager {
         for (Map.Entry<Integer, String> entry : fdMap.entrySet()) {
             catMan.removeFD(entry.getKey(), entry.getValue(), con);
         }
+        for (String table : new HashSet<String>(fdMap.values())) {
+            catMan.updateConsolidatedTrigger(table, con);
+        }
 
-        String dropIt = "DROP TABLE fd_catalog, " +
+        // fd_catalog_lhs and fd_catalog_rhs only exist in layout 1
+        String dropIt = "DROP TABLE IF EXISTS fd_catalog, " +
                 "fd_catalog_lhs, " +
                 "fd_catalog_rhs, " +
                 "fd_catalog_trigger " +
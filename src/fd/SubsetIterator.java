@@ -0,0 +1,222 @@
+package fd;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the subsets of a set of attributes without materializing the
+ * powerset. The subsets are encoded as bitsets over the same positions as the
+ * given universe. The iterator reuses one bitset: the array returned by
+ * {@link #next()} is overwritten by the following call and must be copied if
+ * it is kept.
+ * <p>
+ * Two kinds of order are supported:
+ * <ul>
+ * <li>{@link Order#GRAY_CODE}: consecutive subsets differ in exactly one
+ * attribute, starting with the empty set. Subsets larger than the maximum
+ * size are skipped, so this order suits small universes.</li>
+ * <li>{@link Order#LARGEST_FIRST} and {@link Order#SMALLEST_FIRST}: all
+ * subsets of one size in lexicographic order of their positions, then the
+ * next size. Only subsets between the minimum and the maximum size are
+ * generated.</li>
+ * </ul>
+ */
+public class SubsetIterator implements Iterator<long[]> {
+
+	/**
+	 * The order in which the subsets are returned.
+	 */
+	public static enum Order {
+
+		/**
+		 * Each subset differs from its predecessor in one attribute.
+		 */
+		GRAY_CODE,
+		/**
+		 * Subsets are returned by descending size.
+		 */
+		LARGEST_FIRST,
+		/**
+		 * Subsets are returned by ascending size.
+		 */
+		SMALLEST_FIRST
+	}
+
+	/** The order of the subsets */
+	private final Order order;
+	/** The bit positions of the universe */
+	private final int[] elements;
+	/** The minimum and maximum size of the returned subsets */
+	private final int minSize;
+	private final int maxSize;
+	/** The current subset */
+	private final long[] current;
+	/** Gray code: the number of the current subset */
+	private long step;
+	/** Size order: the element indexes of the current subset */
+	private final int[] combination;
+	/** Size order: the size of the current subset */
+	private int size;
+	/** True if <code>current</code> holds a subset that was not returned yet */
+	private boolean pending;
+	/** True if all subsets have been returned */
+	private boolean done;
+
+	/**
+	 * Constructs an iterator over all subsets of the universe.
+	 *
+	 * @param universe
+	 *            the attributes as bitset
+	 * @param order
+	 *            the order of the subsets
+	 */
+	public SubsetIterator(long[] universe, Order order) {
+		this(universe, order, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs an iterator over the subsets of the universe within the given
+	 * size bounds.
+	 *
+	 * @param universe
+	 *            the attributes as bitset
+	 * @param order
+	 *            the order of the subsets
+	 * @param minSize
+	 *            the minimum number of attributes of a subset
+	 * @param maxSize
+	 *            the maximum number of attributes of a subset
+	 */
+	public SubsetIterator(long[] universe, Order order, int minSize,
+			int maxSize) {
+		this.order = order;
+		this.elements = new int[AttributeIndex.cardinality(universe)];
+		int i = 0;
+		for (int a = AttributeIndex.nextSetBit(universe, 0); a >= 0; a = AttributeIndex
+				.nextSetBit(universe, a + 1)) {
+			elements[i++] = a;
+		}
+		this.minSize = Math.max(minSize, 0);
+		this.maxSize = Math.min(maxSize, elements.length);
+		this.current = new long[universe.length];
+		this.combination = new int[elements.length];
+
+		if (this.minSize > this.maxSize) {
+			done = true;
+		} else if (order == Order.GRAY_CODE) {
+			if (elements.length >= Long.SIZE - 1) {
+				throw new IllegalArgumentException(
+						"Too many attributes for Gray code order: "
+								+ elements.length);
+			}
+			pending = this.minSize == 0;
+		} else {
+			startSize(order == Order.LARGEST_FIRST ? this.maxSize
+					: this.minSize);
+		}
+	}
+
+	/**
+	 * Sets the current subset to the first subset of the given size.
+	 *
+	 * @param s
+	 *            the subset size
+	 */
+	private void startSize(int s) {
+		size = s;
+		for (int i = 0; i < current.length; i++) {
+			current[i] = 0L;
+		}
+		for (int i = 0; i < s; i++) {
+			combination[i] = i;
+			AttributeIndex.set(current, elements[i]);
+		}
+		pending = true;
+	}
+
+	/**
+	 * Moves to the next subset in Gray code order within the size bounds.
+	 */
+	private void advanceGray() {
+		long last = 1L << elements.length;
+		int card = AttributeIndex.cardinality(current);
+		while (++step < last) {
+			int flip = elements[Long.numberOfTrailingZeros(step)];
+			if (AttributeIndex.get(current, flip)) {
+				AttributeIndex.clear(current, flip);
+				card--;
+			} else {
+				AttributeIndex.set(current, flip);
+				card++;
+			}
+			if (card >= minSize && card <= maxSize) {
+				pending = true;
+				return;
+			}
+		}
+		done = true;
+	}
+
+	/**
+	 * Moves to the next combination of the current size or to the first
+	 * combination of the next size.
+	 */
+	private void advanceSize() {
+		int n = elements.length;
+		int i = size - 1;
+		while (i >= 0 && combination[i] == n - size + i) {
+			i--;
+		}
+		if (i >= 0) {
+			for (int j = i; j < size; j++) {
+				AttributeIndex.clear(current, elements[combination[j]]);
+			}
+			combination[i]++;
+			for (int j = i + 1; j < size; j++) {
+				combination[j] = combination[j - 1] + 1;
+			}
+			for (int j = i; j < size; j++) {
+				AttributeIndex.set(current, elements[combination[j]]);
+			}
+			pending = true;
+		} else if (order == Order.LARGEST_FIRST && size > minSize) {
+			startSize(size - 1);
+		} else if (order == Order.SMALLEST_FIRST && size < maxSize) {
+			startSize(size + 1);
+		} else {
+			done = true;
+		}
+	}
+
+	/**
+	 * @return true if there is another subset
+	 */
+	public boolean hasNext() {
+		if (!pending && !done) {
+			if (order == Order.GRAY_CODE) {
+				advanceGray();
+			} else {
+				advanceSize();
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * @return the next subset as bitset, valid until the next call
+	 */
+	public long[] next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		pending = false;
+		return current;
+	}
+
+	/**
+	 * Not supported.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
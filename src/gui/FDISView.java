@@ -3,8 +3,13 @@ package gui;
 import control.DefaultController;
 import control.DefaultController.NF;
 import control.FDISApp;
+import dbtools.TriggerMode;
+import discovery.InclusionDependency;
+import discovery.ValidationStrategy;
 import fd.FDep;
 import fd.Relation;
+import fd.SchemaManager;
+import fd.SchemaManager.FdepCheck;
 import java.awt.Color;
 import java.awt.Desktop;
 import java.beans.PropertyChangeEvent;
@@ -182,6 +187,8 @@ public class FDISView extends FrameView implements IView {
             controller.normalize(NF.NF2);
         } else if (radio3NF.isSelected()) {
             controller.normalize(NF.NF3);
+        } else if (radioBCNF.isSelected()) {
+            controller.normalize(NF.BCNF);
         }
     }
 
@@ -216,6 +223,7 @@ public class FDISView extends FrameView implements IView {
         normalizationPanel = new javax.swing.JPanel();
         radio2NF = new javax.swing.JRadioButton();
         radio3NF = new javax.swing.JRadioButton();
+        radioBCNF = new javax.swing.JRadioButton();
         prevButton = new javax.swing.JButton();
         showSteps = new javax.swing.JCheckBox();
         nfPrevPanel = new javax.swing.JPanel();
@@ -245,9 +253,16 @@ public class FDISView extends FrameView implements IView {
         normalizeMenuItem = new javax.swing.JMenu();
         nf2MenuItem = new javax.swing.JMenuItem();
         nf3MenuItem = new javax.swing.JMenuItem();
+        bcnfMenuItem = new javax.swing.JMenuItem();
         setIntraFKMenuItem = new javax.swing.JCheckBoxMenuItem();
         menuSeparator2 = new javax.swing.JSeparator();
         removeMenuItem = new javax.swing.JMenuItem();
+        triggerModeMenuItem = new javax.swing.JMenuItem();
+        defaultTriggerModeMenuItem = new javax.swing.JMenuItem();
+        validationStrategyMenuItem = new javax.swing.JMenuItem();
+        discoverMenuItem = new javax.swing.JMenuItem();
+        discoverKeysMenuItem = new javax.swing.JMenuItem();
+        suggestFKMenuItem = new javax.swing.JMenuItem();
         javax.swing.JMenu helpMenu = new javax.swing.JMenu();
         onlineHelpMenuItem = new javax.swing.JMenuItem();
         javax.swing.JMenuItem aboutMenuItem = new javax.swing.JMenuItem();
@@ -418,6 +433,10 @@ public class FDISView extends FrameView implements IView {
         radio3NF.setText(resourceMap.getString("radio3NF.text")); // NOI18N
         radio3NF.setName("radio3NF"); // NOI18N
 
+        buttonGroup.add(radioBCNF);
+        radioBCNF.setText(resourceMap.getString("radioBCNF.text")); // NOI18N
+        radioBCNF.setName("radioBCNF"); // NOI18N
+
         prevButton.setAction(actionMap.get("showPreviewDialog")); // NOI18N
         prevButton.setText(resourceMap.getString("prevButton.text")); // NOI18N
         prevButton.setToolTipText(resourceMap.getString("prevButton.toolTipText")); // NOI18N
@@ -436,6 +455,7 @@ public class FDISView extends FrameView implements IView {
                 .addGroup(normalizationPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(radio2NF)
                     .addComponent(radio3NF)
+                    .addComponent(radioBCNF)
                     .addComponent(showSteps)
                     .addComponent(prevButton))
                 .addContainerGap(20, Short.MAX_VALUE))
@@ -447,6 +467,8 @@ public class FDISView extends FrameView implements IView {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(radio3NF)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(radioBCNF)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(showSteps)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(prevButton)
@@ -679,6 +701,11 @@ public class FDISView extends FrameView implements IView {
         nf3MenuItem.setName("nf3MenuItem"); // NOI18N
         normalizeMenuItem.add(nf3MenuItem);
 
+        bcnfMenuItem.setAction(actionMap.get("normalizeBCNF")); // NOI18N
+        bcnfMenuItem.setText(resourceMap.getString("bcnfMenuItem.text")); // NOI18N
+        bcnfMenuItem.setName("bcnfMenuItem"); // NOI18N
+        normalizeMenuItem.add(bcnfMenuItem);
+
         normalizeMenu.add(normalizeMenuItem);
 
         setIntraFKMenuItem.setAction(actionMap.get("setIntraFK")); // NOI18N
@@ -694,6 +721,36 @@ public class FDISView extends FrameView implements IView {
         removeMenuItem.setName("removeMenuItem"); // NOI18N
         normalizeMenu.add(removeMenuItem);
 
+        triggerModeMenuItem.setAction(actionMap.get("changeTriggerMode")); // NOI18N
+        triggerModeMenuItem.setText(resourceMap.getString("triggerModeMenuItem.text")); // NOI18N
+        triggerModeMenuItem.setName("triggerModeMenuItem"); // NOI18N
+        normalizeMenu.add(triggerModeMenuItem);
+
+        defaultTriggerModeMenuItem.setAction(actionMap.get("setDefaultTriggerMode")); // NOI18N
+        defaultTriggerModeMenuItem.setText(resourceMap.getString("defaultTriggerModeMenuItem.text")); // NOI18N
+        defaultTriggerModeMenuItem.setName("defaultTriggerModeMenuItem"); // NOI18N
+        normalizeMenu.add(defaultTriggerModeMenuItem);
+
+        validationStrategyMenuItem.setAction(actionMap.get("setValidationStrategy")); // NOI18N
+        validationStrategyMenuItem.setText(resourceMap.getString("validationStrategyMenuItem.text")); // NOI18N
+        validationStrategyMenuItem.setName("validationStrategyMenuItem"); // NOI18N
+        normalizeMenu.add(validationStrategyMenuItem);
+
+        discoverMenuItem.setAction(actionMap.get("discoverFdeps")); // NOI18N
+        discoverMenuItem.setText(resourceMap.getString("discoverMenuItem.text")); // NOI18N
+        discoverMenuItem.setName("discoverMenuItem"); // NOI18N
+        normalizeMenu.add(discoverMenuItem);
+
+        discoverKeysMenuItem.setAction(actionMap.get("discoverKeys")); // NOI18N
+        discoverKeysMenuItem.setText(resourceMap.getString("discoverKeysMenuItem.text")); // NOI18N
+        discoverKeysMenuItem.setName("discoverKeysMenuItem"); // NOI18N
+        normalizeMenu.add(discoverKeysMenuItem);
+
+        suggestFKMenuItem.setAction(actionMap.get("suggestForeignKeys")); // NOI18N
+        suggestFKMenuItem.setText(resourceMap.getString("suggestFKMenuItem.text")); // NOI18N
+        suggestFKMenuItem.setName("suggestFKMenuItem"); // NOI18N
+        normalizeMenu.add(suggestFKMenuItem);
+
         menuBar.add(normalizeMenu);
 
         helpMenu.setAction(actionMap.get("browseOnline")); // NOI18N
@@ -875,12 +932,19 @@ public class FDISView extends FrameView implements IView {
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton addButton;
+    private javax.swing.JMenuItem bcnfMenuItem;
     private javax.swing.ButtonGroup buttonGroup;
     private javax.swing.JButton clearButton;
     private javax.swing.JMenuItem closeMenuItem;
     private javax.swing.JMenuItem commitMenuItem;
     private javax.swing.JButton committButton;
     private javax.swing.JMenuItem connectMenuItem;
+    private javax.swing.JMenuItem discoverMenuItem;
+    private javax.swing.JMenuItem triggerModeMenuItem;
+    private javax.swing.JMenuItem defaultTriggerModeMenuItem;
+    private javax.swing.JMenuItem validationStrategyMenuItem;
+    private javax.swing.JMenuItem discoverKeysMenuItem;
+    private javax.swing.JMenuItem suggestFKMenuItem;
     private javax.swing.JMenuItem dropCatalogMenuItem;
     private javax.swing.JTable fdTable;
     private javax.swing.JLabel greenLabel;
@@ -911,6 +975,7 @@ public class FDISView extends FrameView implements IView {
     private javax.swing.JProgressBar progressBar;
     private javax.swing.JRadioButton radio2NF;
     private javax.swing.JRadioButton radio3NF;
+    private javax.swing.JRadioButton radioBCNF;
     private javax.swing.JLabel redLabel;
     private javax.swing.JLabel redTextLabel;
     private javax.swing.JButton removeButton;
@@ -966,11 +1031,19 @@ public class FDISView extends FrameView implements IView {
         if (nfLabel.getText().equals("3 NF") ||
                 nfLabel.getText().equals("BCNF")) {
             radio3NF.setEnabled(false);
+            radioBCNF.setSelected(true);
+            nf3MenuItem.setEnabled(false);
+        } else {
+            radio3NF.setEnabled(enabled);
+            nf3MenuItem.setEnabled(true);
+        }
+        if (nfLabel.getText().equals("BCNF")) {
+            radioBCNF.setEnabled(false);
             prevButton.setEnabled(false);
             showSteps.setEnabled(false);
             normalizeMenuItem.setEnabled(false);
         } else {
-            radio3NF.setEnabled(enabled);
+            radioBCNF.setEnabled(enabled);
             prevButton.setEnabled(enabled);
             showSteps.setEnabled(enabled);
             normalizeMenuItem.setEnabled(enabled);
@@ -987,6 +1060,10 @@ public class FDISView extends FrameView implements IView {
         clearButton.setEnabled(enabled);
 
         removeMenuItem.setEnabled(enabled);
+        triggerModeMenuItem.setEnabled(enabled);
+        discoverMenuItem.setEnabled(enabled);
+        discoverKeysMenuItem.setEnabled(enabled);
+        suggestFKMenuItem.setEnabled(enabled);
     }
 
     /**
@@ -1099,12 +1176,18 @@ public class FDISView extends FrameView implements IView {
          */
         } else if (evt.getPropertyName().equals(
                 DefaultController.ELEMENT_RELATION_ADDITIONAL_FDEPS_PROPERTY)) {
-            FDep fd = (FDep) evt.getNewValue();
+            // a single FD, or a list of FDs that were added at once
+            List fds = evt.getNewValue() instanceof FDep
+                    ? Arrays.asList(evt.getNewValue())
+                    : (List) evt.getNewValue();
             FDTableModel model = (FDTableModel) fdTable.getModel();
 
-            //model.addRow(fd.getLeftSide(), fd.getRightSide());
-            model.addRow(fd.getLeftSide(), fd.getRightSide(), -1, false);
-            ((FDTable) fdTable).setRowColor(model.getRowCount() - 1, Color.GREEN);
+            for (Object o : fds) {
+                FDep fd = (FDep) o;
+                //model.addRow(fd.getLeftSide(), fd.getRightSide());
+                model.addRow(fd.getLeftSide(), fd.getRightSide(), -1, false);
+                ((FDTable) fdTable).setRowColor(model.getRowCount() - 1, Color.GREEN);
+            }
             model.fireTableDataChanged();
 
             setRollbackable(true);
@@ -1134,9 +1217,12 @@ public class FDISView extends FrameView implements IView {
     /**
      * Adds an additional functional dependecy to the loaded relation. This
      * will not take effect on the database until a commit.
+     *
+     * @return a background task performing the operation, null if the FD is
+     * incomplete
      */
-    @Action
-    public void addFDep() {
+    @Action(block = Task.BlockingScope.APPLICATION)
+    public Task addFDep() {
         boolean isSelectionEmpty = lhsList.isSelectionEmpty() ||
                 rhsList.isSelectionEmpty();
         if (!isSelectionEmpty) {
@@ -1166,12 +1252,35 @@ public class FDISView extends FrameView implements IView {
             fd.setLeftSide(lhs);
             fd.setRightSide(rhs);
 
-            controller.addFdep(fd);
+            return new AddTask(getApplication(), fd);
         } else {
             JOptionPane.showMessageDialog(null,
                     "Please specify both a left-hand and a right-hand side.",
                     "FD Incomplete",
                     JOptionPane.INFORMATION_MESSAGE);
+            return null;
+        }
+    }
+
+    private class AddTask extends org.jdesktop.application.Task<FdepCheck, Void> {
+
+        private final FDep fd;
+
+        AddTask(org.jdesktop.application.Application app, FDep fd) {
+            super(app);
+            this.fd = fd;
+        }
+
+        @Override
+        protected FdepCheck doInBackground() {
+            // Validating the FD scans the relation. Adding it fires model
+            // events that update the GUI, so it is left to succeeded().
+            return controller.checkFdep(fd);
+        }
+
+        @Override
+        protected void succeeded(FdepCheck result) {
+            controller.addFdep(fd, result);
         }
     }
 
@@ -1225,6 +1334,254 @@ public class FDISView extends FrameView implements IView {
         }
     }
 
+    /**
+     * Implements the committed non-key FDs that are selected in the table with
+     * another trigger mode, which the user chooses. This takes effect on the
+     * database immediately.
+     *
+     * @return a background task performing the operation, null if no FD is
+     * selected or no mode is chosen
+     */
+    @Action(block = Task.BlockingScope.APPLICATION)
+    public Task changeTriggerMode() {
+        int[] rows = fdTable.getSelectedRows();
+        FDTableModel model = (FDTableModel) fdTable.getModel();
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (int i = 0; i < rows.length; i++) {
+            Boolean isKey = (Boolean) model.getValueAt(rows[i], 3);
+            Integer id = (Integer) model.getValueAt(rows[i], 2);
+            if (id != -1 && !isKey) {
+                ids.add(id);
+            }
+        }
+
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(null,
+                    "Please select a committed FD that is not implemented " +
+                    "as a key constraint in the table",
+                    "Select FD",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return null;
+        }
+
+        Object mode = JOptionPane.showInputDialog(null,
+                "Trigger mode of the selected FDs:",
+                "Set Trigger Mode",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                TriggerMode.values(),
+                controller.getTriggerMode());
+        if (mode == null) {
+            return null;
+        }
+        clearSelection();
+        return new TriggerModeTask(getApplication(), ids, (TriggerMode) mode);
+    }
+
+    private class TriggerModeTask extends org.jdesktop.application.Task<Object, Void> {
+
+        private final Set<Integer> ids;
+        private final TriggerMode mode;
+
+        TriggerModeTask(org.jdesktop.application.Application app,
+                Set<Integer> ids, TriggerMode mode) {
+            super(app);
+            this.ids = ids;
+            this.mode = mode;
+        }
+
+        @Override
+        protected Object doInBackground() {
+            // Creating indexes may take a while on large relations.
+            controller.changeTriggerMode(ids, mode);
+            return null;
+        }
+    }
+
+    /**
+     * Sets the trigger mode with which FDs are implemented by later commits,
+     * which the user chooses. Committed FDs keep their trigger mode.
+     */
+    @Action
+    public void setDefaultTriggerMode() {
+        Object mode = JOptionPane.showInputDialog(null,
+                "Trigger mode of newly committed FDs:",
+                "Default Trigger Mode",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                TriggerMode.values(),
+                controller.getTriggerMode());
+        if (mode != null) {
+            controller.setTriggerMode((TriggerMode) mode);
+        }
+    }
+
+    /**
+     * Sets the way added FDs are validated against the instance of the
+     * relation, which the user chooses.
+     */
+    @Action
+    public void setValidationStrategy() {
+        Object strategy = JOptionPane.showInputDialog(null,
+                "Validation of added FDs against the instance\n"
+                + "(AUTO scans small relations and groups large ones "
+                + "on the server):",
+                "Validation Strategy",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                ValidationStrategy.values(),
+                controller.getValidationStrategy());
+        if (strategy != null) {
+            controller.setValidationStrategy((ValidationStrategy) strategy);
+        }
+    }
+
+    /**
+     * Discovers the functional dependencies that hold on the instance of the
+     * loaded relation and adds them as temporary FDs. This will not take
+     * effect on the database until a commit. The user is asked for the
+     * maximum percentage of violating rows, which also applies to FDs added
+     * later on.
+     *
+     * @return a background task performing the operation, or null if the
+     * user cancelled
+     */
+    @Action(block = Task.BlockingScope.APPLICATION)
+    public Task discoverFdeps() {
+        String input = (String) JOptionPane.showInputDialog(
+                this.getFrame(),
+                "Maximum percentage of rows violating an approximate FD\n"
+                + "(0 for exact FDs only):",
+                "Discover FDs",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                null,
+                String.valueOf(controller.getMaxError() * 100));
+        if (input == null) {
+            return null;
+        }
+        double percentage;
+        try {
+            percentage = Double.parseDouble(input.trim());
+        } catch (NumberFormatException ex) {
+            percentage = -1;
+        }
+        if (percentage < 0 || percentage >= 100) {
+            JOptionPane.showMessageDialog(null,
+                    "Please enter a percentage between 0 and 100.",
+                    "Invalid Error",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return null;
+        }
+        controller.setMaxError(percentage / 100);
+        // the lists hold the columns of the loaded relation
+        if (percentage > 0 && lhsList.getModel().getSize()
+                >= SchemaManager.WIDE_RELATION_COLUMNS) {
+            JOptionPane.showMessageDialog(null,
+                    "Approximate FDs are not discovered on relations with "
+                    + SchemaManager.WIDE_RELATION_COLUMNS
+                    + " or more columns.\nOnly exact FDs will be discovered.",
+                    "Exact FDs Only",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+        return new DiscoverTask(getApplication());
+    }
+
+    private class DiscoverTask extends org.jdesktop.application.Task<List<FDep>, Void> {
+
+        DiscoverTask(org.jdesktop.application.Application app) {
+            super(app);
+        }
+
+        @Override
+        protected List<FDep> doInBackground() {
+            // Reads the whole relation, so it must not block the EDT.
+            return controller.discoverFdeps();
+        }
+
+        @Override
+        protected void succeeded(List<FDep> result) {
+            controller.addFdeps(result);
+        }
+    }
+
+    /**
+     * Discovers the candidate keys that hold on the instance of the loaded
+     * relation and adds them as temporary key FDs. This will not take effect
+     * on the database until a commit.
+     *
+     * @return a background task performing the operation
+     */
+    @Action(block = Task.BlockingScope.APPLICATION)
+    public Task discoverKeys() {
+        return new DiscoverKeysTask(getApplication());
+    }
+
+    private class DiscoverKeysTask extends org.jdesktop.application.Task<List<FDep>, Void> {
+
+        DiscoverKeysTask(org.jdesktop.application.Application app) {
+            super(app);
+        }
+
+        @Override
+        protected List<FDep> doInBackground() {
+            // Reads the whole relation, so it must not block the EDT.
+            return controller.discoverKeys();
+        }
+
+        @Override
+        protected void succeeded(List<FDep> result) {
+            controller.addFdeps(result);
+        }
+    }
+
+    /**
+     * Discovers the inclusion dependencies between the relations of the
+     * loaded schema and lists those that could be implemented as foreign
+     * keys.
+     *
+     * @return a background task performing the operation
+     */
+    @Action(block = Task.BlockingScope.APPLICATION)
+    public Task suggestForeignKeys() {
+        return new SuggestFKTask(getApplication());
+    }
+
+    private class SuggestFKTask extends org.jdesktop.application.Task<SortedSet<InclusionDependency>, Void> {
+
+        SuggestFKTask(org.jdesktop.application.Application app) {
+            super(app);
+        }
+
+        @Override
+        protected SortedSet<InclusionDependency> doInBackground() {
+            // Reads all relations, so it must not block the EDT.
+            return controller.suggestForeignKeys();
+        }
+
+        @Override
+        protected void succeeded(SortedSet<InclusionDependency> result) {
+            if (result.isEmpty()) {
+                JOptionPane.showMessageDialog(null,
+                        "No further foreign keys are admitted by the instances.",
+                        "Foreign Key Suggestions",
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            StringBuffer sb = new StringBuffer();
+            for (InclusionDependency fk : result) {
+                sb.append(fk).append('\n');
+            }
+            javax.swing.JTextArea text = new javax.swing.JTextArea(sb.toString(),
+                    Math.min(result.size(), 20), 50);
+            text.setEditable(false);
+            JOptionPane.showMessageDialog(null,
+                    new javax.swing.JScrollPane(text),
+                    "Foreign Key Suggestions",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
     /**
      * A convenience method for clearing table and list selections.
      */
@@ -1355,6 +1712,15 @@ public class FDISView extends FrameView implements IView {
         showPreviewDialog();
     }
 
+    /**
+     * A convenience method for selecting BCNF and showing the preview dialog .
+     */
+    @Action
+    public void normalizeBCNF() {
+        radioBCNF.setSelected(true);
+        showPreviewDialog();
+    }
+
     /**
      * Closes the active database connection. Discards all changes to the
      * schema or its relations.